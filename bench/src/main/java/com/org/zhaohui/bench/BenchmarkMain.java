@@ -0,0 +1,25 @@
+package com.org.zhaohui.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so allocation per operation
+ * (gc.alloc.rate.norm) is reported next to throughput. Takes the usual JMH
+ * command line options, e.g. "StateExplorerBenchmark -p phase=ENDGAME"; with
+ * none it runs every benchmark of the module.
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws RunnerException,
+      CommandLineOptionException {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,93 @@
+package com.org.zhaohui.bench;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+/**
+ * Fixed corpora of positions for the benchmarks. corpus() replays
+ * deterministic games from the initial state; of(phase) parses a hand-picked
+ * set of opening, middlegame or endgame FENs. Either way every run measures
+ * exactly the same boards.
+ */
+public final class BenchmarkPositions {
+  private static final int GAMES = 4;
+  private static final int[] SNAPSHOT_PLIES = { 0, 8, 16, 24, 32, 40, 48 };
+
+  public enum Phase {
+    OPENING(
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+        "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+        "rnbqkb1r/1p2pppp/p2p1n2/8/3NP3/2N5/PPP2PPP/R1BQKB1R w KQkq - 0 6",
+        "rnbqkb1r/ppp2ppp/4pn2/3p4/2PP4/2N5/PP2PPPP/R1BQKBNR w KQkq - 2 4"),
+    MIDDLEGAME(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8"),
+    ENDGAME(
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "8/8/8/4k3/8/8/4P3/4K3 w - - 0 1",
+        "8/8/8/8/8/3k4/8/3K2R1 w - - 0 1",
+        "8/5pk1/6p1/8/2R5/6P1/5PK1/3r4 w - - 0 1",
+        "8/8/4kb2/8/3N4/4K3/8/8 w - - 0 1");
+
+    private final String[] fens;
+
+    private Phase(String... fens) {
+      this.fens = fens;
+    }
+  }
+
+  private BenchmarkPositions() {
+  }
+
+  public static List<State> of(Phase phase) {
+    List<State> states = Lists.newArrayList();
+    for (String fen : phase.fens) {
+      states.add(Fen.parse(fen));
+    }
+    return states;
+  }
+
+  public static List<State> corpus() {
+    List<State> states = Lists.newArrayList();
+    for (int game = 0; game < GAMES; game++) {
+      State state = new State();
+      int ply = 0;
+      for (int snapshot : SNAPSHOT_PLIES) {
+        while (ply < snapshot && state.getGameResult() == null) {
+          playDeterministicMove(state, game, ply);
+          ply++;
+        }
+        if (state.getGameResult() != null) {
+          break;
+        }
+        states.add(state.copy());
+      }
+    }
+    return states;
+  }
+
+  private static void playDeterministicMove(State state, int game, int ply) {
+    List<Move> moves = Lists.newArrayList(StateExplorerImpl.getInstance()
+        .getPossibleMoves(state));
+    Collections.sort(moves, new Comparator<Move>() {
+      @Override
+      public int compare(Move a, Move b) {
+        return a.toString().compareTo(b.toString());
+      }
+    });
+    Move move = moves.get((game * 31 + ply * 17) % moves.size());
+    StateChangerImpl.getInstance().makeMove(state, move);
+  }
+}
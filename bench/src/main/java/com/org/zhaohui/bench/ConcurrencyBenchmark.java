@@ -0,0 +1,139 @@
+package com.org.zhaohui.bench;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.MoveList;
+import com.org.zhaohui.shared.logics.PackedMove;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+/**
+ * Measures how makeMove throughput scales with threads sharing the
+ * StateChangerImpl singleton, each on its own copies of
+ * BenchmarkPositions.corpus(). For 1, 2, 4... up to the number of cores it
+ * reports the moves per second and the speedup over one thread; with no
+ * shared mutable state the speedup should track the thread count.
+ *
+ * packed plays and takes back every legal move with the packed API,
+ * validated plays each legal move with makeMove(State, Move) on a copy.
+ *
+ * Usage: ConcurrencyBenchmark [millisPerRun [maxThreads]]
+ */
+public class ConcurrencyBenchmark {
+  public static void main(String[] args) throws Exception {
+    long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+        .getRuntime().availableProcessors();
+    for (boolean validated : new boolean[] { false, true }) {
+      String name = validated ? "validated" : "packed";
+      // warm up with every thread count before measuring
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        run(validated, threads, millis);
+      }
+      double single = 0;
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        double rate = run(validated, threads, millis);
+        if (threads == 1) {
+          single = rate;
+        }
+        System.out.printf("%-9s %3d threads %12.0f moves/s %6.2fx %5.0f%%%n",
+            name, threads, rate, rate / single, 100 * rate / single / threads);
+      }
+    }
+  }
+
+  /*
+   * Returns the moves per second all threads played together
+   */
+  private static double run(final boolean validated, int threads,
+      final long millis) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Long>> results = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            Worker worker = new Worker();
+            start.await();
+            long deadline = System.nanoTime() + millis * 1000000;
+            long moves = 0;
+            while (System.nanoTime() < deadline) {
+              moves += validated ? worker.playValidated() : worker
+                  .playPacked();
+            }
+            return moves;
+          }
+        }));
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      long moves = 0;
+      for (Future<Long> result : results) {
+        moves += result.get();
+      }
+      return moves / ((System.nanoTime() - begin) / 1e9);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * One thread's own states and buffers; only the engines are shared.
+   */
+  private static class Worker {
+    private final StateExplorerImpl stateExplorer = StateExplorerImpl
+        .getInstance();
+    private final StateChangerImpl stateChanger = StateChangerImpl
+        .getInstance();
+    private final List<State> states = Lists.newArrayList();
+    private final List<int[]> packedMoves = Lists.newArrayList();
+    private final UndoStack undo = new UndoStack();
+
+    Worker() {
+      MoveList moves = new MoveList();
+      for (State state : BenchmarkPositions.corpus()) {
+        int size = stateExplorer.getPossibleMoves(state, moves);
+        int[] packed = new int[size];
+        System.arraycopy(moves.buffer(), 0, packed, 0, size);
+        states.add(state.copy());
+        packedMoves.add(packed);
+      }
+    }
+
+    long playPacked() {
+      long moves = 0;
+      for (int i = 0; i < states.size(); i++) {
+        State state = states.get(i);
+        for (int move : packedMoves.get(i)) {
+          stateChanger.makeMove(state, move, undo);
+          stateChanger.unmakeMove(state, undo);
+        }
+        moves += packedMoves.get(i).length;
+      }
+      return moves;
+    }
+
+    long playValidated() throws Exception {
+      long moves = 0;
+      for (int i = 0; i < states.size(); i++) {
+        for (int move : packedMoves.get(i)) {
+          Move unpacked = PackedMove.toMove(move);
+          stateChanger.makeMove(states.get(i).copy(), unpacked);
+        }
+        moves += packedMoves.get(i).length;
+      }
+      return moves;
+    }
+  }
+}
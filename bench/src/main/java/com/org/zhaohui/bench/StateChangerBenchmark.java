@@ -0,0 +1,98 @@
+package com.org.zhaohui.bench;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.bench.BenchmarkPositions.Phase;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.PackedMove;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+/**
+ * JMH benchmarks for StateChangerImpl. One operation plays one fixed legal
+ * move in every position of the phase's corpus.
+ *
+ * makeMove validates the move and ends with the setGameResult scan, and since
+ * it changes the state it works on a copy; copyState measures that copy alone
+ * so it can be subtracted. makeUnmakeMove plays the same moves in place with
+ * the unvalidated packed API.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class StateChangerBenchmark {
+  @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+  public Phase phase;
+
+  private final StateChangerImpl stateChanger = StateChangerImpl.getInstance();
+  private final UndoStack undo = new UndoStack();
+  private State[] states;
+  private Move[] moves;
+  private int[] packedMoves;
+
+  @Setup
+  public void setup() {
+    List<State> corpus = BenchmarkPositions.of(phase);
+    states = corpus.toArray(new State[corpus.size()]);
+    moves = new Move[states.length];
+    packedMoves = new int[states.length];
+    for (int i = 0; i < states.length; i++) {
+      List<Move> legalMoves = Lists.newArrayList(StateExplorerImpl
+          .getInstance().getPossibleMoves(states[i]));
+      Collections.sort(legalMoves, new Comparator<Move>() {
+        @Override
+        public int compare(Move a, Move b) {
+          return a.toString().compareTo(b.toString());
+        }
+      });
+      moves[i] = legalMoves.get(legalMoves.size() / 2);
+      packedMoves[i] = PackedMove.fromMove(states[i], moves[i]);
+    }
+  }
+
+  @Benchmark
+  public void copyState(Blackhole blackhole) {
+    for (State state : states) {
+      blackhole.consume(state.copy());
+    }
+  }
+
+  @Benchmark
+  public void makeMove(Blackhole blackhole) {
+    for (int i = 0; i < states.length; i++) {
+      State state = states[i].copy();
+      stateChanger.makeMove(state, moves[i]);
+      blackhole.consume(state);
+    }
+  }
+
+  @Benchmark
+  public void makeUnmakeMove(Blackhole blackhole) {
+    for (int i = 0; i < states.length; i++) {
+      stateChanger.makeMove(states[i], packedMoves[i], undo);
+      blackhole.consume(states[i].getZobristKey());
+      stateChanger.unmakeMove(states[i], undo);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.org.zhaohui.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.org.zhaohui.bench.BenchmarkPositions.Phase;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.MoveList;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+/**
+ * JMH benchmarks for StateExplorerImpl. One operation covers every position
+ * of the phase's corpus (BenchmarkPositions.of(phase)).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class StateExplorerBenchmark {
+  @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+  public Phase phase;
+
+  private final StateExplorerImpl stateExplorer = StateExplorerImpl
+      .getInstance();
+  private final MoveList moveList = new MoveList();
+  private State[] states;
+  /** legalMoves[i] are the moves isIllegalMove is asked about in states[i] */
+  private Move[][] legalMoves;
+
+  @Setup
+  public void setup() {
+    List<State> corpus = BenchmarkPositions.of(phase);
+    states = corpus.toArray(new State[corpus.size()]);
+    legalMoves = new Move[states.length][];
+    for (int i = 0; i < states.length; i++) {
+      legalMoves[i] = stateExplorer.getPossibleMoves(states[i]).toArray(
+          new Move[0]);
+    }
+  }
+
+  @Benchmark
+  public void getPossibleMoves(Blackhole blackhole) {
+    for (State state : states) {
+      blackhole.consume(stateExplorer.getPossibleMoves(state));
+    }
+  }
+
+  @Benchmark
+  public void getPossibleMovesIntoMoveList(Blackhole blackhole) {
+    for (State state : states) {
+      blackhole.consume(stateExplorer.getPossibleMoves(state, moveList));
+    }
+  }
+
+  @Benchmark
+  public void getPossibleStartPositions(Blackhole blackhole) {
+    for (State state : states) {
+      blackhole.consume(stateExplorer.getPossibleStartPositions(state));
+    }
+  }
+
+  @Benchmark
+  public void isIllegalMove(Blackhole blackhole) {
+    for (int i = 0; i < states.length; i++) {
+      for (Move move : legalMoves[i]) {
+        blackhole.consume(stateExplorer.isIllegalMove(states[i], move));
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.org.zhaohui.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.org.zhaohui.bench.BenchmarkPositions.Phase;
+import com.org.zhaohui.client.game.StateSerializer;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * JMH benchmarks for StateSerializer. One operation serializes (or
+ * unserializes) every position of the phase's corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class StateSerializerBenchmark {
+  @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+  public Phase phase;
+
+  private final StateSerializer serializer = StateSerializer.getInstance();
+  private State[] states;
+  private String[] serialized;
+
+  @Setup
+  public void setup() {
+    List<State> corpus = BenchmarkPositions.of(phase);
+    states = corpus.toArray(new State[corpus.size()]);
+    serialized = new String[states.length];
+    for (int i = 0; i < states.length; i++) {
+      serialized[i] = serializer.serializeState(states[i]);
+    }
+  }
+
+  @Benchmark
+  public void serializeState(Blackhole blackhole) {
+    for (State state : states) {
+      blackhole.consume(serializer.serializeState(state));
+    }
+  }
+
+  @Benchmark
+  public void unSrializeState(Blackhole blackhole) {
+    for (String state : serialized) {
+      blackhole.consume(serializer.unSrializeState(state));
+    }
+  }
+}
@@ -9,20 +9,16 @@ import com.org.zhaohui.shared.basics.Position;
 import com.org.zhaohui.shared.basics.State;
 
 public class StateSerializer {
-	private static StateSerializer instance;
+	private static final StateSerializer INSTANCE = new StateSerializer();
 
 	private StateSerializer() {
 	}
 
+	/**
+	 * Returns the shared instance; it holds no state, so threads may share it.
+	 */
 	public static StateSerializer getInstance() {
-		if (instance == null) {
-			synchronized (StateSerializer.class) {
-				if (instance == null) {
-					instance = new StateSerializer();
-				}
-			}
-		}
-		return instance;
+		return INSTANCE;
 	}
 
 	public String serializeState(State state) {
@@ -169,7 +165,7 @@ public class StateSerializer {
 						} else if (pieceStr.substring(1).equals("P")) {
 							kind = PieceKind.PAWN;
 						}
-						piece = new Piece(pieceCol, kind);
+						piece = Piece.of(pieceCol, kind);
 					}
 					board[i][j] = piece;
 				}
@@ -194,7 +190,7 @@ public class StateSerializer {
 			} else {
 				int row = Integer.parseInt(splitsStr[3].substring(1, 2));
 				int col = Integer.parseInt(splitsStr[3].substring(2, 3));
-				enpassantPosition = new Position(row, col);
+				enpassantPosition = Position.of(row, col);
 			}
 
 			GameResult gameResult;
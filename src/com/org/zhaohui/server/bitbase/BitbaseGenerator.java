@@ -0,0 +1,338 @@
+package com.org.zhaohui.server.bitbase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.Bitboards;
+import com.org.zhaohui.shared.logics.MoveList;
+import com.org.zhaohui.shared.logics.StateChanger;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+/**
+ * Solves KQK, KRK and KPK by retrograde analysis and writes the bitbases
+ * Bitbases reads. See
+ * http://chessprogramming.wikispaces.com/Retrograde+Analysis
+ *
+ * Every index of Bitbases.index() is set up on a State and its legal moves
+ * are played once to record the index each one leads to. The positions where
+ * the strong side (white) wins then grow from the checkmates, pass by pass:
+ * white to move wins if some move reaches a won position, black to move
+ * loses if every move does. Nothing changes after as many passes as the
+ * longest win has plies; what is left is drawn. A pass reads the wins of the
+ * previous one only, so the positions are split into chunks solved in
+ * parallel, and the result does not depend on the number of threads.
+ *
+ * A promotion leaves the ending, so KPK needs the KQK and KRK results, given
+ * as a Bitbases; the other promotions and the capture of the strong piece
+ * draw.
+ *
+ * Run main to write all three bitbases, see USAGE.
+ *
+ * @author zhaohui
+ *
+ */
+public final class BitbaseGenerator {
+  private static final String USAGE = "usage:\n"
+      + "  BitbaseGenerator [-threads n] directory";
+  /** positions per chunk, a multiple of 64 so chunks own whole words */
+  private static final int CHUNK = 1 << 13;
+  /** successor of a move leaving the ending drawn */
+  private static final int DRAWN = -1;
+  /** successor of a move leaving the ending won for white */
+  private static final int WON = -2;
+
+  private final StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+  private final StateChanger stateChanger = StateChangerImpl.getInstance();
+  private final ExecutorService executor;
+
+  /**
+   * Creates a generator running its chunks on executor.
+   */
+  public BitbaseGenerator(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the bitbase of a king and a piece of kind against a king, a bit
+   * per Bitbases.index() set iff white wins. A KPK needs the KQK and KRK
+   * bitbases in solved.
+   */
+  public long[] generate(final PieceKind kind, final Bitbases solved) {
+    if (kind == PieceKind.PAWN
+        && !(solved.has(PieceKind.QUEEN) && solved.has(PieceKind.ROOK))) {
+      throw new IllegalArgumentException("KPK needs KQK and KRK");
+    }
+    final Chunk[] chunks = new Chunk[Bitbases.POSITIONS / CHUNK];
+    List<Callable<Long>> tasks = Lists.newArrayList();
+    for (int i = 0; i < chunks.length; i++) {
+      final int first = i * CHUNK;
+      final int chunk = i;
+      tasks.add(new Callable<Long>() {
+        @Override
+        public Long call() {
+          chunks[chunk] = new Chunk(first, kind, solved);
+          return 0L;
+        }
+      });
+    }
+    runAll(tasks);
+
+    long[] wins = new long[Bitbases.POSITIONS / 64];
+    for (Chunk chunk : chunks) {
+      chunk.addMates(wins);
+    }
+    long changed;
+    do {
+      final long[] previous = wins;
+      final long[] next = wins.clone();
+      tasks.clear();
+      for (final Chunk chunk : chunks) {
+        tasks.add(new Callable<Long>() {
+          @Override
+          public Long call() {
+            return chunk.pass(previous, next);
+          }
+        });
+      }
+      changed = runAll(tasks);
+      wins = next;
+    } while (changed > 0);
+    return wins;
+  }
+
+  /**
+   * Runs tasks on the executor and returns the sum of their results.
+   */
+  private long runAll(List<Callable<Long>> tasks) {
+    long sum = 0;
+    try {
+      for (Future<Long> future : executor.invokeAll(tasks)) {
+        sum += future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    return sum;
+  }
+
+  /**
+   * The moves of CHUNK consecutive positions, as successor indexes, DRAWN or
+   * WON.
+   */
+  private final class Chunk {
+    private final int first;
+    /** the successors of position first + i are from starts[i] on */
+    private final int[] starts = new int[CHUNK + 1];
+    private int[] successors = new int[CHUNK * 8];
+    /** the checkmates of the chunk, black to move */
+    private final long[] mates = new long[CHUNK / 64];
+
+    Chunk(int first, PieceKind kind, Bitbases solved) {
+      this.first = first;
+      State state = new State(Color.WHITE, new Piece[State.ROWS][State.COLS],
+          new boolean[2], new boolean[2], null, 0, null);
+      MoveList moves = new MoveList();
+      UndoStack undo = new UndoStack();
+      int size = 0;
+      for (int i = 0; i < CHUNK; i++) {
+        starts[i] = size;
+        int index = first + i;
+        if (!setUp(state, index, kind)) {
+          continue;
+        }
+        int count = stateExplorer.getPossibleMoves(state, moves);
+        if (count == 0 && state.getTurn() == Color.BLACK
+            && stateExplorer.isInCheck(state)) {
+          mates[i >>> 6] |= 1L << i;
+        }
+        if (size + count > successors.length) {
+          successors = Arrays.copyOf(successors, 2 * (size + count));
+        }
+        for (int m = 0; m < count; m++) {
+          stateChanger.makeMove(state, moves.get(m), undo);
+          successors[size++] = successor(state, kind, solved);
+          stateChanger.unmakeMove(state, undo);
+        }
+        tearDown(state, index);
+      }
+      starts[CHUNK] = size;
+      successors = Arrays.copyOf(successors, size);
+    }
+
+    void addMates(long[] wins) {
+      System.arraycopy(mates, 0, wins, first / 64, mates.length);
+    }
+
+    /**
+     * Sets the wins of the chunk in next from the wins in previous, and
+     * returns how many positions became won.
+     */
+    long pass(long[] previous, long[] next) {
+      long changed = 0;
+      for (int i = 0; i < CHUNK; i++) {
+        int index = first + i;
+        if (isSet(previous, index) || starts[i] == starts[i + 1]) {
+          continue;
+        }
+        boolean whiteToMove = index < Bitbases.POSITIONS / 2;
+        // white needs one winning move, black must have nothing else
+        boolean won = !whiteToMove;
+        for (int s = starts[i]; s < starts[i + 1]; s++) {
+          int successor = successors[s];
+          boolean wins = successor == WON || successor >= 0
+              && isSet(previous, successor);
+          if (wins == whiteToMove) {
+            won = whiteToMove;
+            break;
+          }
+        }
+        if (won) {
+          next[index >>> 6] |= 1L << index;
+          changed++;
+        }
+      }
+      return changed;
+    }
+  }
+
+  private static boolean isSet(long[] bits, int index) {
+    return (bits[index >>> 6] & 1L << index) != 0;
+  }
+
+  /**
+   * Puts the pieces of index on state, which must be empty, and returns
+   * true, or false and leaves state empty if the position is impossible:
+   * pieces on one square, touching kings, a pawn on the first or last row,
+   * or black in check with white to move.
+   */
+  private static boolean setUp(State state, int index, PieceKind kind) {
+    int whiteKing = (index >>> 12) & 63;
+    int blackKing = (index >>> 6) & 63;
+    int piece = index & 63;
+    if (whiteKing == blackKing || whiteKing == piece || blackKing == piece
+        || Math.abs(Bitboards.row(whiteKing) - Bitboards.row(blackKing)) < 2
+        && Math.abs(Bitboards.col(whiteKing) - Bitboards.col(blackKing)) < 2
+        || kind == PieceKind.PAWN && (Bitboards.row(piece) == 0
+            || Bitboards.row(piece) == State.ROWS - 1)) {
+      return false;
+    }
+    boolean whiteToMove = index < Bitbases.POSITIONS / 2;
+    state.setTurn(whiteToMove ? Color.WHITE : Color.BLACK);
+    put(state, whiteKing, Piece.of(Color.WHITE, PieceKind.KING));
+    put(state, blackKing, Piece.of(Color.BLACK, PieceKind.KING));
+    put(state, piece, Piece.of(Color.WHITE, kind));
+    if (whiteToMove && Bitboards.isAttacked(state, blackKing, Color.WHITE)) {
+      tearDown(state, index);
+      return false;
+    }
+    return true;
+  }
+
+  private static void tearDown(State state, int index) {
+    put(state, (index >>> 12) & 63, null);
+    put(state, (index >>> 6) & 63, null);
+    put(state, index & 63, null);
+  }
+
+  private static void put(State state, int square, Piece piece) {
+    state.setPiece(Bitboards.row(square), Bitboards.col(square), piece);
+  }
+
+  /**
+   * Returns the index of state, reached by a move from a position of kind,
+   * or DRAWN or WON if the move left the ending.
+   */
+  private static int successor(State state, PieceKind kind, Bitbases solved) {
+    if (Bitboards.count(state.getOccupied()) == 2) {
+      return DRAWN;
+    }
+    if (state.getBitboard(Color.WHITE, kind) == Bitboards.EMPTY) {
+      // a promotion, with black to move
+      return solved.probe(state) == Bitbases.LOSS ? WON : DRAWN;
+    }
+    return Bitbases.index(state.getTurn() == Color.WHITE,
+        Bitboards.first(state.getBitboard(Color.WHITE, PieceKind.KING)),
+        Bitboards.first(state.getBitboard(Color.BLACK, PieceKind.KING)),
+        Bitboards.first(state.getBitboard(Color.WHITE, kind)));
+  }
+
+  /**
+   * Returns bits laid out as in a bitbase file: bit i in byte i / 8.
+   */
+  static ByteBuffer toBuffer(long[] bits) {
+    ByteBuffer buffer = ByteBuffer.allocate(bits.length * 8).order(
+        ByteOrder.LITTLE_ENDIAN);
+    buffer.asLongBuffer().put(bits);
+    return buffer;
+  }
+
+  /**
+   * Writes bits, a bitbase of generate(), to file.
+   */
+  public static void write(long[] bits, File file) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      output.write(toBuffer(bits).array());
+    } finally {
+      output.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int i = 0;
+    if (args.length > 1 && args[0].equals("-threads")) {
+      threads = Integer.parseInt(args[1]);
+      i = 2;
+    }
+    if (args.length - i != 1 || threads < 1) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    File directory = new File(args[i]);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("cannot create " + directory);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      BitbaseGenerator generator = new BitbaseGenerator(executor);
+      Bitbases solved = new Bitbases();
+      for (PieceKind kind : Bitbases.KINDS) {
+        long start = System.currentTimeMillis();
+        long[] bits = generator.generate(kind, solved);
+        File file = new File(directory, Bitbases.getFileName(kind));
+        write(bits, file);
+        solved.put(kind, toBuffer(bits));
+        long wins = 0;
+        for (long word : bits) {
+          wins += Long.bitCount(word);
+        }
+        System.out.println(file + ": " + wins + " positions won, "
+            + (System.currentTimeMillis() - start) + " ms");
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.org.zhaohui.server.bitbase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.Bitboards;
+
+/**
+ * Knows the outcome of every position of a king and a queen, rook or pawn
+ * against a lone king (KQK, KRK and KPK) with perfect play, from bitbases
+ * written by BitbaseGenerator. See
+ * http://chessprogramming.wikispaces.com/Endgame+Bitbases
+ *
+ * The side with the extra piece (the strong side) can only win or draw
+ * these endings, so a bitbase holds one bit per position: set iff the
+ * strong side wins. Positions are indexed with the strong side as white
+ * (a black strong side is mirrored across the middle of the board) by
+ * index(). Each bitbase is 2^19 bits, 64KB.
+ *
+ * The files are mapped read-only and probed with absolute reads, which
+ * leave the buffers untouched, so any number of searches can probe one
+ * instance at once without locking.
+ *
+ * @author zhaohui
+ *
+ */
+public final class Bitbases {
+  /** the position is not in any bitbase */
+  public static final int UNKNOWN = 0;
+  /** the side to move wins */
+  public static final int WIN = 1;
+  public static final int DRAW = 2;
+  /** the side to move loses */
+  public static final int LOSS = 3;
+
+  /** the piece kinds with a bitbase, in the order they must be generated */
+  static final PieceKind[] KINDS = { PieceKind.QUEEN, PieceKind.ROOK,
+      PieceKind.PAWN };
+  /** positions per bitbase: side to move, strong king, weak king, piece */
+  static final int POSITIONS = 1 << 19;
+  static final int BYTES = POSITIONS / 8;
+
+  private final Map<PieceKind, ByteBuffer> bitbases = Maps
+      .newEnumMap(PieceKind.class);
+
+  /**
+   * Maps the bitbases BitbaseGenerator wrote in directory; endings without
+   * a file are left UNKNOWN.
+   */
+  public static Bitbases open(File directory) throws IOException {
+    Bitbases result = new Bitbases();
+    for (PieceKind kind : KINDS) {
+      File file = new File(directory, getFileName(kind));
+      if (!file.exists()) {
+        continue;
+      }
+      RandomAccessFile input = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = input.getChannel();
+        if (channel.size() != BYTES) {
+          throw new IOException(file + " is not a bitbase");
+        }
+        result.bitbases.put(kind, channel.map(FileChannel.MapMode.READ_ONLY,
+            0, BYTES));
+      } finally {
+        input.close();
+      }
+    }
+    return result;
+  }
+
+  Bitbases() {
+  }
+
+  void put(PieceKind kind, ByteBuffer bitbase) {
+    bitbases.put(kind, bitbase);
+  }
+
+  static String getFileName(PieceKind kind) {
+    return "K" + kind.name().charAt(0) + "K.bitbase";
+  }
+
+  /**
+   * Returns true iff the bitbase of kind is available.
+   */
+  public boolean has(PieceKind kind) {
+    return bitbases.containsKey(kind);
+  }
+
+  /**
+   * Returns WIN, DRAW or LOSS for the side to move of state, or UNKNOWN if
+   * state is not a position of an available bitbase.
+   */
+  public int probe(State state) {
+    long occupied = state.getOccupied();
+    if (Bitboards.count(occupied) != 3) {
+      return UNKNOWN;
+    }
+    Color strong = Bitboards.count(state.getBitboard(Color.WHITE)) == 2
+        ? Color.WHITE : Color.BLACK;
+    long pieces = state.getBitboard(strong)
+        & ~state.getBitboard(strong, PieceKind.KING);
+    for (PieceKind kind : KINDS) {
+      if ((state.getBitboard(strong, kind) & pieces) == Bitboards.EMPTY) {
+        continue;
+      }
+      ByteBuffer bitbase = bitbases.get(kind);
+      if (bitbase == null) {
+        return UNKNOWN;
+      }
+      // flipping the rows mirrors a black strong side to white
+      int flip = strong.isWhite() ? 0 : 56;
+      int index = index(state.getTurn() == strong,
+          Bitboards.first(state.getBitboard(strong, PieceKind.KING)) ^ flip,
+          Bitboards.first(state.getBitboard(strong.getOpposite(),
+              PieceKind.KING)) ^ flip, Bitboards.first(pieces) ^ flip);
+      boolean strongWins = (bitbase.get(index >>> 3) & 1 << (index & 7)) != 0;
+      if (!strongWins) {
+        return DRAW;
+      }
+      return state.getTurn() == strong ? WIN : LOSS;
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Returns the bit of a position with a white strong side: the squares of
+   * the white king, the black king and the white piece, row * 8 + col.
+   */
+  static int index(boolean strongToMove, int strongKing, int weakKing,
+      int piece) {
+    return (strongToMove ? 0 : 1 << 18) | strongKing << 12 | weakKing << 6
+        | piece;
+  }
+}
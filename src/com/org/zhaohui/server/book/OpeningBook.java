@@ -0,0 +1,233 @@
+package com.org.zhaohui.server.book;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+/**
+ * Looks up book moves in a Polyglot opening book, see
+ * http://hgm.nubati.net/book_format.html: 16-byte big-endian entries of a
+ * position key, a move, a weight and 4 bytes of learning data, sorted by
+ * key (compared unsigned). The keys are Polyglot.polyglotKey() and the moves
+ * use the Polyglot encoding, castling included (the king takes its own
+ * rook), so any Polyglot book works, as do those OpeningBookBuilder writes.
+ *
+ * The file is mapped read-only and binary searched in place, so a book of
+ * any size costs no heap. Each probe reads through its own duplicate() of
+ * the mapping (a view, not a copy), so any number of threads can probe one
+ * OpeningBook at once without locking.
+ *
+ * @author zhaohui
+ *
+ */
+public final class OpeningBook {
+  static final int ENTRY_BYTES = 16;
+  /** promotion kinds by their Polyglot code, 1 to 4 */
+  private static final PieceKind[] PROMOTIONS = { null, PieceKind.KNIGHT,
+      PieceKind.BISHOP, PieceKind.ROOK, PieceKind.QUEEN };
+
+  private final ByteBuffer entries;
+  private final int size;
+  private final StateExplorer stateExplorer;
+
+  /**
+   * Maps file, a book written by OpeningBookBuilder.
+   */
+  public static OpeningBook open(File file) throws IOException {
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = input.getChannel();
+      if (channel.size() % ENTRY_BYTES != 0
+          || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(file + " is not a book");
+      }
+      // the mapping stays valid once the file is closed
+      return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size()), StateExplorerImpl.getInstance());
+    } finally {
+      input.close();
+    }
+  }
+
+  OpeningBook(ByteBuffer entries, StateExplorer stateExplorer) {
+    this.entries = entries;
+    this.size = entries.capacity() / ENTRY_BYTES;
+    this.stateExplorer = stateExplorer;
+  }
+
+  /**
+   * Returns the number of entries in the book.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the book moves of state, the highest weight first, or an empty
+   * list when the position is not in the book. Moves that are not legal in
+   * state (left by a key collision) are skipped.
+   */
+  public List<Move> getMoves(State state) {
+    List<BookMove> bookMoves = collect(state);
+    // the builder writes the moves of a position by decreasing weight, but
+    // other tools need not
+    Collections.sort(bookMoves, new Comparator<BookMove>() {
+      @Override
+      public int compare(BookMove a, BookMove b) {
+        return b.weight - a.weight;
+      }
+    });
+    List<Move> moves = Lists.newArrayList();
+    for (BookMove bookMove : bookMoves) {
+      moves.add(bookMove.move);
+    }
+    return moves;
+  }
+
+  /**
+   * Returns a book move of state chosen at random with a probability
+   * proportional to its weight, or null when there is none.
+   */
+  public Move pickMove(State state, Random random) {
+    List<BookMove> bookMoves = collect(state);
+    int total = 0;
+    for (BookMove bookMove : bookMoves) {
+      total += bookMove.weight;
+    }
+    if (total == 0) {
+      // all weights 0: the moves are playable but nothing says which best
+      return bookMoves.isEmpty() ? null : bookMoves.get(random
+          .nextInt(bookMoves.size())).move;
+    }
+    int pick = random.nextInt(total);
+    for (BookMove bookMove : bookMoves) {
+      pick -= bookMove.weight;
+      if (pick < 0) {
+        return bookMove.move;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private static final class BookMove {
+    private final Move move;
+    private final int weight;
+
+    BookMove(Move move, int weight) {
+      this.move = move;
+      this.weight = weight;
+    }
+  }
+
+  private List<BookMove> collect(State state) {
+    List<BookMove> bookMoves = Lists.newArrayList();
+    ByteBuffer entries = this.entries.duplicate();
+    long key = Polyglot.polyglotKey(state);
+    Set<Move> legal = null;
+    for (int i = firstIndex(entries, key); i < size
+        && getKey(entries, i) == key; i++) {
+      int offset = i * ENTRY_BYTES;
+      Move move = decode(state, entries.getShort(offset + 8) & 0xFFFF);
+      if (legal == null) {
+        legal = stateExplorer.getPossibleMoves(state);
+      }
+      if (move != null && legal.contains(move)) {
+        bookMoves.add(new BookMove(move, entries.getShort(offset + 10)
+            & 0xFFFF));
+      }
+    }
+    return bookMoves;
+  }
+
+  private static long getKey(ByteBuffer entries, int index) {
+    return entries.getLong(index * ENTRY_BYTES);
+  }
+
+  /**
+   * Returns the index of the first entry whose key is not below key.
+   */
+  private int firstIndex(ByteBuffer entries, long key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareUnsigned(getKey(entries, middle), key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  static int compareUnsigned(long a, long b) {
+    a ^= Long.MIN_VALUE;
+    b ^= Long.MIN_VALUE;
+    return a < b ? -1 : a == b ? 0 : 1;
+  }
+
+  /**
+   * Returns the Polyglot encoding of move, a legal move of state.
+   */
+  static int encode(State state, Move move) {
+    Position from = move.getFrom();
+    Position to = move.getTo();
+    int toCol = to.getCol();
+    Piece piece = state.getPiece(from);
+    if (piece.getKind() == PieceKind.KING
+        && Math.abs(toCol - from.getCol()) == 2) {
+      toCol = toCol > from.getCol() ? State.COLS - 1 : 0;
+    }
+    int promotion = 0;
+    for (int i = 1; i < PROMOTIONS.length; i++) {
+      if (PROMOTIONS[i] == move.getPromoteToPiece()) {
+        promotion = i;
+      }
+    }
+    return toCol | to.getRow() << 3 | from.getCol() << 6
+        | from.getRow() << 9 | promotion << 12;
+  }
+
+  /**
+   * Returns the move of state that the Polyglot encoding move stands for, or
+   * null if it cannot be one.
+   */
+  static Move decode(State state, int move) {
+    int toCol = move & 7;
+    int toRow = (move >>> 3) & 7;
+    int fromCol = (move >>> 6) & 7;
+    int fromRow = (move >>> 9) & 7;
+    int promotion = (move >>> 12) & 7;
+    if (promotion >= PROMOTIONS.length) {
+      return null;
+    }
+    Piece piece = state.getPiece(fromRow, fromCol);
+    Piece target = state.getPiece(toRow, toCol);
+    if (piece != null && piece.getKind() == PieceKind.KING && target != null
+        && target.getColor() == piece.getColor()
+        && target.getKind() == PieceKind.ROOK) {
+      toCol = toCol > fromCol ? fromCol + 2 : fromCol - 2;
+    }
+    if (fromRow == toRow && fromCol == toCol) {
+      return null;
+    }
+    return Move.of(Position.of(fromRow, fromCol), Position.of(toRow, toCol),
+        PROMOTIONS[promotion]);
+  }
+}
@@ -0,0 +1,200 @@
+package com.org.zhaohui.server.book;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateChanger;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+/**
+ * Collects weighted book moves and writes them as a book OpeningBook reads.
+ * The weight of a move is the sum of the weights it was added with, capped
+ * at 65535 when written.
+ *
+ * Run main to build a book from games given as lines of moves in coordinate
+ * notation, see USAGE: every move of the first plies of each game gets
+ * weight 1, so the book plays moves as often as the games did.
+ *
+ * @author zhaohui
+ *
+ */
+public final class OpeningBookBuilder {
+  private static final String USAGE = "usage:\n"
+      + "  OpeningBookBuilder [-plies n] games.txt book.bin\n"
+      + "games.txt holds a game per line: moves like e2e4 e7e5 g1f3";
+  private static final int DEFAULT_PLIES = 16;
+  private static final int MAX_WEIGHT = 0xFFFF;
+
+  /** the weights of each position key and Polyglot move, sorted on write */
+  private final Map<Entry, Integer> weights = Maps.newHashMap();
+
+  private static final class Entry {
+    private final long key;
+    private final int move;
+
+    Entry(long key, int move) {
+      this.key = key;
+      this.move = move;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (key ^ (key >>> 32)) * 31 + move;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Entry)) {
+        return false;
+      }
+      Entry other = (Entry) obj;
+      return key == other.key && move == other.move;
+    }
+  }
+
+  /**
+   * Adds weight to move, a legal move of state.
+   */
+  public void add(State state, Move move, int weight) {
+    Entry entry = new Entry(Polyglot.polyglotKey(state), OpeningBook.encode(
+        state, move));
+    Integer old = weights.get(entry);
+    weights.put(entry, old == null ? weight : old + weight);
+  }
+
+  /**
+   * Returns the number of distinct position and move pairs added.
+   */
+  public int size() {
+    return weights.size();
+  }
+
+  /**
+   * Writes the book to file, the moves of each position by decreasing
+   * weight.
+   */
+  public void write(File file) throws IOException {
+    Entry[] entries = weights.keySet().toArray(new Entry[weights.size()]);
+    Arrays.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry a, Entry b) {
+        int byKey = OpeningBook.compareUnsigned(a.key, b.key);
+        return byKey != 0 ? byKey : weights.get(b) - weights.get(a);
+      }
+    });
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file)));
+    try {
+      for (Entry entry : entries) {
+        output.writeLong(entry.key);
+        output.writeShort(entry.move);
+        output.writeShort(Math.min(weights.get(entry), MAX_WEIGHT));
+        output.writeInt(0);
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Adds the first plies moves of game, moves in coordinate notation
+   * separated by spaces, with weight 1 each. Stops at the first move that is
+   * not legal.
+   */
+  public void addGame(String game, int plies) {
+    StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+    StateChanger stateChanger = StateChangerImpl.getInstance();
+    State state = new State();
+    String[] moves = game.trim().split("\\s+");
+    for (int i = 0; i < moves.length && i < plies; i++) {
+      Move move = parse(moves[i]);
+      if (move == null
+          || !stateExplorer.getPossibleMoves(state).contains(move)) {
+        return;
+      }
+      add(state, move, 1);
+      stateChanger.makeMove(state, move);
+    }
+  }
+
+  /**
+   * Returns the move written move in coordinate notation (e2e4, e7e8q), or
+   * null if it is not one.
+   */
+  static Move parse(String move) {
+    if (move.length() != 4 && move.length() != 5) {
+      return null;
+    }
+    Position from = square(move.charAt(0), move.charAt(1));
+    Position to = square(move.charAt(2), move.charAt(3));
+    PieceKind promotion = null;
+    if (move.length() == 5) {
+      switch (move.charAt(4)) {
+      case 'q':
+        promotion = PieceKind.QUEEN;
+        break;
+      case 'r':
+        promotion = PieceKind.ROOK;
+        break;
+      case 'b':
+        promotion = PieceKind.BISHOP;
+        break;
+      case 'n':
+        promotion = PieceKind.KNIGHT;
+        break;
+      default:
+        return null;
+      }
+    }
+    return from == null || to == null ? null : Move.of(from, to, promotion);
+  }
+
+  private static Position square(char file, char rank) {
+    if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+      return null;
+    }
+    return Position.of(rank - '1', file - 'a');
+  }
+
+  public static void main(String[] args) throws IOException {
+    int plies = DEFAULT_PLIES;
+    int i = 0;
+    if (args.length > 1 && args[0].equals("-plies")) {
+      plies = Integer.parseInt(args[1]);
+      i = 2;
+    }
+    if (args.length - i != 2) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    OpeningBookBuilder builder = new OpeningBookBuilder();
+    BufferedReader games = new BufferedReader(new FileReader(args[i]));
+    try {
+      String game;
+      while ((game = games.readLine()) != null) {
+        if (!game.trim().isEmpty()) {
+          builder.addGame(game, plies);
+        }
+      }
+    } finally {
+      games.close();
+    }
+    builder.write(new File(args[i + 1]));
+    System.out.println(builder.size() + " entries written to " + args[i + 1]);
+  }
+}
@@ -0,0 +1,681 @@
+package com.org.zhaohui.server.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.org.zhaohui.server.bitbase.Bitbases;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.MoveFilter;
+import com.org.zhaohui.shared.logics.MoveHistory;
+import com.org.zhaohui.shared.logics.MovePicker;
+import com.org.zhaohui.shared.logics.PackedMove;
+import com.org.zhaohui.shared.logics.StaticExchange;
+import com.org.zhaohui.shared.logics.StateChanger;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+/**
+ * Chooses a move: negamax alpha-beta search with iterative deepening and a
+ * principal variation search window, see
+ * http://chessprogramming.wikispaces.com/Principal+Variation+Search
+ *
+ * Each iteration searches one ply deeper than the last and tries the previous
+ * principal variation first, so the later iterations cut off early and a
+ * search stopped by its SearchLimits (a deadline, a node budget or a stop
+ * flag) still has the result of the last completed depth. Moves come from
+ * StateExplorer.getMovePicker and are played with the packed
+ * makeMove/unmakeMove of StateChanger on a copy of the given state, so
+ * callers' states are never touched. Repetitions within the searched line
+ * and the fifty-move rule score as draws.
+ *
+ * At depth 0 a quiescence search takes over: it plays only captures and
+ * queen promotions until the position is quiet, so a line never ends in the
+ * middle of an exchange. The side to move may always stand pat on the
+ * evaluation instead, and captures that StaticExchange says lose material
+ * are skipped. In check it tries every evasion, as there is no standing pat.
+ *
+ * With setBitbases, positions of KQK, KRK and KPK reaching depth 0 are looked
+ * up instead: a won one scores KNOWN_WIN plus the evaluation, so lines that
+ * make progress are preferred, and the mates found by the search above the
+ * leaves still score higher.
+ *
+ * Moves are ordered by MovePicker: the principal variation or table move
+ * first, then captures by MVV-LVA, then killer moves and the other quiet
+ * moves by their history score, both learned from the cut-offs of the
+ * current search.
+ *
+ * Results are kept in a TranspositionTable: its best move is tried first and,
+ * outside the principal variation, a deep enough entry ends the search of
+ * the position right away. The table is the only search state kept between
+ * calls; it is lock-free, so an instance can be shared by threads, each
+ * running searches of its own.
+ *
+ * With setThreads(n), n - 1 helper threads search the same root alongside
+ * (Lazy SMP, see http://chessprogramming.wikispaces.com/Lazy+SMP). They
+ * share nothing but the transposition table, where they leave results that
+ * the main thread picks up. Helpers with an odd number start one ply deeper
+ * and none of them follows the previous principal variation, so they tend
+ * to explore other parts of the tree. The main thread alone decides when to
+ * stop and what to return; the node counts are those of all threads. The
+ * helpers run on a pool of daemon threads the Engine keeps from search to
+ * search, grown while searches run at once so that every helper has a
+ * thread of its own; shutdown() stops them.
+ *
+ * Run main for a command line tool, see USAGE.
+ *
+ * @author zhaohui
+ *
+ */
+public class Engine {
+  /** the score of mating at the root; mate in n plies scores MATE - n */
+  public static final int MATE = 30000;
+  /** the deepest ply searched */
+  public static final int MAX_PLY = 128;
+  /** scores at least this far from 0 are mates */
+  public static final int MATE_BOUND = MATE - MAX_PLY;
+  /** the least score of a position the bitbases say is won */
+  public static final int KNOWN_WIN = 20000;
+
+  private static final int INFINITY = MATE + 1;
+  /** the clock is read once every this many nodes (a power of 2) */
+  private static final int NODES_BETWEEN_CLOCK_CHECKS = 2048;
+  private static final String USAGE = "usage:\n"
+      + "  Engine [-depth n] [-movetime millis] [-nodes n]"
+      + " [-clock millis [-increment millis]]\n"
+      + "         [-hash megabytes] [-threads n] [-bitbases directory]"
+      + " [fen]";
+  private static final long DEFAULT_MOVE_TIME_MILLIS = 5000;
+  private static final long DEFAULT_TABLE_MEGABYTES = 16;
+
+  private final StateExplorer stateExplorer;
+  private final StateChanger stateChanger;
+  private final Evaluator evaluator;
+  private final TranspositionTable table;
+  private volatile int threads = 1;
+  /** runs the helpers, null until a search needs one; guarded by this */
+  private ThreadPoolExecutor helperPool;
+  /** the helpers of the searches running now; guarded by this */
+  private int runningHelpers;
+  private volatile Bitbases bitbases;
+
+  public Engine() {
+    this(StateExplorerImpl.getInstance(), StateChangerImpl.getInstance(),
+        new PieceSquareEvaluator(), new TranspositionTable(
+            DEFAULT_TABLE_MEGABYTES));
+  }
+
+  public Engine(StateExplorer stateExplorer, StateChanger stateChanger,
+      Evaluator evaluator, TranspositionTable table) {
+    this.stateExplorer = stateExplorer;
+    this.stateChanger = stateChanger;
+    this.evaluator = evaluator;
+    this.table = table;
+  }
+
+  public TranspositionTable getTranspositionTable() {
+    return table;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets how many threads each search uses, 1 (the default) for none but
+   * the caller's. Takes effect from the next search, which grows the pool of
+   * helper threads if needed.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Stops the helper threads once the running searches are done. A later
+   * search with more than one thread starts new ones.
+   */
+  public synchronized void shutdown() {
+    if (helperPool != null) {
+      helperPool.shutdown();
+      helperPool = null;
+    }
+  }
+
+  /**
+   * Submits helpers to the pool of helper threads, started or grown first so
+   * that the helpers of every running search have a thread each and none
+   * waits for another search. Holds the lock of shutdown(), which cannot
+   * come in between.
+   */
+  private synchronized List<Future<?>> startHelpers(List<Searcher> helpers) {
+    if (helperPool == null) {
+      helperPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("engine-helper-%d").build());
+    }
+    runningHelpers += helpers.size();
+    if (runningHelpers > helperPool.getCorePoolSize()) {
+      helperPool.setCorePoolSize(runningHelpers);
+    }
+    List<Future<?>> helping = Lists.newArrayList();
+    for (final Searcher helper : helpers) {
+      helping.add(helperPool.submit(new Runnable() {
+        @Override
+        public void run() {
+          helper.help();
+        }
+      }));
+    }
+    return helping;
+  }
+
+  /**
+   * Called once the count helpers of a search have returned; shrinks the
+   * pool back to what the searches still running and the next one need.
+   */
+  private synchronized void helpersDone(int count) {
+    runningHelpers -= count;
+    if (helperPool != null) {
+      helperPool.setCorePoolSize(Math.max(runningHelpers, threads - 1));
+    }
+  }
+
+  public Bitbases getBitbases() {
+    return bitbases;
+  }
+
+  /**
+   * Sets the endgame bitbases looked up at the leaves, null (the default) for
+   * none. Takes effect from the next search.
+   */
+  public void setBitbases(Bitbases bitbases) {
+    this.bitbases = bitbases;
+  }
+
+  /**
+   * Searches state within limits and returns the best move found.
+   */
+  public SearchResult search(State state, SearchLimits limits) {
+    return search(state, limits, null);
+  }
+
+  /**
+   * Same as search(state, limits), telling listener (if not null) about each
+   * completed iteration.
+   */
+  public SearchResult search(State state, SearchLimits limits,
+      SearchListener listener) {
+    table.newSearch();
+    AtomicBoolean stop = new AtomicBoolean();
+    List<Searcher> helpers = Lists.newArrayList();
+    for (int i = 1; i < threads; i++) {
+      helpers.add(new Searcher(state.copy(), limits, i, stop,
+          ImmutableList.<Searcher> of()));
+    }
+    Searcher main = new Searcher(state.copy(), limits, 0, stop, helpers);
+    List<Future<?>> helping = helpers.isEmpty() ? ImmutableList
+        .<Future<?>> of() : startHelpers(helpers);
+    SearchResult result;
+    try {
+      result = main.run(listener);
+    } finally {
+      stop.set(true);
+      // the counters of a helper may only be read once it has returned, so
+      // an interrupt does not end the wait, it is passed on after it
+      Throwable failure = null;
+      for (Future<?> future : helping) {
+        try {
+          Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+          failure = e.getCause();
+        }
+      }
+      if (!helpers.isEmpty()) {
+        helpersDone(helpers.size());
+      }
+      main.addStatistics();
+      for (Searcher helper : helpers) {
+        helper.addStatistics();
+      }
+      if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+    }
+    // the helpers have stopped, so their node counts are final now
+    return helpers.isEmpty() ? result : result.withNodes(main.totalNodes());
+  }
+
+  /**
+   * Owns the state being searched, its undo stack and the per-ply buffers, so
+   * a search allocates almost nothing once started.
+   */
+  private class Searcher {
+    private final State state;
+    private final SearchLimits limits;
+    private final long startNanos = System.nanoTime();
+    /** when the search must stop, Long.MAX_VALUE for never */
+    private final long deadlineNanos;
+    /** the nodes the search may visit, Long.MAX_VALUE for no limit */
+    private final long nodeLimit;
+    /** set by the caller to stop the search, or null */
+    private final AtomicBoolean stopFlag;
+    private final Bitbases bitbases = Engine.this.bitbases;
+    private final Evaluator evaluator = Engine.this.evaluator.forThread();
+    private final UndoStack undo = new UndoStack();
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final MoveHistory history = new MoveHistory(MAX_PLY);
+    /** pv[ply][ply..pvLength[ply]) is the best line found below ply */
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    /** the Zobrist keys of the positions along the current line */
+    private final long[] keys = new long[MAX_PLY + 1];
+    /** 0 for the main thread, which stops the helpers when it is done */
+    private final int id;
+    private final AtomicBoolean stop;
+    private final List<Searcher> helpers;
+    private int[] previousPv = new int[0];
+    private boolean followingPv;
+    private boolean canStop;
+    private boolean stopped;
+    private long nodes;
+    /** nodes as of the last clock check, for other threads to read */
+    private volatile long publishedNodes;
+    private long tableProbes;
+    private long tableHits;
+    private long tableStores;
+
+    Searcher(State state, SearchLimits limits, int id, AtomicBoolean stop,
+        List<Searcher> helpers) {
+      this.state = state;
+      this.limits = limits;
+      this.id = id;
+      this.stop = stop;
+      this.helpers = helpers;
+      long deadline = Long.MAX_VALUE;
+      if (limits.getMoveTimeMillis() > 0) {
+        deadline = startNanos + limits.getMoveTimeMillis() * 1000000;
+      }
+      if (limits.getDeadlineMillis() > 0) {
+        deadline = Math.min(deadline, startNanos
+            + (limits.getDeadlineMillis() - System.currentTimeMillis())
+            * 1000000);
+      }
+      deadlineNanos = deadline;
+      // the helpers stop with the main thread, which counts for them all
+      nodeLimit = limits.getNodes() == 0 || id > 0 ? Long.MAX_VALUE : limits
+          .getNodes();
+      stopFlag = limits.getStopFlag();
+    }
+
+    SearchResult run(SearchListener listener) {
+      if (!stateExplorer.hasAnyLegalMove(state)) {
+        int score = stateExplorer.isInCheck(state) ? -MATE : 0;
+        return new SearchResult(previousPv, score, 0, 0, elapsedNanos());
+      }
+      SearchResult result = null;
+      for (int depth = 1; depth <= maxDepth(); depth++) {
+        followingPv = true;
+        int score = search(depth, 0, -INFINITY, INFINITY);
+        if (stopped) {
+          break;
+        }
+        previousPv = new int[pvLength[0]];
+        System.arraycopy(pv[0], 0, previousPv, 0, previousPv.length);
+        result = new SearchResult(previousPv, score, depth, totalNodes(),
+            elapsedNanos());
+        if (listener != null) {
+          listener.iterationDone(result);
+        }
+        canStop = true;
+        // a mate within the full-width depth is exact, but one surfaced by
+        // the quiescence search, the table or a bitbase leaf may shorten
+        // deeper down; past half the time the next iteration would hardly
+        // complete
+        if (result.isMate() && MATE - Math.abs(score) <= depth
+            || limitReached()
+            || deadlineNanos != Long.MAX_VALUE
+            && elapsedNanos() > (deadlineNanos - startNanos) / 2) {
+          break;
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Searches deeper and deeper until the main thread is done, leaving the
+     * results in the table.
+     */
+    void help() {
+      canStop = true;
+      for (int depth = 1 + id % 2; depth <= maxDepth() && !stopped; depth++) {
+        search(depth, 0, -INFINITY, INFINITY);
+      }
+      publishedNodes = nodes;
+    }
+
+    void addStatistics() {
+      table.addStatistics(tableProbes, tableHits, tableStores);
+      evaluator.flushStatistics();
+    }
+
+    private int maxDepth() {
+      return limits.getDepth() == 0 ? MAX_PLY - 1 : Math.min(
+          limits.getDepth(), MAX_PLY - 1);
+    }
+
+    /**
+     * Returns the nodes searched by this thread and (roughly, while they run)
+     * by its helpers.
+     */
+    long totalNodes() {
+      long total = nodes;
+      for (Searcher helper : helpers) {
+        total += helper.publishedNodes;
+      }
+      return total;
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+      pvLength[ply] = ply;
+      countNode();
+      if (stopped) {
+        return 0;
+      }
+      keys[ply] = state.getZobristKey();
+      if (ply > 0 && isDraw(ply)) {
+        return 0;
+      }
+      if (depth <= 0) {
+        int known = bitbases == null ? Bitbases.UNKNOWN : bitbases
+            .probe(state);
+        if (known != Bitbases.UNKNOWN) {
+          return known == Bitbases.DRAW ? 0 : (known == Bitbases.WIN
+              ? KNOWN_WIN : -KNOWN_WIN) + evaluator.evaluate(state);
+        }
+        return quiesce(ply, alpha, beta);
+      }
+      if (ply >= MAX_PLY - 1) {
+        return evaluator.evaluate(state);
+      }
+
+      int hashMove = PackedMove.NONE;
+      long entry = table.probe(keys[ply]);
+      tableProbes++;
+      if (entry != TranspositionTable.MISS) {
+        tableHits++;
+        hashMove = TranspositionTable.getMove(entry);
+        // cut-offs in principal variation nodes would truncate the line
+        if (beta - alpha == 1 && TranspositionTable.getDepth(entry) >= depth) {
+          int score = TranspositionTable.fromTableScore(
+              TranspositionTable.getScore(entry), ply);
+          int bound = TranspositionTable.getBound(entry);
+          if (bound == TranspositionTable.EXACT
+              || bound == TranspositionTable.LOWER_BOUND && score >= beta
+              || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+            return score;
+          }
+        }
+      }
+      if (followingPv && ply < previousPv.length) {
+        hashMove = previousPv[ply];
+      } else {
+        followingPv = false;
+      }
+      MovePicker picker = picker(ply, hashMove, MoveFilter.ALL);
+      int originalAlpha = alpha;
+      int bestMove = PackedMove.NONE;
+      int best = -INFINITY;
+      int legalMoves = 0;
+      int move;
+      while ((move = picker.next()) != PackedMove.NONE) {
+        stateChanger.makeMove(state, move, undo);
+        int score;
+        if (legalMoves == 0) {
+          score = -search(depth - 1, ply + 1, -beta, -alpha);
+        } else {
+          // prove the move is no better than the best one with a null window,
+          // search it again with the full window only if that fails
+          score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+          if (score > alpha && score < beta) {
+            score = -search(depth - 1, ply + 1, -beta, -alpha);
+          }
+        }
+        stateChanger.unmakeMove(state, undo);
+        followingPv = false;
+        legalMoves++;
+        if (stopped) {
+          return 0;
+        }
+        if (score > best) {
+          best = score;
+          if (score > alpha) {
+            alpha = score;
+            bestMove = move;
+            updatePv(ply, move);
+            if (score >= beta) {
+              if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                history.addCutoff(state.getTurn(), move, ply, depth);
+              }
+              break;
+            }
+          }
+        }
+      }
+      if (legalMoves == 0) {
+        best = stateExplorer.isInCheck(state) ? -MATE + ply : 0;
+      }
+      int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+          : best > originalAlpha ? TranspositionTable.EXACT
+              : TranspositionTable.UPPER_BOUND;
+      table.store(keys[ply], bestMove, TranspositionTable.toTableScore(best,
+          ply), depth, bound);
+      tableStores++;
+      return best;
+    }
+
+    /**
+     * Searches the captures and promotions of the position until it is quiet,
+     * see the class comment.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+      pvLength[ply] = ply;
+      if (ply >= MAX_PLY - 1) {
+        return evaluator.evaluate(state);
+      }
+      boolean inCheck = stateExplorer.isInCheck(state);
+      int best = -INFINITY;
+      if (!inCheck) {
+        best = evaluator.evaluate(state);
+        if (best >= beta) {
+          return best;
+        }
+        alpha = Math.max(alpha, best);
+      }
+      MovePicker picker = picker(ply, PackedMove.NONE,
+          inCheck ? MoveFilter.ALL : MoveFilter.TACTICAL);
+      int legalMoves = 0;
+      int move;
+      while ((move = picker.next()) != PackedMove.NONE) {
+        legalMoves++;
+        if (!inCheck && (PackedMove.isPromotion(move)
+            ? PackedMove.promotion(move) != PieceKind.QUEEN
+            : StaticExchange.evaluate(state, move) < 0)) {
+          continue;
+        }
+        stateChanger.makeMove(state, move, undo);
+        countNode();
+        int score = -quiesce(ply + 1, -beta, -alpha);
+        stateChanger.unmakeMove(state, undo);
+        if (stopped) {
+          return 0;
+        }
+        if (score > best) {
+          best = score;
+          if (score > alpha) {
+            alpha = score;
+            updatePv(ply, move);
+            if (score >= beta) {
+              break;
+            }
+          }
+        }
+      }
+      if (inCheck && legalMoves == 0) {
+        return -MATE + ply;
+      }
+      return best;
+    }
+
+    /*
+     * Comparing the node count is cheap enough for every node; the clock and
+     * the flags are only read every NODES_BETWEEN_CLOCK_CHECKS nodes.
+     */
+    private void countNode() {
+      nodes++;
+      if (canStop) {
+        if (nodes >= nodeLimit) {
+          stopped = true;
+        } else if ((nodes & (NODES_BETWEEN_CLOCK_CHECKS - 1)) == 0) {
+          publishedNodes = nodes;
+          stopped = limitReached();
+        }
+      }
+    }
+
+    /**
+     * Returns true once the deadline has passed, a stop flag is set or all
+     * threads together (the helpers as of their last clock check) have
+     * visited nodeLimit nodes.
+     */
+    private boolean limitReached() {
+      return System.nanoTime() >= deadlineNanos || stop.get()
+          || stopFlag != null && stopFlag.get() || totalNodes() >= nodeLimit;
+    }
+
+    /*
+     * Only positions since the last capture or pawn move can repeat
+     */
+    private boolean isDraw(int ply) {
+      int reversible = state.getNumberOfMovesWithoutCaptureNorPawnMoved();
+      if (reversible >= 100) {
+        return true;
+      }
+      for (int i = ply - 2; i >= 0 && i >= ply - reversible; i -= 2) {
+        if (keys[i] == keys[ply]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private MovePicker picker(int ply, int hashMove, MoveFilter filter) {
+      if (pickers[ply] == null) {
+        pickers[ply] = stateExplorer.getMovePicker(state, hashMove, filter);
+      }
+      return pickers[ply].reset(state, hashMove, filter, history, ply);
+    }
+
+    private void updatePv(int ply, int move) {
+      pv[ply][ply] = move;
+      System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1,
+          pvLength[ply + 1] - ply - 1);
+      pvLength[ply] = pvLength[ply + 1];
+    }
+
+    private long elapsedNanos() {
+      return System.nanoTime() - startNanos;
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      int depth = 0;
+      long moveTime = 0;
+      long nodes = 0;
+      long clock = -1;
+      long increment = 0;
+      long tableMegabytes = DEFAULT_TABLE_MEGABYTES;
+      int threads = 1;
+      File bitbases = null;
+      int i = 0;
+      for (; i < args.length && args[i].startsWith("-"); i++) {
+        if (args[i].equals("-depth") && i + 1 < args.length) {
+          depth = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-movetime") && i + 1 < args.length) {
+          moveTime = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+          nodes = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-clock") && i + 1 < args.length) {
+          clock = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-increment") && i + 1 < args.length) {
+          increment = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-hash") && i + 1 < args.length) {
+          tableMegabytes = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-threads") && i + 1 < args.length) {
+          threads = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-bitbases") && i + 1 < args.length) {
+          bitbases = new File(args[++i]);
+        } else {
+          throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+      }
+      if (clock >= 0) {
+        moveTime = SearchLimits.forClock(clock, increment, 0)
+            .getMoveTimeMillis();
+      } else if (depth == 0 && moveTime == 0 && nodes == 0) {
+        moveTime = DEFAULT_MOVE_TIME_MILLIS;
+      }
+      StringBuilder fen = new StringBuilder();
+      for (; i < args.length; i++) {
+        fen.append(args[i]).append(' ');
+      }
+      State state = fen.length() == 0 ? Fen.parse(Fen.INITIAL) : Fen
+          .parse(fen.toString());
+      PieceSquareEvaluator evaluator = new PieceSquareEvaluator();
+      Engine engine = new Engine(StateExplorerImpl.getInstance(),
+          StateChangerImpl.getInstance(), evaluator, new TranspositionTable(
+              tableMegabytes));
+      engine.setThreads(threads);
+      if (bitbases != null) {
+        engine.setBitbases(Bitbases.open(bitbases));
+      }
+      SearchResult result = engine.search(state, new SearchLimits(
+          depth, moveTime).withNodes(nodes), new SearchListener() {
+        @Override
+        public void iterationDone(SearchResult result) {
+          System.out.println(result);
+        }
+      });
+      System.out.println("bestmove "
+          + (result.getBestMove() == null ? "(none)" : PackedMove
+              .toCoordinateNotation(result.getBestPackedMove())));
+      System.out.println(engine.getTranspositionTable());
+      System.out.println(evaluator.getPawnTable());
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.org.zhaohui.server.engine;
+
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Scores a position statically, without searching.
+ *
+ * @author zhaohui
+ *
+ */
+public interface Evaluator {
+  /**
+   * Returns the score of state in centipawns from the point of view of the
+   * side to move: positive when it stands better. Must stay well within
+   * +-Engine.MATE_BOUND.
+   */
+  int evaluate(State state);
+
+  /**
+   * Returns an evaluator scoring like this one for a single search thread,
+   * which may count statistics without synchronizing. Stateless evaluators
+   * return themselves.
+   */
+  Evaluator forThread();
+
+  /**
+   * Adds what this forThread() evaluator has counted since the last call to
+   * the shared statistics, as the TranspositionTable does once per search.
+   */
+  void flushStatistics();
+}
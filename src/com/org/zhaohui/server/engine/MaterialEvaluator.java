@@ -0,0 +1,36 @@
+package com.org.zhaohui.server.engine;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Counts material only: the side to move's pieces minus the opponent's. An
+ * instance keeps no state and can be shared by threads.
+ *
+ * @author zhaohui
+ *
+ */
+public class MaterialEvaluator implements Evaluator {
+  @Override
+  public int evaluate(State state) {
+    Color turn = state.getTurn();
+    Color opponent = turn.getOpposite();
+    int score = 0;
+    for (PieceKind kind : PieceKind.values()) {
+      score += kind.getValue()
+          * (state.getPieceCount(turn, kind) - state.getPieceCount(opponent,
+              kind));
+    }
+    return score;
+  }
+
+  @Override
+  public Evaluator forThread() {
+    return this;
+  }
+
+  @Override
+  public void flushStatistics() {
+  }
+}
@@ -0,0 +1,227 @@
+package com.org.zhaohui.server.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.Bitboards;
+
+/**
+ * Caches the pawn structure terms of the evaluation by
+ * State.getPawnZobristKey(): pawns move far less often than the other pieces,
+ * so almost every position searched finds its pawns already scored. See
+ * http://chessprogramming.wikispaces.com/Pawn+Hash+Table
+ *
+ * An Entry holds the doubled, isolated and passed pawn scores and the pawn
+ * attack and passed pawn masks of both sides. Entries are immutable and a
+ * slot is replaced by a single reference write, so threads share the table
+ * without locks; a racing store only costs a recomputation. Lookups count
+ * nothing: like the TranspositionTable, callers count their probes and hits
+ * and add them with addStatistics, so threads do not contend on counters.
+ *
+ * @author zhaohui
+ *
+ */
+public final class PawnTable {
+  private static final int DOUBLED_MIDDLEGAME = -10;
+  private static final int DOUBLED_ENDGAME = -20;
+  private static final int ISOLATED_MIDDLEGAME = -10;
+  private static final int ISOLATED_ENDGAME = -15;
+  /** passed pawn bonuses by rank, counted from the pawn's own side */
+  private static final int[] PASSED_MIDDLEGAME = { 0, 5, 10, 15, 25, 40, 60,
+      0 };
+  private static final int[] PASSED_ENDGAME = { 0, 10, 20, 35, 60, 100, 150,
+      0 };
+
+  private static final long[] FILES = new long[State.COLS];
+  /** ADJACENT_FILES[col] are the files next to col */
+  private static final long[] ADJACENT_FILES = new long[State.COLS];
+  /**
+   * PASSED_SPANS[color.ordinal()][square] are the squares in front of a pawn
+   * of that color on square, on its file and the adjacent ones: it is passed
+   * if no enemy pawn stands there.
+   */
+  private static final long[][] PASSED_SPANS = new long[2][64];
+
+  static {
+    for (int col = 0; col < State.COLS; col++) {
+      for (int row = 0; row < State.ROWS; row++) {
+        FILES[col] |= Bitboards.bit(row, col);
+      }
+    }
+    for (int col = 0; col < State.COLS; col++) {
+      ADJACENT_FILES[col] = (col > 0 ? FILES[col - 1] : Bitboards.EMPTY)
+          | (col < State.COLS - 1 ? FILES[col + 1] : Bitboards.EMPTY);
+    }
+    for (int square = 0; square < 64; square++) {
+      int row = Bitboards.row(square);
+      long span = FILES[Bitboards.col(square)]
+          | ADJACENT_FILES[Bitboards.col(square)];
+      for (int r = 0; r < State.ROWS; r++) {
+        long rank = Bitboards.bit(r, 0) * 0xFF;
+        if (r > row) {
+          PASSED_SPANS[Color.WHITE.ordinal()][square] |= span & rank;
+        } else if (r < row) {
+          PASSED_SPANS[Color.BLACK.ordinal()][square] |= span & rank;
+        }
+      }
+    }
+  }
+
+  private final Entry[] entries;
+  private final int mask;
+  private final AtomicLong probes = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+
+  /**
+   * The pawn structure of one pawn key. Scores are white's minus black's.
+   */
+  public static final class Entry {
+    private final long key;
+    private final int middlegameScore;
+    private final int endgameScore;
+    private final long[] attacks = new long[2];
+    private final long[] passedPawns = new long[2];
+
+    Entry(State state) {
+      key = state.getPawnZobristKey();
+      int middlegame = 0;
+      int endgame = 0;
+      for (Color color : Color.values()) {
+        int sign = color.isWhite() ? 1 : -1;
+        long pawns = state.getBitboard(color, PieceKind.PAWN);
+        long theirs = state.getBitboard(color.getOpposite(), PieceKind.PAWN);
+        for (int col = 0; col < State.COLS; col++) {
+          int onFile = Bitboards.count(pawns & FILES[col]);
+          if (onFile > 1) {
+            middlegame += sign * DOUBLED_MIDDLEGAME * (onFile - 1);
+            endgame += sign * DOUBLED_ENDGAME * (onFile - 1);
+          }
+        }
+        long[] pawnAttacks = Bitboards.PAWN_ATTACKS[color.ordinal()];
+        for (long left = pawns; left != Bitboards.EMPTY; left &= left - 1) {
+          int square = Bitboards.first(left);
+          int col = Bitboards.col(square);
+          attacks[color.ordinal()] |= pawnAttacks[square];
+          if ((pawns & ADJACENT_FILES[col]) == Bitboards.EMPTY) {
+            middlegame += sign * ISOLATED_MIDDLEGAME;
+            endgame += sign * ISOLATED_ENDGAME;
+          }
+          // the rear one of doubled pawns is not passed
+          long span = PASSED_SPANS[color.ordinal()][square];
+          if ((theirs & span) == Bitboards.EMPTY
+              && (pawns & span & FILES[col]) == Bitboards.EMPTY) {
+            passedPawns[color.ordinal()] |= Bitboards.bit(square);
+            int rank = color.isWhite() ? Bitboards.row(square)
+                : State.ROWS - 1 - Bitboards.row(square);
+            middlegame += sign * PASSED_MIDDLEGAME[rank];
+            endgame += sign * PASSED_ENDGAME[rank];
+          }
+        }
+      }
+      middlegameScore = middlegame;
+      endgameScore = endgame;
+    }
+
+    public int getMiddlegameScore() {
+      return middlegameScore;
+    }
+
+    public int getEndgameScore() {
+      return endgameScore;
+    }
+
+    /**
+     * Returns the squares the pawns of color attack.
+     */
+    public long getAttacks(Color color) {
+      return attacks[color.ordinal()];
+    }
+
+    /**
+     * Returns the pawns of color that no enemy pawn can stop or capture on
+     * their way to promotion.
+     */
+    public long getPassedPawns(Color color) {
+      return passedPawns[color.ordinal()];
+    }
+  }
+
+  /**
+   * Creates a table of the largest power of 2 entries at most size.
+   */
+  public PawnTable(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("the table needs an entry");
+    }
+    entries = new Entry[Integer.highestOneBit(size)];
+    mask = entries.length - 1;
+  }
+
+  /**
+   * Returns the pawn structure of state, from the table if it is there.
+   */
+  public Entry probe(State state) {
+    Entry entry = get(state);
+    return entry != null ? entry : put(state);
+  }
+
+  /**
+   * Returns the entry of the pawns of state, or null if it is not there.
+   */
+  public Entry get(State state) {
+    long key = state.getPawnZobristKey();
+    Entry entry = entries[(int) key & mask];
+    return entry != null && entry.key == key ? entry : null;
+  }
+
+  /**
+   * Scores the pawns of state and stores the entry, replacing its slot.
+   */
+  public Entry put(State state) {
+    Entry entry = new Entry(state);
+    entries[(int) entry.key & mask] = entry;
+    return entry;
+  }
+
+  /**
+   * Forgets every entry; the statistics are kept.
+   */
+  public void clear() {
+    Arrays.fill(entries, null);
+  }
+
+  void addStatistics(long probes, long hits) {
+    this.probes.addAndGet(probes);
+    this.hits.addAndGet(hits);
+  }
+
+  public int getSize() {
+    return entries.length;
+  }
+
+  public long getProbeCount() {
+    return probes.get();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the share of probes that found their entry, 0 before any probe.
+   */
+  public double getHitRate() {
+    long probeCount = probes.get();
+    return probeCount == 0 ? 0 : (double) hits.get() / probeCount;
+  }
+
+  @Override
+  public String toString() {
+    return "PawnTable[" + getSize() + " entries, probes=" + getProbeCount()
+        + ", hits=" + getHitCount()
+        + String.format(" (%.1f%%)", 100 * getHitRate()) + "]";
+  }
+}
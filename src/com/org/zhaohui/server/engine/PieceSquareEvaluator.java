@@ -0,0 +1,97 @@
+package com.org.zhaohui.server.engine;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Material, piece-square tables and pawn structure, tapered between their
+ * middlegame and endgame values by the pieces left on the board, see
+ * http://chessprogramming.wikispaces.com/Tapered+Eval
+ *
+ * State keeps the material and both piece-square totals up to date as
+ * pieces move, and the pawn structure comes from a PawnTable, so a score
+ * usually costs a few piece counts and a table lookup and no board scan. An
+ * instance can be shared by threads: its PawnTable is lock-free. Only the
+ * forThread() copies count the pawn table probes and hits, in plain fields
+ * folded into the table by flushStatistics(), so threads never contend on
+ * the counters.
+ *
+ * @author zhaohui
+ *
+ */
+public class PieceSquareEvaluator implements Evaluator {
+  /** the phase of the initial position, and of any with more material */
+  private static final int OPENING_PHASE = 24;
+  private static final int DEFAULT_PAWN_TABLE_SIZE = 1 << 16;
+
+  private final PawnTable pawnTable;
+  private final boolean counting;
+  private long pawnProbes;
+  private long pawnHits;
+
+  public PieceSquareEvaluator() {
+    this(new PawnTable(DEFAULT_PAWN_TABLE_SIZE));
+  }
+
+  public PieceSquareEvaluator(PawnTable pawnTable) {
+    this(pawnTable, false);
+  }
+
+  private PieceSquareEvaluator(PawnTable pawnTable, boolean counting) {
+    this.pawnTable = pawnTable;
+    this.counting = counting;
+  }
+
+  public PawnTable getPawnTable() {
+    return pawnTable;
+  }
+
+  @Override
+  public int evaluate(State state) {
+    int phase = getPhase(state);
+    PawnTable.Entry pawns = pawnTable.get(state);
+    if (pawns == null) {
+      pawns = pawnTable.put(state);
+    } else if (counting) {
+      pawnHits++;
+    }
+    if (counting) {
+      pawnProbes++;
+    }
+    int middlegame = state.getMiddlegameScore() + pawns.getMiddlegameScore();
+    int endgame = state.getEndgameScore() + pawns.getEndgameScore();
+    int score = state.getMaterial(Color.WHITE)
+        - state.getMaterial(Color.BLACK)
+        + (middlegame * phase + endgame * (OPENING_PHASE - phase))
+        / OPENING_PHASE;
+    return state.getTurn().isWhite() ? score : -score;
+  }
+
+  @Override
+  public Evaluator forThread() {
+    return new PieceSquareEvaluator(pawnTable, true);
+  }
+
+  @Override
+  public void flushStatistics() {
+    pawnTable.addStatistics(pawnProbes, pawnHits);
+    pawnProbes = 0;
+    pawnHits = 0;
+  }
+
+  /**
+   * Returns how far from the endgame state is: minor pieces count 1, rooks
+   * 2 and queens 4, from 0 with only kings and pawns left to OPENING_PHASE.
+   */
+  static int getPhase(State state) {
+    int phase = 0;
+    for (Color color : Color.values()) {
+      phase += state.getPieceCount(color, PieceKind.KNIGHT)
+          + state.getPieceCount(color, PieceKind.BISHOP)
+          + 2 * state.getPieceCount(color, PieceKind.ROOK)
+          + 4 * state.getPieceCount(color, PieceKind.QUEEN);
+    }
+    return Math.min(phase, OPENING_PHASE);
+  }
+}
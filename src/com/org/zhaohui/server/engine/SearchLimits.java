@@ -0,0 +1,159 @@
+package com.org.zhaohui.server.engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * When an Engine search stops: after a given depth, after a given time, at a
+ * wall-clock deadline, after a given number of nodes, or when an external
+ * stop flag is set, whichever comes first. Zero (null for the flag) means no
+ * limit of that kind; a search with no limit at all runs to Engine.MAX_PLY.
+ *
+ * The limits other than depth are checked while searching, the clock and
+ * the flag once every few thousand nodes, so the search returns shortly
+ * after one is reached, with the result of the last completed depth. Depth 1
+ * is always completed, so a move is found however short the time.
+ *
+ * Instances are immutable: the with* methods return a copy with one limit
+ * changed. forClock allocates the time of one move from a game clock.
+ *
+ * @author zhaohui
+ *
+ */
+public final class SearchLimits {
+  /** the moves the rest of the game is assumed to take, when not told */
+  private static final int DEFAULT_MOVES_TO_GO = 30;
+  /** kept off every move's time for the caller and the network */
+  private static final long MOVE_OVERHEAD_MILLIS = 50;
+
+  private final int depth;
+  private final long moveTimeMillis;
+  private final long deadlineMillis;
+  private final long nodes;
+  private final AtomicBoolean stopFlag;
+
+  public SearchLimits(int depth, long moveTimeMillis) {
+    this(depth, moveTimeMillis, 0, 0, null);
+  }
+
+  private SearchLimits(int depth, long moveTimeMillis, long deadlineMillis,
+      long nodes, AtomicBoolean stopFlag) {
+    if (depth < 0 || moveTimeMillis < 0 || deadlineMillis < 0 || nodes < 0) {
+      throw new IllegalArgumentException("limits must not be negative");
+    }
+    this.depth = depth;
+    this.moveTimeMillis = moveTimeMillis;
+    this.deadlineMillis = deadlineMillis;
+    this.nodes = nodes;
+    this.stopFlag = stopFlag;
+  }
+
+  public static SearchLimits depth(int depth) {
+    return new SearchLimits(depth, 0);
+  }
+
+  public static SearchLimits moveTime(long millis) {
+    return new SearchLimits(0, millis);
+  }
+
+  /**
+   * Returns limits stopping at deadlineMillis, a System.currentTimeMillis()
+   * time.
+   */
+  public static SearchLimits deadline(long deadlineMillis) {
+    return new SearchLimits(0, 0).withDeadline(deadlineMillis);
+  }
+
+  public static SearchLimits nodes(long nodes) {
+    return new SearchLimits(0, 0).withNodes(nodes);
+  }
+
+  /**
+   * Returns the move time of one move for a player with remainingMillis left
+   * on the clock, gaining incrementMillis per move and movesToGo moves to
+   * play until the next time control (0 if unknown): an equal share of the
+   * remaining time plus most of the increment, never so much that the clock
+   * could run out.
+   */
+  public static SearchLimits forClock(long remainingMillis,
+      long incrementMillis, int movesToGo) {
+    if (remainingMillis < 0 || incrementMillis < 0 || movesToGo < 0) {
+      throw new IllegalArgumentException("the clock must not be negative");
+    }
+    int moves = movesToGo == 0 ? DEFAULT_MOVES_TO_GO : movesToGo;
+    long share = remainingMillis / moves + incrementMillis * 3 / 4;
+    long safe = Math.max(1, remainingMillis - MOVE_OVERHEAD_MILLIS);
+    return moveTime(Math.max(1, Math.min(share, safe)));
+  }
+
+  public SearchLimits withDepth(int depth) {
+    return new SearchLimits(depth, moveTimeMillis, deadlineMillis, nodes,
+        stopFlag);
+  }
+
+  public SearchLimits withMoveTime(long moveTimeMillis) {
+    return new SearchLimits(depth, moveTimeMillis, deadlineMillis, nodes,
+        stopFlag);
+  }
+
+  public SearchLimits withDeadline(long deadlineMillis) {
+    return new SearchLimits(depth, moveTimeMillis, deadlineMillis, nodes,
+        stopFlag);
+  }
+
+  public SearchLimits withNodes(long nodes) {
+    return new SearchLimits(depth, moveTimeMillis, deadlineMillis, nodes,
+        stopFlag);
+  }
+
+  /**
+   * Returns a copy of these limits that also stops once stopFlag is set, by
+   * any thread.
+   */
+  public SearchLimits withStopFlag(AtomicBoolean stopFlag) {
+    return new SearchLimits(depth, moveTimeMillis, deadlineMillis, nodes,
+        stopFlag);
+  }
+
+  /**
+   * Returns the deepest iteration to search, 0 for no limit.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns how long the search may take, 0 for no limit.
+   */
+  public long getMoveTimeMillis() {
+    return moveTimeMillis;
+  }
+
+  /**
+   * Returns the System.currentTimeMillis() time the search must be done by, 0
+   * for no limit.
+   */
+  public long getDeadlineMillis() {
+    return deadlineMillis;
+  }
+
+  /**
+   * Returns how many nodes the search may visit, 0 for no limit.
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the flag that stops the search when set, null for none.
+   */
+  public AtomicBoolean getStopFlag() {
+    return stopFlag;
+  }
+
+  @Override
+  public String toString() {
+    return "SearchLimits[depth=" + depth + ", moveTimeMillis="
+        + moveTimeMillis + ", deadlineMillis=" + deadlineMillis + ", nodes="
+        + nodes + ", stopFlag=" + (stopFlag != null) + "]";
+  }
+}
@@ -0,0 +1,16 @@
+package com.org.zhaohui.server.engine;
+
+/**
+ * Told about the progress of an Engine search, e.g. to print it or to show
+ * the best move so far.
+ *
+ * @author zhaohui
+ *
+ */
+public interface SearchListener {
+  /**
+   * Called from the searching thread after each completed iteration, with
+   * the result of that depth.
+   */
+  void iterationDone(SearchResult result);
+}
@@ -0,0 +1,122 @@
+package com.org.zhaohui.server.engine;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.logics.PackedMove;
+
+/**
+ * What an Engine search found: the best move, its score and the principal
+ * variation (the line both sides are expected to play) of the deepest
+ * completed iteration, with the node count and time it took.
+ *
+ * @author zhaohui
+ *
+ */
+public final class SearchResult {
+  private final int[] principalVariation;
+  private final int score;
+  private final int depth;
+  private final long nodes;
+  private final long nanos;
+
+  SearchResult(int[] principalVariation, int score, int depth, long nodes,
+      long nanos) {
+    this.principalVariation = principalVariation;
+    this.score = score;
+    this.depth = depth;
+    this.nodes = nodes;
+    this.nanos = nanos;
+  }
+
+  /**
+   * Returns this result with another node count, e.g. one that includes the
+   * helper threads.
+   */
+  SearchResult withNodes(long nodes) {
+    return new SearchResult(principalVariation, score, depth, nodes, nanos);
+  }
+
+  /**
+   * Returns the move to play, null if the side to move has none.
+   */
+  public Move getBestMove() {
+    int move = getBestPackedMove();
+    return move == PackedMove.NONE ? null : PackedMove.toMove(move);
+  }
+
+  /**
+   * Returns the move to play as a PackedMove, PackedMove.NONE if the side to
+   * move has none.
+   */
+  public int getBestPackedMove() {
+    return principalVariation.length == 0 ? PackedMove.NONE
+        : principalVariation[0];
+  }
+
+  public List<Move> getPrincipalVariation() {
+    List<Move> moves = Lists.newArrayList();
+    for (int move : principalVariation) {
+      moves.add(PackedMove.toMove(move));
+    }
+    return moves;
+  }
+
+  /**
+   * Returns the score in centipawns for the side to move. Mates score
+   * Engine.MATE minus the plies to mate, see isMate().
+   */
+  public int getScore() {
+    return score;
+  }
+
+  public boolean isMate() {
+    return Math.abs(score) >= Engine.MATE_BOUND;
+  }
+
+  /**
+   * Returns the moves (not plies) until mate, negative when the side to move
+   * gets mated, 0 if the score is not a mate.
+   */
+  public int getMateIn() {
+    if (!isMate()) {
+      return 0;
+    }
+    int plies = Engine.MATE - Math.abs(score);
+    return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  public long getElapsedMillis() {
+    return nanos / 1000000;
+  }
+
+  public long getNodesPerSecond() {
+    // in double, as nodes * 10^9 overflows a long on long analyses
+    return (long) (nodes / (Math.max(1, nanos) / 1e9));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("depth ").append(depth);
+    builder.append(isMate() ? " score mate " + getMateIn() : " score cp "
+        + score);
+    builder.append(" nodes ").append(nodes);
+    builder.append(" nps ").append(getNodesPerSecond());
+    builder.append(" time ").append(getElapsedMillis());
+    builder.append(" pv");
+    for (int move : principalVariation) {
+      builder.append(' ').append(PackedMove.toCoordinateNotation(move));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,83 @@
+package com.org.zhaohui.server.engine;
+
+import com.org.zhaohui.server.perft.PerftPosition;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+/**
+ * Reports the effective speedup of Lazy SMP: every position of
+ * PerftPosition.standardSuite() is searched to a fixed depth with one thread
+ * and then with n, starting from an empty table each time. The speedup is
+ * the ratio of the times to reach that depth, which is what matters to a
+ * user, unlike the nodes per second that grow with the threads anyway.
+ *
+ * Usage: SmpSpeedup [-threads n] [-depth d] [-hash megabytes]
+ *
+ * @author zhaohui
+ *
+ */
+public class SmpSpeedup {
+  private static final String USAGE = "usage:\n"
+      + "  SmpSpeedup [-threads n] [-depth d] [-hash megabytes]";
+
+  public static void main(String[] args) {
+    try {
+      int threads = Runtime.getRuntime().availableProcessors();
+      int depth = 7;
+      long tableMegabytes = 64;
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("-threads") && i + 1 < args.length) {
+          threads = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-depth") && i + 1 < args.length) {
+          depth = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("-hash") && i + 1 < args.length) {
+          tableMegabytes = Long.parseLong(args[++i]);
+        } else {
+          throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+      }
+      Engine engine = new Engine(StateExplorerImpl.getInstance(),
+          StateChangerImpl.getInstance(), new PieceSquareEvaluator(),
+          new TranspositionTable(tableMegabytes));
+      run(engine, threads, depth);
+      engine.shutdown();
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+  }
+
+  private static void run(Engine engine, int threads, int depth) {
+    // warm the JIT up first, or the single thread runs would pay for it
+    for (PerftPosition position : PerftPosition.standardSuite()) {
+      engine.setThreads(threads);
+      engine.search(Fen.parse(position.getFen()), SearchLimits.depth(depth));
+    }
+    long[] totalMillis = new long[2];
+    long[] totalNodes = new long[2];
+    for (PerftPosition position : PerftPosition.standardSuite()) {
+      State state = Fen.parse(position.getFen());
+      SearchResult[] results = new SearchResult[2];
+      for (int i = 0; i < 2; i++) {
+        engine.setThreads(i == 0 ? 1 : threads);
+        engine.getTranspositionTable().clear();
+        results[i] = engine.search(state, SearchLimits.depth(depth));
+        totalMillis[i] += Math.max(1, results[i].getElapsedMillis());
+        totalNodes[i] += results[i].getNodes();
+      }
+      System.out.printf("%-10s 1 thread %6d ms, %d threads %6d ms: %.2fx%n",
+          position.getName(), results[0].getElapsedMillis(), threads,
+          results[1].getElapsedMillis(),
+          (double) Math.max(1, results[0].getElapsedMillis())
+              / Math.max(1, results[1].getElapsedMillis()));
+    }
+    System.out.printf("depth %d, %d threads: time to depth %.2fx faster,"
+        + " %.2fx the nodes per second%n", depth, threads,
+        (double) totalMillis[0] / totalMillis[1],
+        (double) totalNodes[1] / totalMillis[1] * totalMillis[0]
+            / totalNodes[0]);
+  }
+}
@@ -0,0 +1,317 @@
+package com.org.zhaohui.server.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.org.zhaohui.shared.logics.PackedMove;
+
+/**
+ * Remembers what the search found about positions it has seen, keyed by
+ * State.getZobristKey(): the depth searched, whether the score is exact or a
+ * bound, the score and the best move. See
+ * http://chessprogramming.wikispaces.com/Transposition+Table
+ *
+ * The table lives off the Java heap, in direct LongBuffers, so even a
+ * multi-gigabyte table adds nothing to garbage collection pauses. It is made
+ * of buckets of two entries: the first one is replaced only by a deeper
+ * search or when it is left over from an earlier search, the second one
+ * always, so recent shallow results are kept next to old deep ones.
+ *
+ * Threads share it without locks. Each entry is two longs, the data and the
+ * key XOR the data, written in that order. An entry whose two words come from
+ * different writes (or were torn by a racing store) no longer XORs back to
+ * the key and reads as a miss, see
+ * http://www.craftychess.com/hyatt/hashing.html. Only resize must not run
+ * while a search is using the table.
+ *
+ * probe returns an entry packed in a long, read it with the static getters;
+ * 0 (MISS) means nothing was found.
+ *
+ * @author zhaohui
+ *
+ */
+public final class TranspositionTable {
+  public static final long MISS = 0;
+  /** the score is at most the one stored (the search failed low) */
+  public static final int UPPER_BOUND = 1;
+  /** the score is at least the one stored (the search failed high) */
+  public static final int LOWER_BOUND = 2;
+  public static final int EXACT = 3;
+
+  /*
+   * Entry data layout, never 0 since the bound is never 0:
+   * bits 0-18 move, 19-20 bound, 21-28 depth, 29-36 generation, 48-63 score
+   */
+  private static final int MOVE_BITS = 19;
+  private static final int BOUND_SHIFT = 19;
+  private static final int DEPTH_SHIFT = 21;
+  private static final int GENERATION_SHIFT = 29;
+  private static final int SCORE_SHIFT = 48;
+  private static final int MAX_DEPTH = 255;
+
+  private static final int LONGS_PER_ENTRY = 2;
+  private static final int ENTRIES_PER_BUCKET = 2;
+  private static final int BYTES_PER_BUCKET = ENTRIES_PER_BUCKET
+      * LONGS_PER_ENTRY * 8;
+  /** one LongBuffer holds at most 2^CHUNK_SHIFT longs (1GB) */
+  private static final int CHUNK_SHIFT = 27;
+  private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+  private static final long MEGABYTE = 1 << 20;
+  /** entries sampled by getFillPermill */
+  private static final int FILL_SAMPLE = 1000;
+
+  private volatile Buckets buckets;
+  private volatile int generation;
+  private final AtomicLong probes = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong stores = new AtomicLong();
+
+  /** The storage of one table size, replaced as a whole by resize */
+  private static final class Buckets {
+    private final LongBuffer[] chunks;
+    private final long mask;
+
+    Buckets(long count) {
+      mask = count - 1;
+      long longs = count * BYTES_PER_BUCKET / 8;
+      int chunkLongs = 1 << CHUNK_SHIFT;
+      chunks = new LongBuffer[(int) ((longs + chunkLongs - 1) >>> CHUNK_SHIFT)];
+      for (int i = 0; i < chunks.length; i++) {
+        int size = (int) Math.min(chunkLongs, longs - (long) i * chunkLongs);
+        chunks[i] = ByteBuffer.allocateDirect(size * 8)
+            .order(ByteOrder.nativeOrder()).asLongBuffer();
+      }
+    }
+
+    long get(long index) {
+      return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) index
+          & CHUNK_MASK);
+    }
+
+    void put(long index, long value) {
+      chunks[(int) (index >>> CHUNK_SHIFT)].put((int) index & CHUNK_MASK,
+          value);
+    }
+
+    /** Returns the index of the first long of the bucket of key */
+    long bucket(long key) {
+      return (key & mask) * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+    }
+
+    long entries() {
+      return (mask + 1) * ENTRIES_PER_BUCKET;
+    }
+  }
+
+  /**
+   * Creates a table of at most megabytes MB, see resize.
+   */
+  public TranspositionTable(long megabytes) {
+    resize(megabytes);
+  }
+
+  /**
+   * Replaces the table by an empty one of the largest power of 2 buckets that
+   * fits in megabytes MB. Must not be called while a search uses the table.
+   */
+  public synchronized void resize(long megabytes) {
+    if (megabytes < 1) {
+      throw new IllegalArgumentException("the table needs at least 1 MB");
+    }
+    long count = Long.highestOneBit(megabytes * MEGABYTE / BYTES_PER_BUCKET);
+    buckets = new Buckets(count);
+  }
+
+  /**
+   * Forgets every entry; the statistics are kept.
+   */
+  public synchronized void clear() {
+    Buckets current = buckets;
+    long[] zeros = new long[4096];
+    for (LongBuffer chunk : current.chunks) {
+      chunk.clear();
+      while (chunk.hasRemaining()) {
+        chunk.put(zeros, 0, Math.min(zeros.length, chunk.remaining()));
+      }
+      chunk.clear();
+    }
+  }
+
+  /**
+   * Starts a new search: entries stored from now on replace the ones of
+   * earlier searches first.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & 0xFF;
+  }
+
+  /**
+   * Returns the entry stored for key, or MISS.
+   */
+  public long probe(long key) {
+    Buckets current = buckets;
+    long index = current.bucket(key);
+    for (int i = 0; i < ENTRIES_PER_BUCKET; i++, index += LONGS_PER_ENTRY) {
+      long data = current.get(index + 1);
+      if ((current.get(index) ^ data) == key && data != MISS) {
+        return data;
+      }
+    }
+    return MISS;
+  }
+
+  /**
+   * Stores what a search of depth plies found about key. A move of
+   * PackedMove.NONE keeps the move already stored for key, if any. Scores
+   * must fit in 16 bits; store mate scores with toTableScore.
+   */
+  public void store(long key, int move, int score, int depth, int bound) {
+    Buckets current = buckets;
+    long first = current.bucket(key);
+    long second = first + LONGS_PER_ENTRY;
+    long firstData = current.get(first + 1);
+    long secondData = current.get(second + 1);
+    boolean firstMatches = (current.get(first) ^ firstData) == key
+        && firstData != MISS;
+    boolean secondMatches = (current.get(second) ^ secondData) == key
+        && secondData != MISS;
+    long index;
+    long old;
+    boolean replaceFirst = generation(firstData) != generation
+        || depth >= getDepth(firstData);
+    if (firstMatches || !secondMatches && replaceFirst) {
+      index = first;
+      old = firstMatches ? firstData : MISS;
+    } else {
+      index = second;
+      old = secondMatches ? secondData : MISS;
+    }
+    if (move == PackedMove.NONE && old != MISS) {
+      move = getMove(old);
+    }
+    long data = (move & ((1L << MOVE_BITS) - 1))
+        | (long) bound << BOUND_SHIFT
+        | (long) Math.min(Math.max(depth, 0), MAX_DEPTH) << DEPTH_SHIFT
+        | (long) generation << GENERATION_SHIFT
+        | (long) (score & 0xFFFF) << SCORE_SHIFT;
+    current.put(index + 1, data);
+    current.put(index, key ^ data);
+  }
+
+  public static int getMove(long entry) {
+    return (int) (entry & ((1L << MOVE_BITS) - 1));
+  }
+
+  public static int getBound(long entry) {
+    return (int) (entry >>> BOUND_SHIFT) & 3;
+  }
+
+  public static int getDepth(long entry) {
+    return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+  }
+
+  /**
+   * Returns the score as stored, see fromTableScore.
+   */
+  public static int getScore(long entry) {
+    return (short) (entry >>> SCORE_SHIFT);
+  }
+
+  private static int generation(long entry) {
+    return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+  }
+
+  /**
+   * Mate scores count plies from the root, the table stores them counting
+   * from the position instead, so they stay right when the position is
+   * reached at another ply.
+   */
+  public static int toTableScore(int score, int ply) {
+    if (score >= Engine.MATE_BOUND) {
+      return score + ply;
+    }
+    if (score <= -Engine.MATE_BOUND) {
+      return score - ply;
+    }
+    return score;
+  }
+
+  /**
+   * Undoes toTableScore for a position at ply.
+   */
+  public static int fromTableScore(int score, int ply) {
+    if (score >= Engine.MATE_BOUND) {
+      return score - ply;
+    }
+    if (score <= -Engine.MATE_BOUND) {
+      return score + ply;
+    }
+    return score;
+  }
+
+  /**
+   * Adds the probes, hits and stores a search counted on its own, so threads
+   * do not contend on the counters at every node.
+   */
+  void addStatistics(long probes, long hits, long stores) {
+    this.probes.addAndGet(probes);
+    this.hits.addAndGet(hits);
+    this.stores.addAndGet(stores);
+  }
+
+  public long getProbeCount() {
+    return probes.get();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getStoreCount() {
+    return stores.get();
+  }
+
+  /**
+   * Returns the share of probes that found an entry, 0 before any probe.
+   */
+  public double getHitRate() {
+    long probeCount = probes.get();
+    return probeCount == 0 ? 0 : (double) hits.get() / probeCount;
+  }
+
+  public long getEntryCount() {
+    return buckets.entries();
+  }
+
+  public long getSizeInBytes() {
+    return buckets.entries() * LONGS_PER_ENTRY * 8;
+  }
+
+  /**
+   * Returns how many of the first (up to) 1000 entries were stored by the
+   * current search, per thousand: an estimate of how full the table is.
+   */
+  public int getFillPermill() {
+    Buckets current = buckets;
+    long sample = Math.min(FILL_SAMPLE, current.entries());
+    int used = 0;
+    for (long i = 0; i < sample; i++) {
+      long data = current.get(i * LONGS_PER_ENTRY + 1);
+      if (data != MISS && generation(data) == generation) {
+        used++;
+      }
+    }
+    return (int) (used * 1000 / sample);
+  }
+
+  @Override
+  public String toString() {
+    return "TranspositionTable[" + getSizeInBytes() / MEGABYTE + " MB, "
+        + getEntryCount() + " entries, fill " + getFillPermill()
+        + " permill, probes=" + getProbeCount() + ", hits=" + getHitCount()
+        + String.format(" (%.1f%%)", 100 * getHitRate()) + ", stores="
+        + getStoreCount() + "]";
+  }
+}
@@ -0,0 +1,275 @@
+package com.org.zhaohui.server.perft;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.MoveList;
+import com.org.zhaohui.shared.logics.PackedMove;
+import com.org.zhaohui.shared.logics.StateChanger;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a given depth (perft), the
+ * standard way to check a move generator against published numbers and to
+ * measure its speed. http://chessprogramming.wikispaces.com/Perft
+ *
+ * The tree is walked with StateExplorer.getPossibleMoves(State, MoveList) and
+ * the packed makeMove/unmakeMove of StateChanger on a copy of the given state,
+ * so callers' states are never touched. An instance keeps no state between
+ * calls and can be shared by threads.
+ *
+ * Run main for a command line tool, see USAGE.
+ *
+ * @author zhaohui
+ *
+ */
+public class Perft {
+  private static final String USAGE = "usage:\n"
+      + "  Perft [-divide] [-threads n] depth [fen]\n"
+      + "  Perft -suite [maxNodes]";
+  private static final long DEFAULT_SUITE_MAX_NODES = 10000000L;
+
+  private final StateExplorer stateExplorer;
+  private final StateChanger stateChanger;
+
+  public Perft() {
+    this(StateExplorerImpl.getInstance(), StateChangerImpl.getInstance());
+  }
+
+  public Perft(StateExplorer stateExplorer, StateChanger stateChanger) {
+    this.stateExplorer = stateExplorer;
+    this.stateChanger = stateChanger;
+  }
+
+  /**
+   * Returns the number of leaf nodes depth plies below state.
+   */
+  public long perft(State state, int depth) {
+    return new Walker(state.copy(), depth).count(depth);
+  }
+
+  /**
+   * Same as perft(state, depth), but the subtree below each root move is
+   * counted as a separate task of pool.
+   */
+  public long perft(State state, int depth, ForkJoinPool pool) {
+    if (depth < 2) {
+      return perft(state, depth);
+    }
+    return pool.invoke(new RootTask(state, depth));
+  }
+
+  /**
+   * Returns the perft of depth - 1 below each legal move of state, keyed by
+   * the move in coordinate notation (e.g. "e2e4") in generation order. The
+   * values add up to perft(state, depth).
+   */
+  public Map<String, Long> divide(State state, int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("divide needs depth >= 1");
+    }
+    Map<String, Long> result = Maps.newLinkedHashMap();
+    Walker walker = new Walker(state.copy(), depth);
+    MoveList moves = walker.moves[depth];
+    stateExplorer.getPossibleMoves(walker.state, moves);
+    for (int i = 0; i < moves.size(); i++) {
+      int move = moves.get(i);
+      stateChanger.makeMove(walker.state, move, walker.undo);
+      result.put(PackedMove.toCoordinateNotation(move),
+          walker.count(depth - 1));
+      stateChanger.unmakeMove(walker.state, walker.undo);
+    }
+    return result;
+  }
+
+  /**
+   * Owns the state being walked, its undo stack and one move list per ply, so
+   * a walk allocates nothing once the lists have grown.
+   */
+  private class Walker {
+    private final State state;
+    private final UndoStack undo = new UndoStack();
+    private final MoveList[] moves;
+
+    Walker(State state, int depth) {
+      this.state = state;
+      moves = new MoveList[depth + 1];
+      for (int i = 0; i <= depth; i++) {
+        moves[i] = new MoveList();
+      }
+    }
+
+    long count(int depth) {
+      if (depth == 0) {
+        return 1;
+      }
+      MoveList list = moves[depth];
+      int size = stateExplorer.getPossibleMoves(state, list);
+      if (depth == 1) {
+        // bulk counting: the moves are legal, no need to play them
+        return size;
+      }
+      long nodes = 0;
+      for (int i = 0; i < size; i++) {
+        stateChanger.makeMove(state, list.get(i), undo);
+        nodes += count(depth - 1);
+        stateChanger.unmakeMove(state, undo);
+      }
+      return nodes;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private class RootTask extends RecursiveTask<Long> {
+    private final State state;
+    private final int depth;
+
+    RootTask(State state, int depth) {
+      this.state = state;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      MoveList moves = new MoveList();
+      stateExplorer.getPossibleMoves(state, moves);
+      List<SubtreeTask> subtrees = Lists.newArrayList();
+      for (int i = 0; i < moves.size(); i++) {
+        subtrees.add(new SubtreeTask(state, moves.get(i), depth - 1));
+      }
+      long nodes = 0;
+      for (SubtreeTask subtree : invokeAll(subtrees)) {
+        nodes += subtree.join();
+      }
+      return nodes;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private class SubtreeTask extends RecursiveTask<Long> {
+    private final State root;
+    private final int move;
+    private final int depth;
+
+    SubtreeTask(State root, int move, int depth) {
+      this.root = root;
+      this.move = move;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      Walker walker = new Walker(root.copy(), depth);
+      stateChanger.makeMove(walker.state, move, walker.undo);
+      return walker.count(depth);
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      if (args.length > 0 && args[0].equals("-suite")) {
+        long maxNodes = args.length > 1 ? Long.parseLong(args[1])
+            : DEFAULT_SUITE_MAX_NODES;
+        System.exit(runSuite(new Perft(), maxNodes) ? 0 : 1);
+      }
+      boolean divide = false;
+      int threads = 1;
+      int i = 0;
+      for (; i < args.length && args[i].startsWith("-"); i++) {
+        if (args[i].equals("-divide")) {
+          divide = true;
+        } else if (args[i].equals("-threads") && i + 1 < args.length) {
+          threads = Integer.parseInt(args[++i]);
+        } else {
+          throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+      }
+      if (i >= args.length) {
+        throw new IllegalArgumentException("missing depth");
+      }
+      int depth = Integer.parseInt(args[i++]);
+      StringBuilder fen = new StringBuilder();
+      for (; i < args.length; i++) {
+        fen.append(args[i]).append(' ');
+      }
+      State state = fen.length() == 0 ? Fen.parse(Fen.INITIAL) : Fen
+          .parse(fen.toString());
+      run(new Perft(), state, depth, divide, threads);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+  }
+
+  private static void run(Perft perft, State state, int depth,
+      boolean divide, int threads) {
+    long start = System.nanoTime();
+    long nodes;
+    if (divide) {
+      nodes = 0;
+      for (Map.Entry<String, Long> entry : perft.divide(state, depth)
+          .entrySet()) {
+        System.out.println(entry.getKey() + ": " + entry.getValue());
+        nodes += entry.getValue();
+      }
+      System.out.println();
+    } else if (threads > 1) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        nodes = perft.perft(state, depth, pool);
+      } finally {
+        pool.shutdown();
+      }
+    } else {
+      nodes = perft.perft(state, depth);
+    }
+    System.out.println("perft(" + depth + ") = " + nodes + " "
+        + report(nodes, System.nanoTime() - start));
+  }
+
+  /**
+   * Runs every position of PerftPosition.standardSuite() to the deepest depth
+   * whose expected count is at most maxNodes, returning true iff all counts
+   * match.
+   */
+  private static boolean runSuite(Perft perft, long maxNodes) {
+    boolean allMatch = true;
+    long totalNodes = 0;
+    long totalNanos = 0;
+    for (PerftPosition position : PerftPosition.standardSuite()) {
+      State state = Fen.parse(position.getFen());
+      for (int depth = 1; depth <= position.getMaxDepth()
+          && position.getExpected(depth) <= maxNodes; depth++) {
+        long start = System.nanoTime();
+        long nodes = perft.perft(state, depth);
+        long nanos = System.nanoTime() - start;
+        boolean match = nodes == position.getExpected(depth);
+        allMatch &= match;
+        totalNodes += nodes;
+        totalNanos += nanos;
+        System.out.println((match ? "ok   " : "FAIL ") + position.getName()
+            + " perft(" + depth + ") = " + nodes
+            + (match ? "" : " expected " + position.getExpected(depth)) + " "
+            + report(nodes, nanos));
+      }
+    }
+    System.out.println("total " + totalNodes + " nodes "
+        + report(totalNodes, totalNanos));
+    return allMatch;
+  }
+
+  private static String report(long nodes, long nanos) {
+    long millis = Math.max(1, nanos / 1000000);
+    return "in " + millis + " ms, " + nodes * 1000 / millis + " nodes/s";
+  }
+}
@@ -0,0 +1,72 @@
+package com.org.zhaohui.server.perft;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A position with its known perft counts, getExpected(depth) for depth 1 to
+ * getMaxDepth(). standardSuite() holds the usual test positions, whose counts
+ * are published at http://chessprogramming.wikispaces.com/Perft+Results and
+ * cover castling, en passant, promotions, pins and discovered checks.
+ *
+ * @author zhaohui
+ *
+ */
+public final class PerftPosition {
+  private static final List<PerftPosition> STANDARD_SUITE = ImmutableList.of(
+      new PerftPosition("initial",
+          "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+          20L, 400L, 8902L, 197281L, 4865609L, 119060324L),
+      new PerftPosition("kiwipete",
+          "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+          48L, 2039L, 97862L, 4085603L, 193690690L),
+      new PerftPosition("position3",
+          "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+          14L, 191L, 2812L, 43238L, 674624L, 11030083L),
+      new PerftPosition("position4",
+          "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+          6L, 264L, 9467L, 422333L, 15833292L),
+      new PerftPosition("position5",
+          "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+          44L, 1486L, 62379L, 2103487L, 89941194L),
+      new PerftPosition("position6",
+          "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+          46L, 2079L, 89890L, 3894594L, 164075551L));
+
+  private final String name;
+  private final String fen;
+  private final long[] expected;
+
+  public PerftPosition(String name, String fen, long... expected) {
+    this.name = name;
+    this.fen = fen;
+    this.expected = Arrays.copyOf(expected, expected.length);
+  }
+
+  public static List<PerftPosition> standardSuite() {
+    return STANDARD_SUITE;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getFen() {
+    return fen;
+  }
+
+  public int getMaxDepth() {
+    return expected.length;
+  }
+
+  public long getExpected(int depth) {
+    return expected[depth - 1];
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + fen;
+  }
+}
@@ -0,0 +1,164 @@
+package com.org.zhaohui.shared.basics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads and writes states in Forsyth-Edwards Notation, e.g. the initial state
+ * is "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+ *
+ * FEN names the en passant target square (the square the pawn skipped) while
+ * State keeps the position of the pawn itself, so the two are translated here.
+ * State does not track the full move number: it is ignored when parsing and
+ * written as 1.
+ * http://en.wikipedia.org/wiki/Forsyth%E2%80%93Edwards_Notation
+ *
+ * @author zhaohui
+ *
+ */
+public final class Fen {
+  public static final String INITIAL =
+      "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+  /** KIND_LETTERS.charAt(kind.ordinal()) is the black letter of kind */
+  private static final String KIND_LETTERS = "kqrbnp";
+  private static final PieceKind[] KINDS = PieceKind.values();
+
+  private Fen() {
+  }
+
+  /**
+   * Returns the state described by fen. The half move clock and full move
+   * number may be omitted. Throws IllegalArgumentException if fen is malformed.
+   */
+  public static State parse(String fen) {
+    String[] fields = checkNotNull(fen).trim().split("\\s+");
+    checkArgument(fields.length >= 4 && fields.length <= 6, "Bad FEN: %s", fen);
+
+    Piece[][] board = new Piece[State.ROWS][State.COLS];
+    String[] ranks = fields[0].split("/");
+    checkArgument(ranks.length == State.ROWS, "Bad FEN: %s", fen);
+    for (int i = 0; i < State.ROWS; i++) {
+      int row = State.ROWS - 1 - i;
+      int col = 0;
+      for (char c : ranks[i].toCharArray()) {
+        if (c >= '1' && c <= '8') {
+          col += c - '0';
+        } else {
+          int kind = KIND_LETTERS.indexOf(Character.toLowerCase(c));
+          checkArgument(kind >= 0 && col < State.COLS, "Bad FEN: %s", fen);
+          Color color = Character.isUpperCase(c) ? Color.WHITE : Color.BLACK;
+          board[row][col++] = Piece.of(color, KINDS[kind]);
+        }
+      }
+      checkArgument(col == State.COLS, "Bad FEN: %s", fen);
+    }
+
+    checkArgument(fields[1].equals("w") || fields[1].equals("b"),
+        "Bad FEN: %s", fen);
+    Color turn = fields[1].equals("w") ? Color.WHITE : Color.BLACK;
+
+    boolean[] canCastleKingSide = new boolean[2];
+    boolean[] canCastleQueenSide = new boolean[2];
+    if (!fields[2].equals("-")) {
+      for (char c : fields[2].toCharArray()) {
+        int index = "KQkq".indexOf(c);
+        checkArgument(index >= 0, "Bad FEN: %s", fen);
+        if (index % 2 == 0) {
+          canCastleKingSide[index / 2] = true;
+        } else {
+          canCastleQueenSide[index / 2] = true;
+        }
+      }
+    }
+
+    Position enpassantPosition = null;
+    if (!fields[3].equals("-")) {
+      checkArgument(fields[3].length() == 2, "Bad FEN: %s", fen);
+      int col = fields[3].charAt(0) - 'a';
+      int targetRow = fields[3].charAt(1) - '1';
+      checkArgument(col >= 0 && col < State.COLS
+          && (targetRow == 2 || targetRow == 5), "Bad FEN: %s", fen);
+      // the pawn that just moved stands one row past the skipped square
+      int row = targetRow == 2 ? 3 : 4;
+      Piece pawn = board[row][col];
+      checkArgument(pawn != null && pawn.getKind() == PieceKind.PAWN
+          && pawn.getColor() != turn, "Bad FEN: %s", fen);
+      enpassantPosition = Position.of(row, col);
+    }
+
+    int numberOfMovesWithoutCaptureNorPawnMoved = 0;
+    if (fields.length > 4) {
+      try {
+        numberOfMovesWithoutCaptureNorPawnMoved = Integer.parseInt(fields[4]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Bad FEN: " + fen);
+      }
+    }
+
+    return new State(turn, board, canCastleKingSide, canCastleQueenSide,
+        enpassantPosition, numberOfMovesWithoutCaptureNorPawnMoved, null);
+  }
+
+  /**
+   * Returns the FEN of state; the game result is not part of it.
+   */
+  public static String toFen(State state) {
+    StringBuilder fen = new StringBuilder();
+    for (int row = State.ROWS - 1; row >= 0; row--) {
+      int empty = 0;
+      for (int col = 0; col < State.COLS; col++) {
+        Piece piece = state.getPiece(row, col);
+        if (piece == null) {
+          empty++;
+          continue;
+        }
+        if (empty > 0) {
+          fen.append(empty);
+          empty = 0;
+        }
+        char letter = KIND_LETTERS.charAt(piece.getKind().ordinal());
+        fen.append(piece.getColor().isWhite() ? Character.toUpperCase(letter)
+            : letter);
+      }
+      if (empty > 0) {
+        fen.append(empty);
+      }
+      if (row > 0) {
+        fen.append('/');
+      }
+    }
+
+    fen.append(state.getTurn().isWhite() ? " w " : " b ");
+
+    int length = fen.length();
+    if (state.isCanCastleKingSide(Color.WHITE)) {
+      fen.append('K');
+    }
+    if (state.isCanCastleQueenSide(Color.WHITE)) {
+      fen.append('Q');
+    }
+    if (state.isCanCastleKingSide(Color.BLACK)) {
+      fen.append('k');
+    }
+    if (state.isCanCastleQueenSide(Color.BLACK)) {
+      fen.append('q');
+    }
+    if (fen.length() == length) {
+      fen.append('-');
+    }
+
+    Position enpassantPosition = state.getEnpassantPosition();
+    if (enpassantPosition == null) {
+      fen.append(" -");
+    } else {
+      int targetRow = enpassantPosition.getRow() == 3 ? 2 : 5;
+      fen.append(' ').append((char) ('a' + enpassantPosition.getCol()))
+          .append(targetRow + 1);
+    }
+
+    fen.append(' ').append(state.getNumberOfMovesWithoutCaptureNorPawnMoved())
+        .append(" 1");
+    return fen.toString();
+  }
+}
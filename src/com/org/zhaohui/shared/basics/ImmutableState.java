@@ -0,0 +1,306 @@
+package com.org.zhaohui.shared.basics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+
+/**
+ * An immutable position, for keeping game histories, analysis trees and
+ * snapshots without copying the board for each of them.
+ *
+ * The board is held as eight row arrays that are never written once built.
+ * play(move) returns a new position that rebuilds only the rows the move
+ * touches (at most two, castling and en passant included) and shares the
+ * other row arrays with this one, so each move costs a few words instead of
+ * a whole board. The Zobrist key is updated incrementally, as in State.
+ *
+ * of(State) and toState() convert from and to the mutable State, which is
+ * what the explorer and changer work on.
+ *
+ * @author zhaohui
+ *
+ */
+public final class ImmutableState {
+  private static final int KINDS = PieceKind.values().length;
+  private static final int WHITE_KING_SIDE = 1;
+  private static final int WHITE_QUEEN_SIDE = 2;
+  private static final int BLACK_KING_SIDE = 4;
+  private static final int BLACK_QUEEN_SIDE = 8;
+
+  /** rows[row][col], the row arrays may be shared with other positions */
+  private final Piece[][] rows;
+  private final Color turn;
+  /** the castling rights still held, a mask of the *_SIDE bits above */
+  private final int castlingRights;
+  private final Position enpassantPosition;
+  private final int numberOfMovesWithoutCaptureNorPawnMoved;
+  private final GameResult gameResult;
+  private final long zobristKey;
+
+  private ImmutableState(Piece[][] rows, Color turn, int castlingRights,
+      Position enpassantPosition, int numberOfMovesWithoutCaptureNorPawnMoved,
+      GameResult gameResult, long zobristKey) {
+    this.rows = rows;
+    this.turn = turn;
+    this.castlingRights = castlingRights;
+    this.enpassantPosition = enpassantPosition;
+    this.numberOfMovesWithoutCaptureNorPawnMoved = numberOfMovesWithoutCaptureNorPawnMoved;
+    this.gameResult = gameResult;
+    this.zobristKey = zobristKey;
+  }
+
+  /**
+   * Returns an immutable snapshot of state; later changes to state do not
+   * show in it.
+   */
+  public static ImmutableState of(State state) {
+    Piece[][] rows = new Piece[State.ROWS][State.COLS];
+    for (int r = 0; r < State.ROWS; r++) {
+      for (int c = 0; c < State.COLS; c++) {
+        rows[r][c] = state.getPiece(r, c);
+      }
+    }
+    int castlingRights = 0;
+    for (Color color : Color.values()) {
+      if (state.isCanCastleKingSide(color)) {
+        castlingRights |= kingSide(color);
+      }
+      if (state.isCanCastleQueenSide(color)) {
+        castlingRights |= queenSide(color);
+      }
+    }
+    return new ImmutableState(rows, state.getTurn(), castlingRights,
+        state.getEnpassantPosition(),
+        state.getNumberOfMovesWithoutCaptureNorPawnMoved(),
+        state.getGameResult(), state.getZobristKey());
+  }
+
+  /**
+   * Returns a new mutable State equal to this position.
+   */
+  public State toState() {
+    boolean[] canCastleKingSide = new boolean[2];
+    boolean[] canCastleQueenSide = new boolean[2];
+    for (Color color : Color.values()) {
+      canCastleKingSide[color.ordinal()] = isCanCastleKingSide(color);
+      canCastleQueenSide[color.ordinal()] = isCanCastleQueenSide(color);
+    }
+    return new State(turn, rows, canCastleKingSide, canCastleQueenSide,
+        enpassantPosition, numberOfMovesWithoutCaptureNorPawnMoved,
+        gameResult);
+  }
+
+  /**
+   * Returns the position after move is played, sharing the rows the move does
+   * not touch with this one. Like the packed makeMove of StateChanger, this
+   * neither checks that move is legal nor decides the game result, which is
+   * carried over; use withGameResult to record the end of the game.
+   */
+  public ImmutableState play(Move move) {
+    Position from = move.getFrom();
+    Position to = move.getTo();
+    int fromRow = from.getRow();
+    int fromCol = from.getCol();
+    int toRow = to.getRow();
+    int toCol = to.getCol();
+    Piece piece = rows[fromRow][fromCol];
+    if (piece == null) {
+      throw new IllegalArgumentException("No piece to move at " + from);
+    }
+    Color color = piece.getColor();
+    boolean pawn = piece.getKind() == PieceKind.PAWN;
+    boolean enpassant = pawn && fromCol != toCol
+        && rows[toRow][toCol] == null;
+    boolean castling = piece.getKind() == PieceKind.KING
+        && Math.abs(toCol - fromCol) == 2;
+    Piece captured = enpassant ? rows[fromRow][toCol] : rows[toRow][toCol];
+
+    Piece[][] newRows = new Piece[State.ROWS][];
+    System.arraycopy(rows, 0, newRows, 0, State.ROWS);
+    Piece[] newFromRow = copyRow(fromRow);
+    newRows[fromRow] = newFromRow;
+    Piece[] newToRow = toRow == fromRow ? newFromRow : copyRow(toRow);
+    newRows[toRow] = newToRow;
+
+    long key = zobristKey ^ Zobrist.BLACK_TO_MOVE;
+    key ^= pieceKey(piece, fromRow, fromCol);
+    newFromRow[fromCol] = null;
+    if (enpassant) {
+      key ^= pieceKey(captured, fromRow, toCol);
+      newFromRow[toCol] = null;
+    } else if (captured != null) {
+      key ^= pieceKey(captured, toRow, toCol);
+    }
+    Piece moved = move.getPromoteToPiece() == null ? piece : Piece.of(color,
+        move.getPromoteToPiece());
+    newToRow[toCol] = moved;
+    key ^= pieceKey(moved, toRow, toCol);
+    if (castling) {
+      int rookFromCol = toCol > fromCol ? 7 : 0;
+      int rookToCol = toCol > fromCol ? 5 : 3;
+      Piece rook = newFromRow[rookFromCol];
+      newFromRow[rookFromCol] = null;
+      newFromRow[rookToCol] = rook;
+      key ^= pieceKey(rook, fromRow, rookFromCol)
+          ^ pieceKey(rook, fromRow, rookToCol);
+    }
+
+    int newCastlingRights = castlingRights;
+    if (piece.getKind() == PieceKind.KING) {
+      newCastlingRights &= ~(kingSide(color) | queenSide(color));
+    }
+    newCastlingRights &= ~cornerCastlingRight(fromRow, fromCol)
+        & ~cornerCastlingRight(toRow, toCol);
+    key ^= castlingKey(castlingRights) ^ castlingKey(newCastlingRights);
+
+    Position newEnpassantPosition = pawn && Math.abs(toRow - fromRow) == 2 ? to
+        : null;
+    key ^= enpassantKey(enpassantPosition) ^ enpassantKey(newEnpassantPosition);
+
+    return new ImmutableState(newRows, turn.getOpposite(), newCastlingRights,
+        newEnpassantPosition, pawn || captured != null ? 0
+            : numberOfMovesWithoutCaptureNorPawnMoved + 1, gameResult, key);
+  }
+
+  /**
+   * Returns this position with the given game result, sharing every row.
+   */
+  public ImmutableState withGameResult(GameResult gameResult) {
+    return new ImmutableState(rows, turn, castlingRights, enpassantPosition,
+        numberOfMovesWithoutCaptureNorPawnMoved, gameResult, zobristKey);
+  }
+
+  private Piece[] copyRow(int row) {
+    Piece[] copy = new Piece[State.COLS];
+    System.arraycopy(rows[row], 0, copy, 0, State.COLS);
+    return copy;
+  }
+
+  private static int kingSide(Color color) {
+    return color.isWhite() ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+  }
+
+  private static int queenSide(Color color) {
+    return color.isWhite() ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+  }
+
+  /*
+   * A move from or to a corner means that rook has moved or been captured
+   */
+  private static int cornerCastlingRight(int row, int col) {
+    if ((row == 0 || row == State.ROWS - 1)
+        && (col == 0 || col == State.COLS - 1)) {
+      Color color = row == 0 ? Color.WHITE : Color.BLACK;
+      return col == 0 ? queenSide(color) : kingSide(color);
+    }
+    return 0;
+  }
+
+  private static long pieceKey(Piece piece, int row, int col) {
+    return Zobrist.PIECES[piece.getColor().ordinal() * KINDS
+        + piece.getKind().ordinal()][row * State.COLS + col];
+  }
+
+  private static long castlingKey(int castlingRights) {
+    long key = 0;
+    for (Color color : Color.values()) {
+      if ((castlingRights & kingSide(color)) != 0) {
+        key ^= Zobrist.CASTLE_KING_SIDE[color.ordinal()];
+      }
+      if ((castlingRights & queenSide(color)) != 0) {
+        key ^= Zobrist.CASTLE_QUEEN_SIDE[color.ordinal()];
+      }
+    }
+    return key;
+  }
+
+  private static long enpassantKey(Position position) {
+    return position == null ? 0 : Zobrist.ENPASSANT[position.getRow()
+        * State.COLS + position.getCol()];
+  }
+
+  public Color getTurn() {
+    return turn;
+  }
+
+  public Piece getPiece(Position position) {
+    return getPiece(position.getRow(), position.getCol());
+  }
+
+  public Piece getPiece(int row, int col) {
+    return rows[row][col];
+  }
+
+  public boolean isCanCastleKingSide(Color color) {
+    return (castlingRights & kingSide(checkNotNull(color))) != 0;
+  }
+
+  public boolean isCanCastleQueenSide(Color color) {
+    return (castlingRights & queenSide(checkNotNull(color))) != 0;
+  }
+
+  public Position getEnpassantPosition() {
+    return enpassantPosition;
+  }
+
+  public int getNumberOfMovesWithoutCaptureNorPawnMoved() {
+    return numberOfMovesWithoutCaptureNorPawnMoved;
+  }
+
+  public GameResult getGameResult() {
+    return gameResult;
+  }
+
+  /**
+   * Returns the same key as State.getZobristKey() for the equal State.
+   */
+  public long getZobristKey() {
+    return zobristKey;
+  }
+
+  /**
+   * Returns true iff this position and other hold the very same array for
+   * row, i.e. one was derived from the other without touching that row.
+   */
+  boolean sharesRow(ImmutableState other, int row) {
+    return rows[row] == other.rows[row];
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (int) (zobristKey ^ (zobristKey >>> 32));
+    result = 31 * result + numberOfMovesWithoutCaptureNorPawnMoved;
+    result = 31 * result + (gameResult == null ? 0 : gameResult.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof ImmutableState))
+      return false;
+    ImmutableState other = (ImmutableState) obj;
+    if (zobristKey != other.zobristKey
+        || turn != other.turn
+        || castlingRights != other.castlingRights
+        || numberOfMovesWithoutCaptureNorPawnMoved != other.numberOfMovesWithoutCaptureNorPawnMoved
+        || !Objects.equal(enpassantPosition, other.enpassantPosition)
+        || !Objects.equal(gameResult, other.gameResult)) {
+      return false;
+    }
+    for (int r = 0; r < State.ROWS; r++) {
+      if (rows[r] != other.rows[r] && !Arrays.equals(rows[r], other.rows[r])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "Immutable" + toState();
+  }
+}
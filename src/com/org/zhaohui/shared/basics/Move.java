@@ -5,14 +5,55 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Objects;
 
 public class Move {
-  private Position from;
-  private Position to;
+  private static final int SQUARES = State.ROWS * State.COLS;
+  /** no promotion, or promotion to any kind but a pawn */
+  private static final int PROMOTIONS = PieceKind.values().length;
+  /**
+   * MOVES[(from * 64 + to) * PROMOTIONS + promotion] is the shared instance of
+   * each move, where promotion is 0 for no promotion and 1 + kind.ordinal()
+   * otherwise. Only moves some piece can make are built: queen lines (which
+   * include castling), knight jumps and pawn promotions.
+   */
+  private static final Move[] MOVES = new Move[SQUARES * SQUARES * PROMOTIONS];
+
+  static {
+    PieceKind[] promotions = { PieceKind.QUEEN, PieceKind.ROOK,
+        PieceKind.BISHOP, PieceKind.KNIGHT };
+    for (int fromRow = 0; fromRow < State.ROWS; fromRow++) {
+      for (int fromCol = 0; fromCol < State.COLS; fromCol++) {
+        for (int toRow = 0; toRow < State.ROWS; toRow++) {
+          for (int toCol = 0; toCol < State.COLS; toCol++) {
+            int rowDif = Math.abs(toRow - fromRow);
+            int colDif = Math.abs(toCol - fromCol);
+            if (rowDif + colDif == 0) {
+              continue;
+            }
+            Position from = Position.of(fromRow, fromCol);
+            Position to = Position.of(toRow, toCol);
+            if (rowDif == 0 || colDif == 0 || rowDif == colDif
+                || rowDif * colDif == 2) {
+              MOVES[index(from, to, null)] = new Move(from, to, null);
+            }
+            boolean promotion = colDif <= 1
+                && (fromRow == 6 && toRow == 7 || fromRow == 1 && toRow == 0);
+            for (int i = 0; promotion && i < promotions.length; i++) {
+              MOVES[index(from, to, promotions[i])] = new Move(from, to,
+                  promotions[i]);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private final Position from;
+  private final Position to;
   /**
    * When a pawn reaches the eighth rank, it can be promoted to another piece
    * kind. promoteToPiece is null if no promotion is made. See
    * http://en.wikipedia.org/wiki/Promotion_(chess)
    */
-  private PieceKind promoteToPiece;
+  private final PieceKind promoteToPiece;
 
   public Move(Position from, Position to, PieceKind promoteToPiece) {
     this.from = checkNotNull(from);
@@ -20,6 +61,32 @@ public class Move {
     this.promoteToPiece = promoteToPiece;
   }
 
+  /**
+   * Returns the shared instance of the given move. Moves that no piece can
+   * make, such as moves off the board, are created on demand.
+   */
+  public static Move of(Position from, Position to, PieceKind promoteToPiece) {
+    if (!isOnBoard(from) || !isOnBoard(to)
+        || promoteToPiece == PieceKind.PAWN) {
+      return new Move(from, to, promoteToPiece);
+    }
+    Move move = MOVES[index(from, to, promoteToPiece)];
+    return move != null ? move : new Move(from, to, promoteToPiece);
+  }
+
+  private static int index(Position from, Position to, PieceKind promoteToPiece) {
+    return ((from.getRow() * State.COLS + from.getCol()) * SQUARES
+        + to.getRow() * State.COLS + to.getCol())
+        * PROMOTIONS
+        + (promoteToPiece == null ? 0 : promoteToPiece.ordinal() + 1);
+  }
+
+  private static boolean isOnBoard(Position position) {
+    return position != null && position.getRow() >= 0
+        && position.getRow() < State.ROWS && position.getCol() >= 0
+        && position.getCol() < State.COLS;
+  }
+
   public Position getFrom() {
     return from;
   }
@@ -5,14 +5,34 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Objects;
 
 public class Piece {
-  private Color color;
-  private PieceKind kind;
+  /** PIECES[color.ordinal()][kind.ordinal()] is the shared instance */
+  private static final Piece[][] PIECES = new Piece[Color.values().length][PieceKind
+      .values().length];
+
+  static {
+    for (Color color : Color.values()) {
+      for (PieceKind kind : PieceKind.values()) {
+        PIECES[color.ordinal()][kind.ordinal()] = new Piece(color, kind);
+      }
+    }
+  }
+
+  private final Color color;
+  private final PieceKind kind;
 
   public Piece(Color color, PieceKind kind) {
     this.color = checkNotNull(color);
     this.kind = checkNotNull(kind);
   }
 
+  /**
+   * Returns the shared instance of the given piece, pieces are immutable so
+   * there is no need to allocate a new one per square or per move.
+   */
+  public static Piece of(Color color, PieceKind kind) {
+    return PIECES[color.ordinal()][kind.ordinal()];
+  }
+
   public Color getColor() {
     return color;
   }
@@ -1,10 +1,24 @@
 package com.org.zhaohui.shared.basics;
 
 public enum PieceKind {
-  KING, 
-  QUEEN, 
-  ROOK, 
-  BISHOP, 
-  KNIGHT, 
-  PAWN, ;
+  KING(0), 
+  QUEEN(900), 
+  ROOK(500), 
+  BISHOP(330), 
+  KNIGHT(320), 
+  PAWN(100), ;
+
+  private final int value;
+
+  private PieceKind(int value) {
+    this.value = value;
+  }
+
+  /**
+   * Returns the usual material value of the kind in centipawns, a pawn being
+   * worth 100. The king is never captured nor traded, its value is 0.
+   */
+  public int getValue() {
+    return value;
+  }
 }
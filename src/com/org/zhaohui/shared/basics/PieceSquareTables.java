@@ -0,0 +1,148 @@
+package com.org.zhaohui.shared.basics;
+
+/**
+ * The piece-square tables State sums up incrementally: what a piece is worth
+ * on each square on top of its material value, once for the middlegame and
+ * once for the endgame. The values are those of Tomasz Michniewski's
+ * simplified evaluation function, see
+ * http://chessprogramming.wikispaces.com/Simplified+evaluation+function
+ * plus an endgame table for the king and one rewarding passed-pawn-like
+ * advances for pawns.
+ *
+ * @author zhaohui
+ *
+ */
+public final class PieceSquareTables {
+  private static final int SQUARES = State.ROWS * State.COLS;
+
+  /**
+   * MIDDLEGAME[color.ordinal() * 6 + kind.ordinal()][row * 8 + col], as in
+   * State, counted for white: positive for white pieces, negative for black
+   * ones.
+   */
+  static final int[][] MIDDLEGAME = new int[2 * PieceKind.values().length]
+      [SQUARES];
+  static final int[][] ENDGAME = new int[2 * PieceKind.values().length]
+      [SQUARES];
+
+  /*
+   * The tables below are laid out as a board is printed for white: the 8th
+   * rank first, the a-file on the left.
+   */
+  private static final int[] PAWN = {
+      0,  0,  0,  0,  0,  0,  0,  0,
+     50, 50, 50, 50, 50, 50, 50, 50,
+     10, 10, 20, 30, 30, 20, 10, 10,
+      5,  5, 10, 25, 25, 10,  5,  5,
+      0,  0,  0, 20, 20,  0,  0,  0,
+      5, -5,-10,  0,  0,-10, -5,  5,
+      5, 10, 10,-20,-20, 10, 10,  5,
+      0,  0,  0,  0,  0,  0,  0,  0 };
+  private static final int[] PAWN_ENDGAME = {
+      0,  0,  0,  0,  0,  0,  0,  0,
+     80, 80, 80, 80, 80, 80, 80, 80,
+     50, 50, 50, 50, 50, 50, 50, 50,
+     30, 30, 30, 30, 30, 30, 30, 30,
+     15, 15, 15, 15, 15, 15, 15, 15,
+      5,  5,  5,  5,  5,  5,  5,  5,
+      0,  0,  0,  0,  0,  0,  0,  0,
+      0,  0,  0,  0,  0,  0,  0,  0 };
+  private static final int[] KNIGHT = {
+    -50,-40,-30,-30,-30,-30,-40,-50,
+    -40,-20,  0,  0,  0,  0,-20,-40,
+    -30,  0, 10, 15, 15, 10,  0,-30,
+    -30,  5, 15, 20, 20, 15,  5,-30,
+    -30,  0, 15, 20, 20, 15,  0,-30,
+    -30,  5, 10, 15, 15, 10,  5,-30,
+    -40,-20,  0,  5,  5,  0,-20,-40,
+    -50,-40,-30,-30,-30,-30,-40,-50 };
+  private static final int[] BISHOP = {
+    -20,-10,-10,-10,-10,-10,-10,-20,
+    -10,  0,  0,  0,  0,  0,  0,-10,
+    -10,  0,  5, 10, 10,  5,  0,-10,
+    -10,  5,  5, 10, 10,  5,  5,-10,
+    -10,  0, 10, 10, 10, 10,  0,-10,
+    -10, 10, 10, 10, 10, 10, 10,-10,
+    -10,  5,  0,  0,  0,  0,  5,-10,
+    -20,-10,-10,-10,-10,-10,-10,-20 };
+  private static final int[] ROOK = {
+      0,  0,  0,  0,  0,  0,  0,  0,
+      5, 10, 10, 10, 10, 10, 10,  5,
+     -5,  0,  0,  0,  0,  0,  0, -5,
+     -5,  0,  0,  0,  0,  0,  0, -5,
+     -5,  0,  0,  0,  0,  0,  0, -5,
+     -5,  0,  0,  0,  0,  0,  0, -5,
+     -5,  0,  0,  0,  0,  0,  0, -5,
+      0,  0,  0,  5,  5,  0,  0,  0 };
+  private static final int[] QUEEN = {
+    -20,-10,-10, -5, -5,-10,-10,-20,
+    -10,  0,  0,  0,  0,  0,  0,-10,
+    -10,  0,  5,  5,  5,  5,  0,-10,
+     -5,  0,  5,  5,  5,  5,  0, -5,
+      0,  0,  5,  5,  5,  5,  0, -5,
+    -10,  5,  5,  5,  5,  5,  0,-10,
+    -10,  0,  5,  0,  0,  0,  0,-10,
+    -20,-10,-10, -5, -5,-10,-10,-20 };
+  private static final int[] KING = {
+    -30,-40,-40,-50,-50,-40,-40,-30,
+    -30,-40,-40,-50,-50,-40,-40,-30,
+    -30,-40,-40,-50,-50,-40,-40,-30,
+    -30,-40,-40,-50,-50,-40,-40,-30,
+    -20,-30,-30,-40,-40,-30,-30,-20,
+    -10,-20,-20,-20,-20,-20,-20,-10,
+     20, 20,  0,  0,  0,  0, 20, 20,
+     20, 30, 10,  0,  0, 10, 30, 20 };
+  private static final int[] KING_ENDGAME = {
+    -50,-40,-30,-20,-20,-30,-40,-50,
+    -30,-20,-10,  0,  0,-10,-20,-30,
+    -30,-10, 20, 30, 30, 20,-10,-30,
+    -30,-10, 30, 40, 40, 30,-10,-30,
+    -30,-10, 30, 40, 40, 30,-10,-30,
+    -30,-10, 20, 30, 30, 20,-10,-30,
+    -30,-30,  0,  0,  0,  0,-30,-30,
+    -50,-30,-30,-30,-30,-30,-30,-50 };
+
+  static {
+    for (PieceKind kind : PieceKind.values()) {
+      int[] middlegame = middlegameTable(kind);
+      int[] endgame = kind == PieceKind.KING ? KING_ENDGAME
+          : kind == PieceKind.PAWN ? PAWN_ENDGAME : middlegame;
+      int white = Color.WHITE.ordinal() * PieceKind.values().length
+          + kind.ordinal();
+      int black = Color.BLACK.ordinal() * PieceKind.values().length
+          + kind.ordinal();
+      for (int row = 0; row < State.ROWS; row++) {
+        for (int col = 0; col < State.COLS; col++) {
+          int square = row * State.COLS + col;
+          // white reads the printed tables upside down; black, seeing the
+          // board from the other side, reads them as printed
+          int forWhite = (State.ROWS - 1 - row) * State.COLS + col;
+          MIDDLEGAME[white][square] = middlegame[forWhite];
+          ENDGAME[white][square] = endgame[forWhite];
+          MIDDLEGAME[black][square] = -middlegame[square];
+          ENDGAME[black][square] = -endgame[square];
+        }
+      }
+    }
+  }
+
+  private static int[] middlegameTable(PieceKind kind) {
+    switch (kind) {
+    case KING:
+      return KING;
+    case QUEEN:
+      return QUEEN;
+    case ROOK:
+      return ROOK;
+    case BISHOP:
+      return BISHOP;
+    case KNIGHT:
+      return KNIGHT;
+    default:
+      return PAWN;
+    }
+  }
+
+  private PieceSquareTables() {
+  }
+}
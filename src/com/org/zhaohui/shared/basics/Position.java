@@ -3,14 +3,37 @@ package com.org.zhaohui.shared.basics;
 import com.google.common.base.Objects;
 
 public class Position {
-	private int row;
-	private int col;
+	/** POSITIONS[row * State.COLS + col] is the shared instance of that square */
+	private static final Position[] POSITIONS = new Position[State.ROWS
+			* State.COLS];
+
+	static {
+		for (int row = 0; row < State.ROWS; row++) {
+			for (int col = 0; col < State.COLS; col++) {
+				POSITIONS[row * State.COLS + col] = new Position(row, col);
+			}
+		}
+	}
+
+	private final int row;
+	private final int col;
 
 	public Position(int row, int col) {
 		this.row = row;
 		this.col = col;
 	}
 
+	/**
+	 * Returns the shared instance for a square on the board, so hot paths do not
+	 * allocate. Positions off the board are still created on demand.
+	 */
+	public static Position of(int row, int col) {
+		if (row < 0 || row >= State.ROWS || col < 0 || col >= State.COLS) {
+			return new Position(row, col);
+		}
+		return POSITIONS[row * State.COLS + col];
+	}
+
 	public int getRow() {
 		return row;
 	}
@@ -9,11 +9,43 @@ import com.google.common.base.Objects;
 public class State {
   public static final int ROWS = 8;
   public static final int COLS = 8;
+  private static final int KINDS = PieceKind.values().length;
 
   /** turn is the color of the player that should play next */
   private Color turn = Color.WHITE;
   /** board contains all the pieces on the board */
   private Piece[][] board = new Piece[ROWS][COLS];
+  /**
+   * bitboards mirror board as one 64-bit mask per color and piece kind: bit
+   * (row * COLS + col) of bitboards[bitboardIndex(color, kind)] is set iff that
+   * square holds such a piece. colorBitboards hold the union per color. Both
+   * are kept in sync by setPiece.
+   */
+  private long[] bitboards = new long[2 * KINDS];
+  private long[] colorBitboards = new long[2];
+  /**
+   * zobristKey is the XOR of the Zobrist keys of every piece on its square,
+   * the side to move, the castling rights and the en passant position. The
+   * setters keep it up to date incrementally.
+   */
+  private long zobristKey = Zobrist.CASTLE_KING_SIDE[0]
+      ^ Zobrist.CASTLE_KING_SIDE[1] ^ Zobrist.CASTLE_QUEEN_SIDE[0]
+      ^ Zobrist.CASTLE_QUEEN_SIDE[1];
+  /**
+   * pawnZobristKey is the XOR of the Zobrist keys of the pawns alone, so it
+   * only changes when a pawn moves, is captured or promotes.
+   */
+  private long pawnZobristKey;
+  /**
+   * material[color.ordinal()] sums PieceKind.getValue() over the pieces of
+   * that color. middlegameScore and endgameScore sum the PieceSquareTables
+   * entries of every piece on its square, white's minus black's. setPiece
+   * keeps all three up to date, so evaluating a position does not need to
+   * scan the board.
+   */
+  private int[] material = new int[2];
+  private int middlegameScore;
+  private int endgameScore;
   /**
    * canCastleKingSide[0] is true iff the white king has never moved and the
    * white king-side rook has never moved. (canCastleKingSide[1] is for the
@@ -60,43 +92,71 @@ public class State {
   public State() {
     for (Color color : Color.values()) {
       for (int c = 0; c < COLS; c++) {
-        setPiece(color.isWhite() ? 1 : ROWS - 2, c, new Piece(color,
+        setPiece(color.isWhite() ? 1 : ROWS - 2, c, Piece.of(color,
             PieceKind.PAWN));
       }
       int secondRow = color.isWhite() ? 0 : ROWS - 1;
-      setPiece(secondRow, 0, new Piece(color, PieceKind.ROOK));
-      setPiece(secondRow, 7, new Piece(color, PieceKind.ROOK));
-      setPiece(secondRow, 1, new Piece(color, PieceKind.KNIGHT));
-      setPiece(secondRow, 6, new Piece(color, PieceKind.KNIGHT));
-      setPiece(secondRow, 2, new Piece(color, PieceKind.BISHOP));
-      setPiece(secondRow, 5, new Piece(color, PieceKind.BISHOP));
-      setPiece(secondRow, 3, new Piece(color, PieceKind.QUEEN));
-      setPiece(secondRow, 4, new Piece(color, PieceKind.KING));
+      setPiece(secondRow, 0, Piece.of(color, PieceKind.ROOK));
+      setPiece(secondRow, 7, Piece.of(color, PieceKind.ROOK));
+      setPiece(secondRow, 1, Piece.of(color, PieceKind.KNIGHT));
+      setPiece(secondRow, 6, Piece.of(color, PieceKind.KNIGHT));
+      setPiece(secondRow, 2, Piece.of(color, PieceKind.BISHOP));
+      setPiece(secondRow, 5, Piece.of(color, PieceKind.BISHOP));
+      setPiece(secondRow, 3, Piece.of(color, PieceKind.QUEEN));
+      setPiece(secondRow, 4, Piece.of(color, PieceKind.KING));
     }
   }
 
   public State(Color turn, Piece[][] board, boolean[] canCastleKingSide,
       boolean[] canCastleQueenSide, Position enpassantPosition,
       int numberOfMovesWithoutCaptureNorPawnMoved, GameResult gameResult) {
-    this.turn = turn;
-    System.arraycopy(canCastleKingSide, 0, this.canCastleKingSide, 0, 2);
-    System.arraycopy(canCastleQueenSide, 0, this.canCastleQueenSide, 0, 2);
-    this.enpassantPosition = enpassantPosition;
+    setTurn(turn);
+    for (Color color : Color.values()) {
+      setCanCastleKingSide(color, canCastleKingSide[color.ordinal()]);
+      setCanCastleQueenSide(color, canCastleQueenSide[color.ordinal()]);
+    }
+    setEnpassantPosition(enpassantPosition);
     this.numberOfMovesWithoutCaptureNorPawnMoved = numberOfMovesWithoutCaptureNorPawnMoved;
     this.gameResult = gameResult;
     for (int r = 0; r < ROWS; r++) {
       for (int c = 0; c < COLS; c++) {
-        this.board[r][c] = board[r][c];
+        setPiece(r, c, board[r][c]);
       }
     }
   }
 
+  /*
+   * Copies other field by field; the masks, key and scores need no
+   * recomputing
+   */
+  private State(State other) {
+    turn = other.turn;
+    for (int r = 0; r < ROWS; r++) {
+      System.arraycopy(other.board[r], 0, board[r], 0, COLS);
+    }
+    System.arraycopy(other.bitboards, 0, bitboards, 0, bitboards.length);
+    System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, 2);
+    System.arraycopy(other.material, 0, material, 0, 2);
+    middlegameScore = other.middlegameScore;
+    endgameScore = other.endgameScore;
+    System.arraycopy(other.canCastleKingSide, 0, canCastleKingSide, 0, 2);
+    System.arraycopy(other.canCastleQueenSide, 0, canCastleQueenSide, 0, 2);
+    enpassantPosition = other.enpassantPosition;
+    numberOfMovesWithoutCaptureNorPawnMoved = other.numberOfMovesWithoutCaptureNorPawnMoved;
+    gameResult = other.gameResult;
+    zobristKey = other.zobristKey;
+    pawnZobristKey = other.pawnZobristKey;
+  }
+
   public Color getTurn() {
     return turn;
   }
 
   public void setTurn(Color turn) {
-    this.turn = checkNotNull(turn);
+    if (checkNotNull(turn) != this.turn) {
+      zobristKey ^= Zobrist.BLACK_TO_MOVE;
+    }
+    this.turn = turn;
   }
 
   public void setPiece(Position position, Piece piece) {
@@ -104,7 +164,33 @@ public class State {
   }
 
   public void setPiece(int row, int col, Piece piece) {
+    long mask = 1L << (row * COLS + col);
+    Piece old = board[row][col];
+    if (old != null) {
+      int index = bitboardIndex(old.getColor(), old.getKind());
+      bitboards[index] &= ~mask;
+      colorBitboards[old.getColor().ordinal()] &= ~mask;
+      zobristKey ^= Zobrist.PIECES[index][row * COLS + col];
+      if (old.getKind() == PieceKind.PAWN) {
+        pawnZobristKey ^= Zobrist.PIECES[index][row * COLS + col];
+      }
+      material[old.getColor().ordinal()] -= old.getKind().getValue();
+      middlegameScore -= PieceSquareTables.MIDDLEGAME[index][row * COLS + col];
+      endgameScore -= PieceSquareTables.ENDGAME[index][row * COLS + col];
+    }
     board[row][col] = piece;
+    if (piece != null) {
+      int index = bitboardIndex(piece.getColor(), piece.getKind());
+      bitboards[index] |= mask;
+      colorBitboards[piece.getColor().ordinal()] |= mask;
+      zobristKey ^= Zobrist.PIECES[index][row * COLS + col];
+      if (piece.getKind() == PieceKind.PAWN) {
+        pawnZobristKey ^= Zobrist.PIECES[index][row * COLS + col];
+      }
+      material[piece.getColor().ordinal()] += piece.getKind().getValue();
+      middlegameScore += PieceSquareTables.MIDDLEGAME[index][row * COLS + col];
+      endgameScore += PieceSquareTables.ENDGAME[index][row * COLS + col];
+    }
   }
 
   public Piece getPiece(Position position) {
@@ -115,11 +201,63 @@ public class State {
     return board[row][col];
   }
 
+  /**
+   * Returns the squares (bit row * COLS + col) holding a piece of the given
+   * color and kind.
+   */
+  public long getBitboard(Color color, PieceKind kind) {
+    return bitboards[bitboardIndex(color, kind)];
+  }
+
+  /**
+   * Returns the squares holding a piece of the given color.
+   */
+  public long getBitboard(Color color) {
+    return colorBitboards[color.ordinal()];
+  }
+
+  public long getOccupied() {
+    return colorBitboards[0] | colorBitboards[1];
+  }
+
+  /**
+   * Returns the material of color in centipawns, see PieceKind.getValue().
+   */
+  public int getMaterial(Color color) {
+    return material[color.ordinal()];
+  }
+
+  /**
+   * Returns what the pieces' squares are worth in the middlegame according
+   * to PieceSquareTables, white's minus black's, material not included.
+   */
+  public int getMiddlegameScore() {
+    return middlegameScore;
+  }
+
+  /**
+   * Same as getMiddlegameScore for the endgame.
+   */
+  public int getEndgameScore() {
+    return endgameScore;
+  }
+
+  public int getPieceCount(Color color, PieceKind kind) {
+    return Long.bitCount(bitboards[bitboardIndex(color, kind)]);
+  }
+
+  private static int bitboardIndex(Color color, PieceKind kind) {
+    return color.ordinal() * KINDS + kind.ordinal();
+  }
+
   public boolean isCanCastleKingSide(Color color) {
     return canCastleKingSide[color.ordinal()];
   }
 
   public void setCanCastleKingSide(Color color, boolean canCastleKingSide) {
+    if (this.canCastleKingSide[color.ordinal()] != canCastleKingSide) {
+      zobristKey ^= Zobrist.CASTLE_KING_SIDE[color.ordinal()];
+    }
     this.canCastleKingSide[color.ordinal()] = canCastleKingSide;
   }
 
@@ -128,6 +266,9 @@ public class State {
   }
 
   public void setCanCastleQueenSide(Color color, boolean canCastleQueenSide) {
+    if (this.canCastleQueenSide[color.ordinal()] != canCastleQueenSide) {
+      zobristKey ^= Zobrist.CASTLE_QUEEN_SIDE[color.ordinal()];
+    }
     this.canCastleQueenSide[color.ordinal()] = canCastleQueenSide;
   }
 
@@ -136,9 +277,37 @@ public class State {
   }
 
   public void setEnpassantPosition(Position enpassantPosition) {
+    zobristKey ^= enpassantKey(this.enpassantPosition)
+        ^ enpassantKey(enpassantPosition);
     this.enpassantPosition = enpassantPosition;
   }
 
+  private static long enpassantKey(Position position) {
+    if (position == null || position.getRow() < 0 || position.getRow() >= ROWS
+        || position.getCol() < 0 || position.getCol() >= COLS) {
+      return 0;
+    }
+    return Zobrist.ENPASSANT[position.getRow() * COLS + position.getCol()];
+  }
+
+  /**
+   * Returns the Zobrist key of the position: equal positions (same board, side
+   * to move, castling rights and en passant position) have equal keys, and
+   * different ones almost surely differ. The fifty-move counter and the game
+   * result are not part of the key.
+   */
+  public long getZobristKey() {
+    return zobristKey;
+  }
+
+  /**
+   * Returns the Zobrist key of the pawns alone: positions with the same pawns
+   * on the same squares have equal keys, whatever the other pieces.
+   */
+  public long getPawnZobristKey() {
+    return pawnZobristKey;
+  }
+
   public int getNumberOfMovesWithoutCaptureNorPawnMoved() {
     return numberOfMovesWithoutCaptureNorPawnMoved;
   }
@@ -157,16 +326,15 @@ public class State {
   }
 
   public State copy() {
-    return new State(turn, board, canCastleKingSide, canCastleQueenSide,
-        enpassantPosition, numberOfMovesWithoutCaptureNorPawnMoved, gameResult);
+    return new State(this);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(turn, Arrays.deepHashCode(board),
-        Arrays.hashCode(canCastleKingSide),
-        Arrays.hashCode(canCastleQueenSide), enpassantPosition,
-        numberOfMovesWithoutCaptureNorPawnMoved, gameResult);
+    int result = (int) (zobristKey ^ (zobristKey >>> 32));
+    result = 31 * result + numberOfMovesWithoutCaptureNorPawnMoved;
+    result = 31 * result + (gameResult == null ? 0 : gameResult.hashCode());
+    return result;
   }
 
   @Override
@@ -178,7 +346,8 @@ public class State {
     if (!(obj instanceof State))
       return false;
     State other = (State) obj;
-    return Arrays.deepEquals(board, other.board)
+    return zobristKey == other.zobristKey
+        && Arrays.equals(bitboards, other.bitboards)
         && Objects.equal(turn, other.turn)
         && Arrays.equals(canCastleKingSide, other.canCastleKingSide)
         && Arrays.equals(canCastleQueenSide, other.canCastleQueenSide)
@@ -0,0 +1,57 @@
+package com.org.zhaohui.shared.basics;
+
+/**
+ * The random 64-bit keys State XORs together into its Zobrist key: one per
+ * piece on each square, one for black to move, one per castling right and one
+ * per en passant pawn square. See http://en.wikipedia.org/wiki/Zobrist_hashing
+ * 
+ * The keys come from a fixed-seed generator, so a position has the same key
+ * in every run and on both client and server.
+ * 
+ * @author zhaohui
+ * 
+ */
+public final class Zobrist {
+  private static final int SQUARES = State.ROWS * State.COLS;
+
+  /** PIECES[color.ordinal() * 6 + kind.ordinal()][row * 8 + col], as in State */
+  static final long[][] PIECES = new long[2 * PieceKind.values().length][SQUARES];
+  static final long BLACK_TO_MOVE;
+  /** CASTLE_KING_SIDE[color.ordinal()] */
+  static final long[] CASTLE_KING_SIDE = new long[2];
+  static final long[] CASTLE_QUEEN_SIDE = new long[2];
+  /** ENPASSANT[row * 8 + col] of the pawn that just moved two squares */
+  static final long[] ENPASSANT = new long[SQUARES];
+
+  private static long seed = 0x2545F4914F6CDD1DL;
+
+  static {
+    for (int i = 0; i < PIECES.length; i++) {
+      for (int square = 0; square < SQUARES; square++) {
+        PIECES[i][square] = next();
+      }
+    }
+    BLACK_TO_MOVE = next();
+    for (int i = 0; i < 2; i++) {
+      CASTLE_KING_SIDE[i] = next();
+      CASTLE_QUEEN_SIDE[i] = next();
+    }
+    for (int square = 0; square < SQUARES; square++) {
+      ENPASSANT[square] = next();
+    }
+  }
+
+  private Zobrist() {
+  }
+
+  /*
+   * SplitMix64, see http://xorshift.di.unimi.it/splitmix64.c
+   */
+  private static long next() {
+    seed += 0x9E3779B97F4A7C15L;
+    long z = seed;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
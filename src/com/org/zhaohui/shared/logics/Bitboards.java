@@ -0,0 +1,168 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Helpers for the 64-bit board masks kept by State. Square indexes follow
+ * State: square = row * 8 + col, so bit 0 is (0,0) (white's queen-side rook
+ * corner) and bit 63 is (7,7).
+ *
+ * @author zhaohui
+ *
+ */
+public final class Bitboards {
+  public static final long EMPTY = 0L;
+  public static final long ALL = ~0L;
+
+  public static final long[] KNIGHT_ATTACKS = new long[64];
+  public static final long[] KING_ATTACKS = new long[64];
+  /** PAWN_ATTACKS[color.ordinal()][square] are the squares a pawn captures */
+  public static final long[][] PAWN_ATTACKS = new long[2][64];
+  /**
+   * BETWEEN[a][b] are the squares strictly between a and b if they share a
+   * row, column or diagonal, and empty otherwise.
+   */
+  public static final long[][] BETWEEN = new long[64][64];
+  /**
+   * LINE[a][b] is the whole row, column or diagonal through a and b
+   * (including both), and empty if they share none.
+   */
+  public static final long[][] LINE = new long[64][64];
+
+  static {
+    int[] knightRowDif = { 2, 2, 1, 1, -1, -1, -2, -2 };
+    int[] knightColDif = { 1, -1, 2, -2, 2, -2, 1, -1 };
+    int[] kingRowDif = { 1, 1, 1, 0, 0, -1, -1, -1 };
+    int[] kingColDif = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    for (int sq = 0; sq < 64; sq++) {
+      int row = row(sq);
+      int col = col(sq);
+      for (int i = 0; i < 8; i++) {
+        KNIGHT_ATTACKS[sq] |= bitIfOnBoard(row + knightRowDif[i], col
+            + knightColDif[i]);
+        KING_ATTACKS[sq] |= bitIfOnBoard(row + kingRowDif[i], col
+            + kingColDif[i]);
+      }
+      PAWN_ATTACKS[Color.WHITE.ordinal()][sq] = bitIfOnBoard(row + 1, col - 1)
+          | bitIfOnBoard(row + 1, col + 1);
+      PAWN_ATTACKS[Color.BLACK.ordinal()][sq] = bitIfOnBoard(row - 1, col - 1)
+          | bitIfOnBoard(row - 1, col + 1);
+      for (int i = 0; i < 8; i++) {
+        long line = bit(sq) | ray(sq, EMPTY, kingRowDif[i], kingColDif[i])
+            | ray(sq, EMPTY, -kingRowDif[i], -kingColDif[i]);
+        long between = EMPTY;
+        int toRow = row + kingRowDif[i];
+        int toCol = col + kingColDif[i];
+        while (toRow >= 0 && toRow < State.ROWS && toCol >= 0
+            && toCol < State.COLS) {
+          int to = square(toRow, toCol);
+          BETWEEN[sq][to] = between;
+          LINE[sq][to] = line;
+          between |= bit(to);
+          toRow += kingRowDif[i];
+          toCol += kingColDif[i];
+        }
+      }
+    }
+  }
+
+  private Bitboards() {
+  }
+
+  public static int square(int row, int col) {
+    return row * State.COLS + col;
+  }
+
+  public static int row(int square) {
+    return square >>> 3;
+  }
+
+  public static int col(int square) {
+    return square & 7;
+  }
+
+  public static long bit(int square) {
+    return 1L << square;
+  }
+
+  public static long bit(int row, int col) {
+    return 1L << square(row, col);
+  }
+
+  /**
+   * Returns the index of the lowest set bit, callers must make sure the mask is
+   * not empty.
+   */
+  public static int first(long mask) {
+    return Long.numberOfTrailingZeros(mask);
+  }
+
+  public static int count(long mask) {
+    return Long.bitCount(mask);
+  }
+
+  /**
+   * Sliding attacks are looked up in the magic tables of SlidingAttacks, so
+   * move generation, check detection and castling-path checks all share them.
+   */
+  public static long rookAttacks(int square, long occupied) {
+    return SlidingAttacks.rookAttacks(square, occupied);
+  }
+
+  public static long bishopAttacks(int square, long occupied) {
+    return SlidingAttacks.bishopAttacks(square, occupied);
+  }
+
+  public static long queenAttacks(int square, long occupied) {
+    return SlidingAttacks.queenAttacks(square, occupied);
+  }
+
+  /**
+   * Returns the squares of the given color's pieces that attack square, for
+   * the given occupancy.
+   */
+  public static long attackersOf(State state, int square, Color color,
+      long occupied) {
+    long queens = state.getBitboard(color, PieceKind.QUEEN);
+    long rooksQueens = state.getBitboard(color, PieceKind.ROOK) | queens;
+    long bishopsQueens = state.getBitboard(color, PieceKind.BISHOP) | queens;
+    return (PAWN_ATTACKS[color.getOpposite().ordinal()][square] & state
+        .getBitboard(color, PieceKind.PAWN))
+        | (KNIGHT_ATTACKS[square] & state.getBitboard(color, PieceKind.KNIGHT))
+        | (KING_ATTACKS[square] & state.getBitboard(color, PieceKind.KING))
+        | (rookAttacks(square, occupied) & rooksQueens)
+        | (bishopAttacks(square, occupied) & bishopsQueens);
+  }
+
+  /**
+   * Returns true iff a piece of the given color attacks square.
+   */
+  public static boolean isAttacked(State state, int square, Color color) {
+    return attackersOf(state, square, color, state.getOccupied()) != EMPTY;
+  }
+
+  private static long ray(int square, long occupied, int rowDif, int colDif) {
+    long attacks = EMPTY;
+    int row = row(square) + rowDif;
+    int col = col(square) + colDif;
+    while (row >= 0 && row < State.ROWS && col >= 0 && col < State.COLS) {
+      long bit = bit(row, col);
+      attacks |= bit;
+      if ((occupied & bit) != EMPTY) {
+        break;
+      }
+      row += rowDif;
+      col += colDif;
+    }
+    return attacks;
+  }
+
+  private static long bitIfOnBoard(int row, int col) {
+    if (row < 0 || row >= State.ROWS || col < 0 || col >= State.COLS) {
+      return EMPTY;
+    }
+    return bit(row, col);
+  }
+}
@@ -0,0 +1,223 @@
+package com.org.zhaohui.shared.logics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * A StateExplorer decorator that remembers the legal moves of the positions
+ * it was recently asked about, so asking again (to highlight moves, validate
+ * a move, show the board to a spectator...) costs a hash lookup instead of a
+ * full generation.
+ *
+ * Positions are keyed by State.getZobristKey(), which covers everything the
+ * legal moves depend on except the game result; states whose game is over
+ * bypass the cache. Two positions share a 64-bit key with negligible
+ * probability (about n * n / 2^65 for n positions).
+ *
+ * At most maxEntries positions are kept, the least recently used one is
+ * evicted first. The sets returned are unmodifiable and shared by callers.
+ * The cache is guarded by this object's lock, moves are generated outside of
+ * it, so one instance can serve several threads.
+ *
+ * @author zhaohui
+ *
+ */
+public class CachingStateExplorer implements StateExplorer {
+  private final StateExplorer delegate;
+  private final int maxEntries;
+  private final Map<Long, CachedMoves> entries;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /** The legal moves of one position, and the sets built from them lazily */
+  private static final class CachedMoves {
+    private final int[] moves;
+    private volatile Set<Move> moveSet;
+    private volatile Set<Position> startPositions;
+
+    CachedMoves(int[] moves) {
+      this.moves = moves;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  public CachingStateExplorer(StateExplorer delegate, int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+    this.delegate = delegate;
+    this.maxEntries = maxEntries;
+    // access order, so the eldest entry is the least recently used
+    entries = new LinkedHashMap<Long, CachedMoves>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CachedMoves> eldest) {
+        if (size() > CachingStateExplorer.this.maxEntries) {
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public Set<Move> getPossibleMoves(State state) {
+    if (state.getGameResult() != null) {
+      return delegate.getPossibleMoves(state);
+    }
+    CachedMoves cached = lookup(state);
+    Set<Move> moveSet = cached.moveSet;
+    if (moveSet == null) {
+      ImmutableSet.Builder<Move> builder = ImmutableSet.builder();
+      for (int move : cached.moves) {
+        builder.add(PackedMove.toMove(move));
+      }
+      moveSet = builder.build();
+      cached.moveSet = moveSet;
+    }
+    return moveSet;
+  }
+
+  @Override
+  public Set<Move> getPossibleMovesFromPosition(State state, Position start) {
+    if (start == null || state == null || state.getGameResult() != null) {
+      return delegate.getPossibleMovesFromPosition(state, start);
+    }
+    int from = Bitboards.square(start.getRow(), start.getCol());
+    ImmutableSet.Builder<Move> builder = ImmutableSet.builder();
+    for (int move : lookup(state).moves) {
+      if (PackedMove.from(move) == from) {
+        builder.add(PackedMove.toMove(move));
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public Set<Position> getPossibleStartPositions(State state) {
+    if (state.getGameResult() != null) {
+      return delegate.getPossibleStartPositions(state);
+    }
+    CachedMoves cached = lookup(state);
+    Set<Position> startPositions = cached.startPositions;
+    if (startPositions == null) {
+      ImmutableSet.Builder<Position> builder = ImmutableSet.builder();
+      for (int move : cached.moves) {
+        int from = PackedMove.from(move);
+        builder.add(Position.of(Bitboards.row(from), Bitboards.col(from)));
+      }
+      startPositions = builder.build();
+      cached.startPositions = startPositions;
+    }
+    return startPositions;
+  }
+
+  @Override
+  public int getPossibleMoves(State state, MoveList moves) {
+    if (state.getGameResult() != null) {
+      return delegate.getPossibleMoves(state, moves);
+    }
+    moves.clear();
+    for (int move : lookup(state).moves) {
+      moves.add(move);
+    }
+    return moves.size();
+  }
+
+  @Override
+  public MovePicker getMovePicker(State state, int hashMove,
+      MoveFilter filter) {
+    return delegate.getMovePicker(state, hashMove, filter);
+  }
+
+  /**
+   * Answers from the cache when the position is there, without adding it
+   * otherwise: the delegate stops at the first legal move.
+   */
+  @Override
+  public boolean hasAnyLegalMove(State state) {
+    if (state.getGameResult() == null) {
+      CachedMoves cached;
+      synchronized (this) {
+        cached = entries.get(state.getZobristKey());
+        if (cached != null) {
+          hitCount++;
+        }
+      }
+      if (cached != null) {
+        return cached.moves.length > 0;
+      }
+    }
+    return delegate.hasAnyLegalMove(state);
+  }
+
+  @Override
+  public boolean isInCheck(State state) {
+    return delegate.isInCheck(state);
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Returns how many positions are cached, at most getMaxEntries().
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Forgets every cached position; the counters are kept.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CachingStateExplorer[size=" + entries.size() + "/" + maxEntries
+        + ", hits=" + hitCount + ", misses=" + missCount + ", evictions="
+        + evictionCount + "]";
+  }
+
+  private CachedMoves lookup(State state) {
+    Long key = state.getZobristKey();
+    synchronized (this) {
+      CachedMoves cached = entries.get(key);
+      if (cached != null) {
+        hitCount++;
+        return cached;
+      }
+      missCount++;
+    }
+    MoveList moves = new MoveList();
+    delegate.getPossibleMoves(state, moves);
+    int[] packed = new int[moves.size()];
+    System.arraycopy(moves.buffer(), 0, packed, 0, packed.length);
+    CachedMoves cached = new CachedMoves(packed);
+    synchronized (this) {
+      entries.put(key, cached);
+    }
+    return cached;
+  }
+}
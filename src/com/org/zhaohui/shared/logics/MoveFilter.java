@@ -0,0 +1,20 @@
+package com.org.zhaohui.shared.logics;
+
+/**
+ * Which legal moves a MovePicker yields.
+ *
+ * @author zhaohui
+ *
+ */
+public enum MoveFilter {
+  /** every legal move */
+  ALL,
+  /** captures, including en passant and capturing promotions */
+  CAPTURES,
+  /** moves that put the opponent's king in check */
+  CHECKS,
+  /** moves that capture nothing, including non-capturing promotions */
+  QUIETS,
+  /** captures and promotions: the moves a quiescence search plays */
+  TACTICAL;
+}
@@ -0,0 +1,86 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Color;
+
+/**
+ * What a search learned about quiet moves, for MovePicker to try the good
+ * ones first:
+ * 
+ * <ul>
+ * <li>two killer moves per ply, the last quiet moves that caused a beta
+ * cut-off at that ply, which often refute the sibling positions too. See
+ * http://chessprogramming.wikispaces.com/Killer+Heuristic</li>
+ * <li>a history score per side and from/to squares, raised by depth^2 on
+ * every cut-off, so moves that were good anywhere in the tree come early.
+ * See http://chessprogramming.wikispaces.com/History+Heuristic</li>
+ * </ul>
+ * 
+ * Not thread-safe: each searching thread keeps its own.
+ * 
+ * @author zhaohui
+ * 
+ */
+public final class MoveHistory {
+  private static final int SQUARES = 64;
+  /** all history scores are halved when one reaches this */
+  private static final int MAX_SCORE = 1 << 24;
+
+  private final int[] killers;
+  /** history[color.ordinal() * 64 * 64 + from * 64 + to] */
+  private final int[] history = new int[2 * SQUARES * SQUARES];
+
+  public MoveHistory(int maxPly) {
+    killers = new int[2 * maxPly];
+  }
+
+  /**
+   * Returns killer slot 0 (the newest) or 1 of ply, PackedMove.NONE if
+   * empty.
+   */
+  public int getKiller(int ply, int slot) {
+    return killers[2 * ply + slot];
+  }
+
+  /**
+   * Records a quiet move that caused a cut-off at ply: the cut-off and the
+   * depth searched below it.
+   */
+  public void addCutoff(Color color, int move, int ply, int depth) {
+    if (killers[2 * ply] != move) {
+      killers[2 * ply + 1] = killers[2 * ply];
+      killers[2 * ply] = move;
+    }
+    int index = index(color, move);
+    history[index] += depth * depth;
+    if (history[index] >= MAX_SCORE) {
+      age();
+    }
+  }
+
+  public int getScore(Color color, int move) {
+    return history[index(color, move)];
+  }
+
+  /**
+   * Halves the history scores, so recent cut-offs weigh more than old ones.
+   */
+  public void age() {
+    for (int i = 0; i < history.length; i++) {
+      history[i] >>= 1;
+    }
+  }
+
+  public void clear() {
+    for (int i = 0; i < killers.length; i++) {
+      killers[i] = PackedMove.NONE;
+    }
+    for (int i = 0; i < history.length; i++) {
+      history[i] = 0;
+    }
+  }
+
+  private static int index(Color color, int move) {
+    return (color.ordinal() * SQUARES + PackedMove.from(move)) * SQUARES
+        + PackedMove.to(move);
+  }
+}
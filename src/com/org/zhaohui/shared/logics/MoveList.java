@@ -0,0 +1,99 @@
+package com.org.zhaohui.shared.logics;
+
+/**
+ * A growable list of packed moves (see PackedMove) backed by an int[] that is
+ * reused across calls: clear() keeps the buffer, so a search can keep one
+ * MoveList per ply and generate moves without allocating.
+ * 
+ * @author zhaohui
+ * 
+ */
+public class MoveList {
+  /** No chess position has more than 218 legal moves */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private int[] moves;
+  private int size;
+
+  public MoveList() {
+    this(new int[DEFAULT_CAPACITY]);
+  }
+
+  /**
+   * Wraps a caller-supplied buffer. The list grows into a new array if the
+   * buffer turns out to be too small.
+   */
+  public MoveList(int[] buffer) {
+    this.moves = buffer;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+    return moves[index];
+  }
+
+  public void set(int index, int move) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+    moves[index] = move;
+  }
+
+  public void add(int move) {
+    if (size == moves.length) {
+      int[] grown = new int[Math.max(DEFAULT_CAPACITY, moves.length * 2)];
+      System.arraycopy(moves, 0, grown, 0, size);
+      moves = grown;
+    }
+    moves[size++] = move;
+  }
+
+  public boolean contains(int move) {
+    for (int i = 0; i < size; i++) {
+      if (moves[i] == move) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drops every move from index on.
+   */
+  public void truncate(int index) {
+    size = Math.min(size, index);
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Returns the backing buffer; only the first size() entries are moves.
+   */
+  public int[] buffer() {
+    return moves;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(PackedMove.toString(moves[i]));
+    }
+    return builder.append("]").toString();
+  }
+}
@@ -0,0 +1,155 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Plays and takes back packed moves on a State in place, for
+ * StateChangerImpl; nothing here checks legality or decides the game result.
+ * 
+ * @author zhaohui
+ * 
+ */
+final class MoveMaker {
+  private static final int WHITE_KING_SIDE = 1;
+  private static final int WHITE_QUEEN_SIDE = 2;
+  private static final int BLACK_KING_SIDE = 4;
+  private static final int BLACK_QUEEN_SIDE = 8;
+
+  private MoveMaker() {
+  }
+
+  /**
+   * Plays move on state. If undo is not null, pushes what unmakeMove needs to
+   * restore the state.
+   */
+  static void makeMove(State state, int move, UndoStack undo) {
+    int from = PackedMove.from(move);
+    int to = PackedMove.to(move);
+    int fromRow = Bitboards.row(from);
+    int fromCol = Bitboards.col(from);
+    int toRow = Bitboards.row(to);
+    int toCol = Bitboards.col(to);
+    Piece piece = state.getPiece(fromRow, fromCol);
+    Color color = piece.getColor();
+    Piece captured = PackedMove.isEnpassant(move) ? state.getPiece(fromRow,
+        toCol) : state.getPiece(toRow, toCol);
+    if (undo != null) {
+      undo.push(move, captured, getCastlingRights(state),
+          state.getEnpassantPosition(),
+          state.getNumberOfMovesWithoutCaptureNorPawnMoved(),
+          state.getGameResult());
+    }
+
+    if (PackedMove.isEnpassant(move)) {
+      state.setPiece(fromRow, toCol, null);
+    }
+    state.setPiece(fromRow, fromCol, null);
+    state.setPiece(toRow, toCol, PackedMove.isPromotion(move) ? Piece.of(
+        color, PackedMove.promotion(move)) : piece);
+    if (PackedMove.isCastling(move)) {
+      if (toCol > fromCol) {
+        state.setPiece(fromRow, 5, state.getPiece(fromRow, 7));
+        state.setPiece(fromRow, 7, null);
+      } else {
+        state.setPiece(fromRow, 3, state.getPiece(fromRow, 0));
+        state.setPiece(fromRow, 0, null);
+      }
+    }
+
+    if (piece.getKind() == PieceKind.KING) {
+      state.setCanCastleKingSide(color, false);
+      state.setCanCastleQueenSide(color, false);
+    }
+    clearCornerCastlingRights(state, fromRow, fromCol);
+    clearCornerCastlingRights(state, toRow, toCol);
+
+    state.setEnpassantPosition(PackedMove.isDoublePawnPush(move) ? Position
+        .of(toRow, toCol) : null);
+    if (piece.getKind() == PieceKind.PAWN || captured != null) {
+      state.setNumberOfMovesWithoutCaptureNorPawnMoved(0);
+    } else {
+      state.setNumberOfMovesWithoutCaptureNorPawnMoved(state
+          .getNumberOfMovesWithoutCaptureNorPawnMoved() + 1);
+    }
+    state.setTurn(state.getTurn().getOpposite());
+  }
+
+  /**
+   * Takes back the move on top of undo, which must be the last move played
+   * on state.
+   */
+  static void unmakeMove(State state, UndoStack undo) {
+    int top = undo.size() - 1;
+    if (top < 0) {
+      throw new IllegalStateException("No move to undo");
+    }
+    int move = undo.getMove(top);
+    int from = PackedMove.from(move);
+    int to = PackedMove.to(move);
+    int fromRow = Bitboards.row(from);
+    int fromCol = Bitboards.col(from);
+    int toRow = Bitboards.row(to);
+    int toCol = Bitboards.col(to);
+    Piece piece = state.getPiece(toRow, toCol);
+    Color color = piece.getColor();
+    Piece captured = undo.getCapturedPiece(top);
+
+    if (PackedMove.isCastling(move)) {
+      if (toCol > fromCol) {
+        state.setPiece(fromRow, 7, state.getPiece(fromRow, 5));
+        state.setPiece(fromRow, 5, null);
+      } else {
+        state.setPiece(fromRow, 0, state.getPiece(fromRow, 3));
+        state.setPiece(fromRow, 3, null);
+      }
+    }
+    state.setPiece(fromRow, fromCol, PackedMove.isPromotion(move) ? Piece.of(
+        color, PieceKind.PAWN) : piece);
+    if (PackedMove.isEnpassant(move)) {
+      state.setPiece(toRow, toCol, null);
+      state.setPiece(fromRow, toCol, captured);
+    } else {
+      state.setPiece(toRow, toCol, captured);
+    }
+
+    setCastlingRights(state, undo.getCastlingRights(top));
+    state.setEnpassantPosition(undo.getEnpassantPosition(top));
+    state.setNumberOfMovesWithoutCaptureNorPawnMoved(undo
+        .getNumberOfMovesWithoutCaptureNorPawnMoved(top));
+    state.setGameResult(undo.getGameResult(top));
+    state.setTurn(state.getTurn().getOpposite());
+    undo.pop();
+  }
+
+  /*
+   * A move from or to a corner means that rook has moved or been captured
+   */
+  private static void clearCornerCastlingRights(State state, int row, int col) {
+    if ((row == 0 || row == 7) && (col == 0 || col == 7)) {
+      Color color = row == 0 ? Color.WHITE : Color.BLACK;
+      if (col == 0) {
+        state.setCanCastleQueenSide(color, false);
+      } else {
+        state.setCanCastleKingSide(color, false);
+      }
+    }
+  }
+
+  private static int getCastlingRights(State state) {
+    return (state.isCanCastleKingSide(Color.WHITE) ? WHITE_KING_SIDE : 0)
+        | (state.isCanCastleQueenSide(Color.WHITE) ? WHITE_QUEEN_SIDE : 0)
+        | (state.isCanCastleKingSide(Color.BLACK) ? BLACK_KING_SIDE : 0)
+        | (state.isCanCastleQueenSide(Color.BLACK) ? BLACK_QUEEN_SIDE : 0);
+  }
+
+  private static void setCastlingRights(State state, int rights) {
+    state.setCanCastleKingSide(Color.WHITE, (rights & WHITE_KING_SIDE) != 0);
+    state.setCanCastleQueenSide(Color.WHITE, (rights & WHITE_QUEEN_SIDE) != 0);
+    state.setCanCastleKingSide(Color.BLACK, (rights & BLACK_KING_SIDE) != 0);
+    state.setCanCastleQueenSide(Color.BLACK, (rights & BLACK_QUEEN_SIDE) != 0);
+  }
+}
@@ -0,0 +1,261 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Yields the legal moves of a state one at a time, generating them in stages
+ * so that a consumer who stops early never pays for the later stages:
+ * 
+ * <ol>
+ * <li>the hash move, if it is legal in the state</li>
+ * <li>captures, most valuable victim first, then least valuable attacker</li>
+ * <li>non-capturing promotions</li>
+ * <li>the killer moves of the ply, if they are legal quiet moves</li>
+ * <li>quiet moves, highest history score first</li>
+ * </ol>
+ * 
+ * Killers and history scores come from the MoveHistory given to reset;
+ * without one, quiet moves come in generation order.
+ * 
+ * The MoveFilter decides which stages run (CHECKS runs all of them and keeps
+ * the checking moves). Every legal move passing the filter is returned
+ * exactly once. Get one from StateExplorer.getMovePicker; reset reuses it
+ * for another state without allocating.
+ * 
+ * The state must not change while moves are being picked, except for moves
+ * that are made and unmade again before the next call to next().
+ * 
+ * @author zhaohui
+ * 
+ */
+public final class MovePicker {
+  /*
+   * Stages in order; each *_INIT stage generates the moves the stage after it
+   * hands out
+   */
+  private static final int HASH = 0;
+  private static final int CAPTURES_INIT = 1;
+  private static final int CAPTURES = 2;
+  private static final int PROMOTIONS_INIT = 3;
+  private static final int PROMOTIONS = 4;
+  private static final int KILLERS = 5;
+  private static final int QUIETS_INIT = 6;
+  private static final int QUIETS = 7;
+  private static final int DONE = 8;
+
+  /**
+   * attacker ranks indexed by PieceKind ordinal, the king last so it is tried
+   * after any other piece
+   */
+  private static final int[] ATTACKER_RANKS = { 20, 9, 5, 3, 3, 1 };
+
+  private final StateExplorerImpl stateExplorer;
+  private final MoveList moves = new MoveList(new int[64]);
+  private int[] scores = new int[64];
+  private State state;
+  private int hashMove;
+  private MoveFilter filter;
+  private MoveHistory history;
+  private int ply;
+  private int stage;
+  private int index;
+  /** the killers returned by the KILLERS stage, for QUIETS to skip */
+  private int firstKiller;
+  private int secondKiller;
+
+  MovePicker(StateExplorerImpl stateExplorer) {
+    this.stateExplorer = stateExplorer;
+  }
+
+  /**
+   * Starts picking the moves of state that pass filter, trying hashMove
+   * (PackedMove.NONE for none) first.
+   */
+  public MovePicker reset(State state, int hashMove, MoveFilter filter) {
+    return reset(state, hashMove, filter, null, 0);
+  }
+
+  /**
+   * Same as reset(state, hashMove, filter), ordering the quiet moves with the
+   * killers of ply and the history scores of history (if not null).
+   */
+  public MovePicker reset(State state, int hashMove, MoveFilter filter,
+      MoveHistory history, int ply) {
+    this.state = state;
+    this.hashMove = hashMove;
+    this.filter = filter;
+    this.history = history;
+    this.ply = ply;
+    stage = HASH;
+    index = 0;
+    firstKiller = PackedMove.NONE;
+    secondKiller = PackedMove.NONE;
+    moves.clear();
+    return this;
+  }
+
+  /**
+   * Returns the next move, or PackedMove.NONE when there are no more.
+   */
+  public int next() {
+    while (true) {
+      switch (stage) {
+      case HASH:
+        stage = filter == MoveFilter.QUIETS ? PROMOTIONS_INIT : CAPTURES_INIT;
+        if (isLegal(hashMove) && passes(hashMove)) {
+          return hashMove;
+        }
+        break;
+      case CAPTURES_INIT:
+        generate(StateExplorerImpl.CAPTURE_MOVES);
+        scoreCaptures();
+        stage = CAPTURES;
+        break;
+      case PROMOTIONS_INIT:
+        generate(StateExplorerImpl.PROMOTION_MOVES);
+        stage = PROMOTIONS;
+        break;
+      case KILLERS:
+        while (history != null && index < 2) {
+          int killer = history.getKiller(ply, index);
+          index++;
+          if (killer != hashMove && killer != firstKiller
+              && !PackedMove.isCapture(killer)
+              && !PackedMove.isPromotion(killer) && isLegal(killer)
+              && passes(killer)) {
+            if (firstKiller == PackedMove.NONE) {
+              firstKiller = killer;
+            } else {
+              secondKiller = killer;
+            }
+            return killer;
+          }
+        }
+        stage = QUIETS_INIT;
+        break;
+      case QUIETS_INIT:
+        generate(StateExplorerImpl.QUIET_MOVES);
+        if (history != null) {
+          scoreQuiets();
+        }
+        stage = QUIETS;
+        break;
+      case CAPTURES:
+      case PROMOTIONS:
+      case QUIETS:
+        while (index < moves.size()) {
+          int move = stage == CAPTURES || stage == QUIETS && history != null
+              ? selectBest() : moves.get(index);
+          index++;
+          if (move != hashMove && move != firstKiller && move != secondKiller
+              && passes(move)) {
+            return move;
+          }
+        }
+        stage = stage == CAPTURES && filter == MoveFilter.CAPTURES
+            || stage == PROMOTIONS && filter == MoveFilter.TACTICAL ? DONE
+            : stage + 1;
+        index = 0;
+        break;
+      default:
+        return PackedMove.NONE;
+      }
+    }
+  }
+
+  private void generate(int kinds) {
+    moves.clear();
+    index = 0;
+    stateExplorer.addLegalMoves(state, state.getBitboard(state.getTurn()),
+        kinds, moves);
+  }
+
+  private boolean passes(int move) {
+    switch (filter) {
+    case CAPTURES:
+      return PackedMove.isCapture(move);
+    case QUIETS:
+      return !PackedMove.isCapture(move);
+    case TACTICAL:
+      return PackedMove.isCapture(move) || PackedMove.isPromotion(move);
+    case CHECKS:
+      return stateExplorer.givesCheck(state, move);
+    default:
+      return true;
+    }
+  }
+
+  /*
+   * The hash move usually comes from a table keyed by a hash, and killers
+   * from sibling positions, so they may belong to another state: generate
+   * the moves of their piece to make sure.
+   */
+  private boolean isLegal(int move) {
+    if (move == PackedMove.NONE) {
+      return false;
+    }
+    int from = PackedMove.from(move);
+    if ((state.getBitboard(state.getTurn()) & Bitboards.bit(from))
+        == Bitboards.EMPTY) {
+      return false;
+    }
+    moves.clear();
+    stateExplorer.addLegalMoves(state, Bitboards.bit(from),
+        StateExplorerImpl.ALL_MOVES, moves);
+    return moves.contains(move);
+  }
+
+  private void ensureScoresCapacity() {
+    if (scores.length < moves.size()) {
+      scores = new int[moves.buffer().length];
+    }
+  }
+
+  private void scoreCaptures() {
+    ensureScoresCapacity();
+    for (int i = 0; i < moves.size(); i++) {
+      int move = moves.get(i);
+      int from = PackedMove.from(move);
+      int to = PackedMove.to(move);
+      Piece attacker = state.getPiece(Bitboards.row(from), Bitboards.col(from));
+      Piece victim = state.getPiece(Bitboards.row(to), Bitboards.col(to));
+      // an en passant victim is not on the destination square
+      PieceKind victimKind = victim == null ? PieceKind.PAWN : victim.getKind();
+      int score = victimKind.getValue() * 32
+          - ATTACKER_RANKS[attacker.getKind().ordinal()];
+      if (PackedMove.isPromotion(move)) {
+        score += PackedMove.promotion(move).getValue();
+      }
+      scores[i] = score;
+    }
+  }
+
+  private void scoreQuiets() {
+    ensureScoresCapacity();
+    for (int i = 0; i < moves.size(); i++) {
+      scores[i] = history.getScore(state.getTurn(), moves.get(i));
+    }
+  }
+
+  /*
+   * Selection sort, one step per call: the rest is never sorted if the
+   * consumer stops early
+   */
+  private int selectBest() {
+    int best = index;
+    for (int i = index + 1; i < moves.size(); i++) {
+      if (scores[i] > scores[best]) {
+        best = i;
+      }
+    }
+    int move = moves.get(best);
+    moves.set(best, moves.get(index));
+    moves.set(index, move);
+    int score = scores[best];
+    scores[best] = scores[index];
+    scores[index] = score;
+    return move;
+  }
+}
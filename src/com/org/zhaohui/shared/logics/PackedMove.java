@@ -0,0 +1,156 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Encodes a move in a single int so move lists need no objects:
+ * 
+ * <pre>
+ * bits  0-5   from square (row * 8 + col, see Bitboards)
+ * bits  6-11  to square
+ * bits 12-14  promotion: 0 for none, otherwise kind.ordinal() + 1
+ * bits 15-18  flags: CAPTURE, EN_PASSANT, CASTLING, DOUBLE_PAWN_PUSH
+ * </pre>
+ * 
+ * No legal move goes from a square to itself, so NONE (0) never clashes with
+ * a real move.
+ * 
+ * @author zhaohui
+ * 
+ */
+public final class PackedMove {
+  public static final int NONE = 0;
+
+  public static final int CAPTURE = 1 << 15;
+  public static final int EN_PASSANT = 1 << 16;
+  public static final int CASTLING = 1 << 17;
+  public static final int DOUBLE_PAWN_PUSH = 1 << 18;
+
+  private static final int SQUARE_MASK = 0x3F;
+  private static final int TO_SHIFT = 6;
+  private static final int PROMOTION_SHIFT = 12;
+  private static final int PROMOTION_MASK = 0x7;
+  private static final int FLAGS_MASK = CAPTURE | EN_PASSANT | CASTLING
+      | DOUBLE_PAWN_PUSH;
+  private static final PieceKind[] KINDS = PieceKind.values();
+
+  private PackedMove() {
+  }
+
+  public static int encode(int from, int to, PieceKind promotion, int flags) {
+    return from | (to << TO_SHIFT)
+        | ((promotion == null ? 0 : promotion.ordinal() + 1) << PROMOTION_SHIFT)
+        | flags;
+  }
+
+  public static int from(int move) {
+    return move & SQUARE_MASK;
+  }
+
+  public static int to(int move) {
+    return (move >>> TO_SHIFT) & SQUARE_MASK;
+  }
+
+  /**
+   * Returns the promotion kind, or null if the move is not a promotion.
+   */
+  public static PieceKind promotion(int move) {
+    int promotion = (move >>> PROMOTION_SHIFT) & PROMOTION_MASK;
+    return promotion == 0 ? null : KINDS[promotion - 1];
+  }
+
+  public static boolean isPromotion(int move) {
+    return ((move >>> PROMOTION_SHIFT) & PROMOTION_MASK) != 0;
+  }
+
+  public static int flags(int move) {
+    return move & FLAGS_MASK;
+  }
+
+  public static boolean isCapture(int move) {
+    return (move & CAPTURE) != 0;
+  }
+
+  public static boolean isEnpassant(int move) {
+    return (move & EN_PASSANT) != 0;
+  }
+
+  public static boolean isCastling(int move) {
+    return (move & CASTLING) != 0;
+  }
+
+  public static boolean isDoublePawnPush(int move) {
+    return (move & DOUBLE_PAWN_PUSH) != 0;
+  }
+
+  /**
+   * Returns the shared Move instance for the packed move; flags are dropped.
+   */
+  public static Move toMove(int move) {
+    int from = from(move);
+    int to = to(move);
+    return Move.of(Position.of(Bitboards.row(from), Bitboards.col(from)),
+        Position.of(Bitboards.row(to), Bitboards.col(to)), promotion(move));
+  }
+
+  /**
+   * Packs move, reading the flags off the state the move is played in. The
+   * move must start from a piece and stay on the board; it is not checked for
+   * legality.
+   */
+  public static int fromMove(State state, Move move) {
+    Position fromPos = move.getFrom();
+    Position toPos = move.getTo();
+    int from = Bitboards.square(fromPos.getRow(), fromPos.getCol());
+    int to = Bitboards.square(toPos.getRow(), toPos.getCol());
+    Piece piece = state.getPiece(fromPos);
+    int flags = 0;
+    if (state.getPiece(toPos) != null) {
+      flags |= CAPTURE;
+    }
+    if (piece != null && piece.getKind() == PieceKind.PAWN) {
+      int rowDif = Math.abs(toPos.getRow() - fromPos.getRow());
+      if (rowDif == 2) {
+        flags |= DOUBLE_PAWN_PUSH;
+      } else if (fromPos.getCol() != toPos.getCol()
+          && state.getPiece(toPos) == null) {
+        flags |= CAPTURE | EN_PASSANT;
+      }
+    }
+    if (piece != null && piece.getKind() == PieceKind.KING
+        && Math.abs(toPos.getCol() - fromPos.getCol()) == 2
+        && toPos.getRow() == fromPos.getRow()) {
+      flags |= CASTLING;
+    }
+    return encode(from, to, move.getPromoteToPiece(), flags);
+  }
+
+  public static String toString(int move) {
+    return toMove(move).toString();
+  }
+
+  /**
+   * Returns the move in coordinate notation as used by other engines, e.g.
+   * "e2e4", "e1g1" for white king-side castling or "a7a8q".
+   */
+  public static String toCoordinateNotation(int move) {
+    StringBuilder notation = new StringBuilder(5);
+    appendSquare(notation, from(move));
+    appendSquare(notation, to(move));
+    PieceKind promotion = promotion(move);
+    if (promotion != null) {
+      notation.append(promotion == PieceKind.KNIGHT ? 'n' : promotion.name()
+          .toLowerCase().charAt(0));
+    }
+    return notation.toString();
+  }
+
+  private static void appendSquare(StringBuilder notation, int square) {
+    notation.append((char) ('a' + Bitboards.col(square))).append(
+        (char) ('1' + Bitboards.row(square)));
+  }
+}
@@ -0,0 +1,170 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Precomputed sliding-piece attacks (fancy magic bitboards). For each square
+ * the relevant occupancy (the blockers that can stop a ray, board edges
+ * excluded) is multiplied by a magic constant and the top bits of the product
+ * index a table holding the attack mask for that occupancy, so rook and
+ * bishop attacks cost a mask, a multiply, a shift and a load.
+ *
+ * The magic constants were found offline by random trial and are fixed here
+ * so the tables are filled deterministically at class initialization.
+ *
+ * @author zhaohui
+ *
+ */
+public final class SlidingAttacks {
+  private static final int SQUARES = 64;
+  private static final int[] ROOK_ROW_DIF = { 1, -1, 0, 0 };
+  private static final int[] ROOK_COL_DIF = { 0, 0, 1, -1 };
+  private static final int[] BISHOP_ROW_DIF = { 1, 1, -1, -1 };
+  private static final int[] BISHOP_COL_DIF = { 1, -1, 1, -1 };
+
+  private static final long[] ROOK_MAGICS = {
+      0x4180028020104004L, 0x2240200210004000L, 0x410010C308200100L,
+      0x4480280004700080L, 0x0100050008001002L, 0x1080010200040080L,
+      0x020008020020C104L, 0x8100038641000422L, 0x0404800080400020L,
+      0x5204400020100040L, 0x0002001200288040L, 0x8000801000800801L,
+      0x0C07000450480100L, 0x1094804200040080L, 0xA484000104020810L,
+      0x0002000512422084L, 0x8C40008020408005L, 0x0060064010004020L,
+      0x2000828010002000L, 0x0110004008004400L, 0x2208010005000810L,
+      0x0000808002000400L, 0x4046440081021008L, 0x08104A0000984401L,
+      0x808000484005A000L, 0x0004400380200082L, 0x8004104100200100L,
+      0x0020210300100049L, 0x0000040080080082L, 0x0802100801042040L,
+      0x0A01100402020008L, 0x0282184200042081L, 0x4000400020800086L,
+      0x8040402002401008L, 0x0180802000801004L, 0x00000C2101001000L,
+      0x4401000801000410L, 0x0204004100400200L, 0x0022010204000810L,
+      0x8000014886000304L, 0x0080400080288000L, 0x003000502000400CL,
+      0x1090040028012000L, 0x4006024010220008L, 0x0080040008008080L,
+      0x0000040002008080L, 0x2512080210040001L, 0x000900208045000AL,
+      0x4000230250800300L, 0x0020400020108180L, 0x0060801020420200L,
+      0x0200400A00102200L, 0x4000040080080080L, 0x3000020004008080L,
+      0x1004810810028400L, 0x008010830E440200L, 0x000C10210200C082L,
+      0x0220420080B06702L, 0x051E000812802142L, 0x0100200408100101L,
+      0x3041000408000211L, 0x0002000410010802L, 0x002028010220B004L,
+      0x2088090124008442L
+  };
+  private static final long[] BISHOP_MAGICS = {
+      0x8882181808008420L, 0x0002880101020A00L, 0x8010810601240100L,
+      0x0088224040000000L, 0x0C2404211000C840L, 0x0008280411101000L,
+      0x0804049C94200201L, 0x0106104104202008L, 0x425508100400C400L,
+      0x0802200102121444L, 0x000C104080950802L, 0x1888040502040404L,
+      0x0020442420240088L, 0x0440C82405200210L, 0x0040004A08844010L,
+      0x0028020442221000L, 0x0404004010440110L, 0x2C10000294084080L,
+      0x2040831C01020008L, 0x0008000C02400801L, 0x20020484021100C0L,
+      0x0003409880602001L, 0x0010A01848041000L, 0x00010002C1049032L,
+      0x09C8C00104100220L, 0x08010430A0085200L, 0x8188080014104010L,
+      0x0011040020440080L, 0xA044082004002000L, 0x0008020058221900L,
+      0xA001061005084101L, 0x2012242082008208L, 0x0001905000402400L,
+      0x4044010800459010L, 0x0004002404088C00L, 0x4202420280280080L,
+      0x0340010805010040L, 0x1082008700020070L, 0x008808106C010500L,
+      0x01082A0020028280L, 0x9080822010C22000L, 0x00008818A2024804L,
+      0x000009405000080CL, 0x8002102018000100L, 0x1000080104420400L,
+      0x8002581001020020L, 0x0414508481001204L, 0x042A04124200A090L,
+      0x8004240104108001L, 0x008206020222C000L, 0x000000A203500000L,
+      0x40804004AA080144L, 0x0020100410440006L, 0x0000600430608000L,
+      0x0008020488020020L, 0x0002940902020000L, 0x0020824410040280L,
+      0x0060A60C41088800L, 0x0000040041044100L, 0x0844040022C20614L,
+      0x0100050040248840L, 0x0100004044080088L, 0x140A100202080218L,
+      0x0040100544408880L
+  };
+
+  private static final long[] ROOK_MASKS = new long[SQUARES];
+  private static final int[] ROOK_SHIFTS = new int[SQUARES];
+  private static final int[] ROOK_OFFSETS = new int[SQUARES];
+  private static final long[] ROOK_TABLE;
+  private static final long[] BISHOP_MASKS = new long[SQUARES];
+  private static final int[] BISHOP_SHIFTS = new int[SQUARES];
+  private static final int[] BISHOP_OFFSETS = new int[SQUARES];
+  private static final long[] BISHOP_TABLE;
+
+  static {
+    ROOK_TABLE = buildTable(ROOK_ROW_DIF, ROOK_COL_DIF, ROOK_MAGICS,
+        ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS);
+    BISHOP_TABLE = buildTable(BISHOP_ROW_DIF, BISHOP_COL_DIF, BISHOP_MAGICS,
+        BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+  }
+
+  private SlidingAttacks() {
+  }
+
+  public static long rookAttacks(int square, long occupied) {
+    long product = (occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square];
+    return ROOK_TABLE[ROOK_OFFSETS[square]
+        + (int) (product >>> ROOK_SHIFTS[square])];
+  }
+
+  public static long bishopAttacks(int square, long occupied) {
+    long product = (occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square];
+    return BISHOP_TABLE[BISHOP_OFFSETS[square]
+        + (int) (product >>> BISHOP_SHIFTS[square])];
+  }
+
+  public static long queenAttacks(int square, long occupied) {
+    return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+  }
+
+  /**
+   * Walks the rays one square at a time. Only used to fill the tables, and
+   * kept package-private so tests can check the lookups against it.
+   */
+  static long slowAttacks(int square, long occupied, int[] rowDifs,
+      int[] colDifs, boolean relevantOnly) {
+    long attacks = 0L;
+    for (int i = 0; i < rowDifs.length; i++) {
+      int row = square / State.COLS + rowDifs[i];
+      int col = square % State.COLS + colDifs[i];
+      while (isOnBoard(row, col)) {
+        if (relevantOnly && !isOnBoard(row + rowDifs[i], col + colDifs[i])) {
+          // a blocker on the last square of a ray changes nothing
+          break;
+        }
+        long bit = 1L << (row * State.COLS + col);
+        attacks |= bit;
+        if ((occupied & bit) != 0L) {
+          break;
+        }
+        row += rowDifs[i];
+        col += colDifs[i];
+      }
+    }
+    return attacks;
+  }
+
+  static long slowRookAttacks(int square, long occupied) {
+    return slowAttacks(square, occupied, ROOK_ROW_DIF, ROOK_COL_DIF, false);
+  }
+
+  static long slowBishopAttacks(int square, long occupied) {
+    return slowAttacks(square, occupied, BISHOP_ROW_DIF, BISHOP_COL_DIF, false);
+  }
+
+  private static long[] buildTable(int[] rowDifs, int[] colDifs,
+      long[] magics, long[] masks, int[] shifts, int[] offsets) {
+    int size = 0;
+    for (int sq = 0; sq < SQUARES; sq++) {
+      masks[sq] = slowAttacks(sq, 0L, rowDifs, colDifs, true);
+      shifts[sq] = SQUARES - Long.bitCount(masks[sq]);
+      offsets[sq] = size;
+      size += 1 << Long.bitCount(masks[sq]);
+    }
+    long[] table = new long[size];
+    for (int sq = 0; sq < SQUARES; sq++) {
+      // enumerate every subset of the mask (Carry-Rippler)
+      long subset = 0L;
+      do {
+        int index = (int) ((subset * magics[sq]) >>> shifts[sq]);
+        table[offsets[sq] + index] = slowAttacks(sq, subset, rowDifs,
+            colDifs, false);
+        subset = (subset - masks[sq]) & masks[sq];
+      } while (subset != 0L);
+    }
+    return table;
+  }
+
+  private static boolean isOnBoard(int row, int col) {
+    return row >= 0 && row < State.ROWS && col >= 0 && col < State.COLS;
+  }
+}
@@ -4,6 +4,12 @@ import com.org.zhaohui.shared.basics.IllegalMove;
 import com.org.zhaohui.shared.basics.Move;
 import com.org.zhaohui.shared.basics.State;
 
+/**
+ * Plays moves on a State. Implementations must be safe to call from several
+ * threads at once as long as each call works on its own State and UndoStack;
+ * callers sharing one State between threads must synchronize on it
+ * themselves.
+ */
 public interface StateChanger {
   /**
    * Make a chess move and change state to reflect the new game state. If the
@@ -14,4 +20,20 @@ public interface StateChanger {
    * http://en.wikipedia.org/wiki/Chess#End_of_the_game
    */
   public void makeMove(State state, Move move) throws IllegalMove;
+
+  /**
+   * Plays move, a PackedMove produced by StateExplorer.getPossibleMoves, on
+   * state in place and pushes what is needed to take it back onto undo. This
+   * is the fast path for walking a game tree: the move is not validated and
+   * the game result is left untouched, so callers must only pass legal moves
+   * and decide game ends themselves.
+   */
+  public void makeMove(State state, int move, UndoStack undo);
+
+  /**
+   * Takes back the last move played on state with makeMove(State, int,
+   * UndoStack), restoring the board, turn, castling rights, en passant
+   * position, fifty-move counter and game result.
+   */
+  public void unmakeMove(State state, UndoStack undo);
 }
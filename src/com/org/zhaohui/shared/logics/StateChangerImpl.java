@@ -17,27 +17,36 @@ import com.org.zhaohui.shared.basics.State;
  * The State Changer Implementation class, to get an instance of this class, use
  * getInstance() method (singleton pattern adopted)
  * 
+ * An instance holds no mutable state, only its explorer, so it is safe to
+ * use from any number of threads at once as long as each thread works on its
+ * own State and UndoStack (and the explorer is thread-safe, as
+ * StateExplorerImpl and CachingStateExplorer are). Calls on the same State
+ * must not overlap.
+ * 
  * @author zhaohui
  * 
  */
 public class StateChangerImpl implements StateChanger {
-  private static StateChangerImpl instance;
+  private static final StateChangerImpl INSTANCE = new StateChangerImpl();
+
+  private final StateExplorer stateExplorer;
 
   private StateChangerImpl() {
+    this(StateExplorerImpl.getInstance());
   }
 
-  public static StateChangerImpl getInstance() {
-    if (instance == null) {
-      synchronized (StateChangerImpl.class) {
-        if (instance == null) {
-          return new StateChangerImpl();
-        }
-      }
-    }
-    return instance;
+  /**
+   * Creates a changer that validates moves and detects the end of the game
+   * with the given explorer, e.g. a CachingStateExplorer shared with the code
+   * showing the possible moves to the players.
+   */
+  public StateChangerImpl(StateExplorer stateExplorer) {
+    this.stateExplorer = stateExplorer;
   }
 
-  private StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+  public static StateChangerImpl getInstance() {
+    return INSTANCE;
+  }
 
   @Override
   public void makeMove(State state, Move move) throws IllegalMove {
@@ -54,41 +63,7 @@ public class StateChangerImpl implements StateChanger {
       throw new IllegalMove();
     }
 
-    Piece piece = state.getPiece(from);
-    PieceKind pieceKind = piece.getKind();
-    Color color = piece.getColor();
-
-    // Implement the logic for specific pieces
-    if (state.getPiece(move.getTo()) != null
-        && state.getPiece(move.getTo()).getKind() == PieceKind.ROOK
-        && (move.getTo().getRow() == 0 || move.getTo().getRow() == 7)) {
-      if (move.getTo().getCol() == 0) {
-        state.setCanCastleQueenSide(color == Color.WHITE ? Color.BLACK
-            : Color.WHITE, false);
-      } else if (move.getTo().getCol() == 7) {
-        state.setCanCastleKingSide(color == Color.WHITE ? Color.BLACK
-            : Color.WHITE, false);
-      }
-    }
-    if (pieceKind == PieceKind.PAWN) {
-      changeStateForPawn(state, move);
-      state.setNumberOfMovesWithoutCaptureNorPawnMoved(0);
-    } else {
-      if (state.getPiece(move.getTo()) != null) {
-        state.setNumberOfMovesWithoutCaptureNorPawnMoved(0);
-      } else {
-        state.setNumberOfMovesWithoutCaptureNorPawnMoved(state
-            .getNumberOfMovesWithoutCaptureNorPawnMoved() + 1);
-      }
-      if (piece.getKind() == PieceKind.KING) {
-        changeStateForKing(state, move);
-      } else {
-        changeStateForOthers(state, move);
-      }
-      state.setEnpassantPosition(null);
-    }
-
-    state.setTurn(color == Color.WHITE ? Color.BLACK : Color.WHITE);
+    MoveMaker.makeMove(state, PackedMove.fromMove(state, move), null);
 
     if (state.getNumberOfMovesWithoutCaptureNorPawnMoved() >= 100) {
       GameResult gameResult = new GameResult(null,
@@ -100,6 +75,16 @@ public class StateChangerImpl implements StateChanger {
 
   }
 
+  @Override
+  public void makeMove(State state, int move, UndoStack undo) {
+    MoveMaker.makeMove(state, move, undo);
+  }
+
+  @Override
+  public void unmakeMove(State state, UndoStack undo) {
+    MoveMaker.unmakeMove(state, undo);
+  }
+
   private void implGeneralIllegalLogic(State state, Move move) {
     if (state.getGameResult() != null) {
       // Game already ended!
@@ -162,136 +147,18 @@ public class StateChangerImpl implements StateChanger {
 
   }
 
-  private void changeStateForPawn(State state, Move move) {
-    Color color = state.getPiece(move.getFrom()).getColor();
-
-    if (move.getPromoteToPiece() != null) {
-      state.setPiece(move.getFrom(), null);
-      state.setPiece(move.getTo(), new Piece(color, move.getPromoteToPiece()));
-    } else {
-      state.setPiece(move.getFrom(), null);
-      state.setPiece(move.getTo(), new Piece(color, PieceKind.PAWN));
-      Position enpassantPos = state.getEnpassantPosition();
-      if (enpassantPos != null
-          && state.getPiece(enpassantPos).getColor() != color
-          && enpassantPos.getRow() == move.getFrom().getRow()
-          && enpassantPos.getCol() == move.getTo().getCol()) {
-        state.setPiece(enpassantPos, null);
-        state.setEnpassantPosition(null);
-      }
-    }
-    if (color == Color.WHITE) {
-      if (move.getFrom().getRow() == 1 && move.getTo().getRow() == 3) {
-        state.setEnpassantPosition(move.getTo());
-      } else {
-        state.setEnpassantPosition(null);
-      }
-    } else {
-      if (move.getFrom().getRow() == 6 && move.getTo().getRow() == 4) {
-        state.setEnpassantPosition(move.getTo());
-      } else {
-        state.setEnpassantPosition(null);
-      }
-    }
-  }
-
-  private void changeStateForKing(State state, Move move) {
-    Color color = state.getPiece(move.getFrom()).getColor();
-    Position from = move.getFrom();
-    Position to = move.getTo();
-    int colDiff = Math.abs(from.getCol() - to.getCol());
-    int rowDiff = Math.abs(from.getRow() - to.getRow());
-
-    if (colDiff == 2 && rowDiff == 0) {
-      int diff = (from.getCol() - to.getCol()) / colDiff;
-      StateExplorerImpl stateExplorerImpl = StateExplorerImpl.getInstance();
-      State tmp = state.copy();
-
-      for (int row = 0; row < State.ROWS; row++) {
-        for (int col = 0; col < State.COLS; col++) {
-          Position tmpPos = new Position(row, col);
-          if (tmp.getPiece(tmpPos) != null
-              && tmp.getPiece(tmpPos).getColor() != tmp.getTurn()
-              && (stateExplorerImpl.isCanCheckMate(tmp, tmpPos, from) || stateExplorerImpl
-                  .isCanCheckMate(tmp, tmpPos,
-                      new Position(from.getRow(), from.getCol() - diff)))) {
-            throw new IllegalMove();
-          }
-        }
-      }
-
-      if (to.getCol() - from.getCol() > 0) {
-        state.setPiece(new Position(from.getRow(), from.getCol() + 1),
-            new Piece(color, PieceKind.ROOK));
-        state.setPiece(from.getRow(), 7, null);
-      } else {
-        state.setPiece(new Position(from.getRow(), from.getCol() - 1),
-            new Piece(color, PieceKind.ROOK));
-        state.setPiece(from.getRow(), 0, null);
-      }
+  private void setGameResult(State state) {
+    if (stateExplorer.hasAnyLegalMove(state)) {
+      return;
     }
-    state.setPiece(from, null);
-    state.setPiece(to, new Piece(color, PieceKind.KING));
-    state.setEnpassantPosition(null);
-    state.setCanCastleKingSide(color, false);
-    state.setCanCastleQueenSide(color, false);
-  }
-
-  private void changeStateForOthers(State state, Move move) {
-    Piece piece = state.getPiece(move.getFrom());
-    state.setPiece(move.getFrom(), null);
-    state.setPiece(move.getTo(), piece);
-    state.setEnpassantPosition(null);
-    if (piece.getKind() == PieceKind.ROOK) {
-      if (move.getFrom().getCol() == 0) {
-        state.setCanCastleQueenSide(piece.getColor(), false);
-      } else if (move.getFrom().getCol() == 7) {
-        state.setCanCastleKingSide(piece.getColor(), false);
-      }
+    if (state.getBitboard(state.getTurn(), PieceKind.KING) == Bitboards.EMPTY) {
+      throw new IllegalMove();
     }
-  }
-
-  private void setGameResult(State state) {
-    StateExplorerImpl stateExplorerImpl = StateExplorerImpl.getInstance();
-    Set<Position> legalPositionForOtherSide = Sets.newHashSet();
-    legalPositionForOtherSide.addAll(stateExplorer
-        .getPossibleStartPositions(state));
-
-    if (legalPositionForOtherSide == null
-        || legalPositionForOtherSide.isEmpty()) {
-      GameResult gameResult = null;
-      Position kingPos = null;
-      for (int r = 0; r < State.ROWS; r++) {
-        for (int c = 0; c < State.COLS; c++) {
-          if (state.getPiece(r, c) != null
-              && state.getPiece(r, c).getColor() == state.getTurn()
-              && state.getPiece(r, c).getKind() == PieceKind.KING) {
-            kingPos = new Position(r, c);
-          }
-        }
-      }
-      if (kingPos == null) {
-        throw new IllegalMove();
-      }
-      for (int row = 0; row < State.ROWS; row++) {
-        for (int col = 0; col < State.COLS; col++) {
-          Position tmpPos = new Position(row, col);
-          if (state.getPiece(tmpPos) != null
-              && state.getPiece(tmpPos).getColor() != state.getTurn()
-              && stateExplorerImpl.isCanCheckMate(state, tmpPos, kingPos)) {
-            gameResult = new GameResult(
-                state.getTurn() == Color.WHITE ? Color.BLACK : Color.WHITE,
-                GameResultReason.CHECKMATE);
-            state.setGameResult(gameResult);
-
-          }
-        }
-      }
-      if (gameResult == null) {
-        gameResult = new GameResult(null, GameResultReason.STALEMATE);
-        state.setGameResult(gameResult);
-      }
-
+    if (stateExplorer.isInCheck(state)) {
+      state.setGameResult(new GameResult(state.getTurn().getOpposite(),
+          GameResultReason.CHECKMATE));
+    } else {
+      state.setGameResult(new GameResult(null, GameResultReason.STALEMATE));
     }
   }
 
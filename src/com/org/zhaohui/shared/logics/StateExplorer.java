@@ -6,6 +6,11 @@ import com.org.zhaohui.shared.basics.Move;
 import com.org.zhaohui.shared.basics.State;
 import com.org.zhaohui.shared.basics.Position;
 
+/**
+ * Answers questions about the legal moves of a State without changing it.
+ * Implementations must be safe to call from several threads at once as long
+ * as no thread changes a State while another one explores it.
+ */
 public interface StateExplorer {
   /**
    * Returns all the possible moves from the given state. For example, from the
@@ -29,4 +34,31 @@ public interface StateExplorer {
    * positions for the knights (0x1 and 0x6).
    */
   Set<Position> getPossibleStartPositions(State state);
+
+  /**
+   * Clears moves and fills it with all the possible moves from the given state
+   * encoded as PackedMove ints, returning how many there are. The moves are
+   * the same as getPossibleMoves(state), but they come in a fixed order and
+   * nothing is allocated once moves has grown to its working size.
+   */
+  int getPossibleMoves(State state, MoveList moves);
+
+  /**
+   * Returns a MovePicker yielding the moves of getPossibleMoves(state) that
+   * pass filter, lazily and in stages: hashMove first if it is legal (use
+   * PackedMove.NONE for none), then captures by most valuable victim and least
+   * valuable attacker, then promotions, then quiet moves.
+   */
+  MovePicker getMovePicker(State state, int hashMove, MoveFilter filter);
+
+  /**
+   * Returns true iff getPossibleMoves(state) is not empty, stopping at the
+   * first legal move found instead of generating them all.
+   */
+  boolean hasAnyLegalMove(State state);
+
+  /**
+   * Returns true iff the king of the player to move is attacked.
+   */
+  boolean isInCheck(State state);
 }
@@ -10,583 +10,503 @@ import com.org.zhaohui.shared.basics.PieceKind;
 import com.org.zhaohui.shared.basics.Position;
 import com.org.zhaohui.shared.basics.State;
 
+/**
+ * The bitboard-backed StateExplorer, to get an instance of this class, use
+ * getInstance() method (singleton pattern adopted)
+ * 
+ * An instance holds no mutable state: the lookup tables are built once at
+ * class initialization and never written again, and every scratch MoveList
+ * is allocated per call. So one instance is safe to use from any number of
+ * threads at once, as long as no other thread changes a State while it is
+ * being explored. MovePickers it hands out are not thread-safe, each belongs
+ * to the thread that asked for it.
+ * 
+ * @author zhaohui
+ * 
+ */
 public class StateExplorerImpl implements StateExplorer {
+  /*
+   * Kinds of moves the generators can be asked for, so the staged MovePicker
+   * only generates the moves of the stage it reached. Capturing promotions
+   * count as captures, PROMOTION_MOVES are the non-capturing ones.
+   */
+  static final int CAPTURE_MOVES = 1;
+  static final int PROMOTION_MOVES = 2;
+  static final int QUIET_MOVES = 4;
+  static final int ALL_MOVES = CAPTURE_MOVES | PROMOTION_MOVES | QUIET_MOVES;
 
-  private static StateExplorerImpl instance;
+  private static final StateExplorerImpl INSTANCE = new StateExplorerImpl();
 
   private StateExplorerImpl() {
   }
 
   public static StateExplorerImpl getInstance() {
-    if (instance == null) {
-      synchronized (StateChangerImpl.class) {
-        if (instance == null) {
-          return new StateExplorerImpl();
-        }
-      }
-    }
-    return instance;
+    return INSTANCE;
   }
 
   @Override
   public Set<Move> getPossibleMoves(State state) {
-    Set<Move> moves = Sets.newHashSet();
-    for (int c = 0; c < 8; c++) {
-      for (int r = 0; r < 8; r++) {
-        Position pos = new Position(r, c);
-        if (state.getPiece(pos) != null
-            && state.getPiece(pos).getColor() == state.getTurn()) {
-          if (getPossibleMovesFromPosition(state, pos) != null) {
-            moves.addAll(getPossibleMovesFromPosition(state, pos));
-          }
-        }
-      }
-    }
-    return moves;
+    return toMoveSet(state, null);
   }
 
   @Override
   public Set<Move> getPossibleMovesFromPosition(State state, Position start) {
-    Set<Move> moves = Sets.newHashSet();
     if (start == null || state == null) {
-      return moves;
-    }
-    if (state.getPiece(start) == null) {
-      return moves;
-    }
-    Color color = state.getPiece(start).getColor();
-    if (color != state.getTurn()) {
-      return moves;
-    }
-    if (state.getGameResult() != null) {
-      return moves;
-    }
-
-    PieceKind pieceKind = state.getPiece(start).getKind();
-    switch (pieceKind) {
-    case PAWN:
-      moves.addAll(getPossibleMovesFromPawnPosition(state, start));
-      break;
-    case KNIGHT:
-      moves.addAll(getPossibleMovesFromKnightPosition(state, start));
-      break;
-    case ROOK:
-      moves.addAll(getPossibleMovesFromRookPosition(state, start));
-      break;
-    case BISHOP:
-      moves.addAll(getPossibleMovesFromBishopPosition(state, start));
-      break;
-    case QUEEN:
-      moves.addAll(getPossibleMovesFromQueenPosition(state, start));
-      break;
-    case KING:
-      moves.addAll(getPossibleMovesFromKingPosition(state, start));
-      break;
-    default:
-      break;
-    }
-    Set<Move> tmpmoves = Sets.newHashSet();
-    tmpmoves.addAll(moves);
-    for (Move move : tmpmoves) {
-      if (isIllegalMove(state, move)) {
-        moves.remove(move);
-      }
+      return Sets.newHashSet();
     }
-    return moves;
+    return toMoveSet(state, start);
   }
 
   @Override
   public Set<Position> getPossibleStartPositions(State state) {
     Set<Position> positions = Sets.newHashSet();
-    for (int c = 0; c < 8; c++) {
-      for (int r = 0; r < 8; r++) {
-        Position pos = new Position(r, c);
-        if (state.getPiece(pos) != null
-            && state.getPiece(pos).getColor() == state.getTurn()) {
-          if (getPossibleMovesFromPosition(state, pos) != null
-              && !getPossibleMovesFromPosition(state, pos).isEmpty()) {
-            positions.add(pos);
-          }
-        }
-      }
+    MoveList moves = new MoveList();
+    getPossibleMoves(state, moves);
+    for (int i = 0; i < moves.size(); i++) {
+      int from = PackedMove.from(moves.get(i));
+      positions.add(Position.of(Bitboards.row(from), Bitboards.col(from)));
     }
     return positions;
   }
 
-  private Set<Move> getPossibleMovesFromPawnPosition(State state, Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    Piece pawn = state.getPiece(start);
-    Color color = pawn.getColor();
-    int row = start.getRow();
-    int col = start.getCol();
-    if (color == Color.WHITE && row < 7) {
-      if (row == 1) {
-        if (state.getPiece(row + 1, col) == null
-            && state.getPiece(row + 2, col) == null) {
-          moves.add(new Move(start, new Position(row + 2, col), null));
-        }
-      }
-      if (state.getPiece(row + 1, col) == null) {
-        if (row == 6) {
-          moves
-              .add(new Move(start, new Position(row + 1, col), PieceKind.QUEEN));
-          moves
-              .add(new Move(start, new Position(row + 1, col), PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row + 1, col),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row + 1, col),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row + 1, col), null));
-        }
+  @Override
+  public int getPossibleMoves(State state, MoveList moves) {
+    moves.clear();
+    addLegalMoves(state, state.getBitboard(state.getTurn()), ALL_MOVES, moves);
+    return moves.size();
+  }
 
-      }
-      if ((col > 0 && state.getPiece(row + 1, col - 1) != null && state
-          .getPiece(row + 1, col - 1).getColor() == Color.BLACK)
-          || (col > 0 && state.getEnpassantPosition() != null
-              && state.getEnpassantPosition().getRow() == row
-              && state.getEnpassantPosition().getCol() == col - 1 && state
-              .getPiece(state.getEnpassantPosition()).getColor() == Color.BLACK)) {
-        if (row == 6) {
-          moves.add(new Move(start, new Position(row + 1, col - 1),
-              PieceKind.QUEEN));
-          moves.add(new Move(start, new Position(row + 1, col - 1),
-              PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row + 1, col - 1),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row + 1, col - 1),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row + 1, col - 1), null));
-        }
+  @Override
+  public MovePicker getMovePicker(State state, int hashMove,
+      MoveFilter filter) {
+    return new MovePicker(this).reset(state, hashMove, filter);
+  }
 
+  /*
+   * Probes the king first: its steps are few, cheap to test and the only way
+   * out of a double check. Castling is never needed, since a legal castling
+   * implies a legal king step onto the transit square. The other pieces are
+   * then generated one at a time, returning at the first legal move.
+   */
+  @Override
+  public boolean hasAnyLegalMove(State state) {
+    if (state.getGameResult() != null) {
+      return false;
+    }
+    Color color = state.getTurn();
+    long king = state.getBitboard(color, PieceKind.KING);
+    if (king == Bitboards.EMPTY) {
+      return false;
+    }
+    int kingSquare = Bitboards.first(king);
+    long steps = Bitboards.KING_ATTACKS[kingSquare] & ~state.getBitboard(color);
+    while (steps != Bitboards.EMPTY) {
+      int to = Bitboards.first(steps);
+      steps &= steps - 1;
+      if (isLegal(state, PackedMove.encode(kingSquare, to, null, 0))) {
+        return true;
+      }
+    }
+    long checkers = Bitboards.attackersOf(state, kingSquare,
+        color.getOpposite(), state.getOccupied());
+    if (Bitboards.count(checkers) > 1) {
+      return false;
+    }
+    long evasions = getEvasionTargets(kingSquare, checkers);
+    long pinned = getPinnedPieces(state, kingSquare, color);
+    MoveList moves = new MoveList(new int[32]);
+    long pieces = state.getBitboard(color) & ~king;
+    while (pieces != Bitboards.EMPTY) {
+      int square = Bitboards.first(pieces);
+      pieces &= pieces - 1;
+      long allowed = evasions;
+      if ((pinned & Bitboards.bit(square)) != Bitboards.EMPTY) {
+        allowed &= Bitboards.LINE[kingSquare][square];
       }
-      if ((col < 7 && state.getPiece(row + 1, col + 1) != null && state
-          .getPiece(row + 1, col + 1).getColor() == Color.BLACK)
-          || (col < 7 && state.getEnpassantPosition() != null
-              && state.getEnpassantPosition().getRow() == row
-              && state.getEnpassantPosition().getCol() == col + 1 && state
-              .getPiece(state.getEnpassantPosition()).getColor() == Color.BLACK)) {
-        if (row == 6) {
-          moves.add(new Move(start, new Position(row + 1, col + 1),
-              PieceKind.QUEEN));
-          moves.add(new Move(start, new Position(row + 1, col + 1),
-              PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row + 1, col + 1),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row + 1, col + 1),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row + 1, col + 1), null));
+      moves.clear();
+      addPseudoLegalMoves(state, square, allowed, ALL_MOVES, moves);
+      for (int i = 0; i < moves.size(); i++) {
+        int move = moves.get(i);
+        if (!PackedMove.isEnpassant(move) || isLegal(state, move)) {
+          return true;
         }
       }
+    }
+    return false;
+  }
 
-    } else if ((color == Color.BLACK && row > 0)) {
+  @Override
+  public boolean isInCheck(State state) {
+    long king = state.getBitboard(state.getTurn(), PieceKind.KING);
+    return king != Bitboards.EMPTY
+        && isKingCanBeChecked(state, Bitboards.first(king));
+  }
 
-      if (row == 6) {
-        if (state.getPiece(row - 1, col) == null
-            && state.getPiece(row - 2, col) == null) {
-          moves.add(new Move(start, new Position(row - 2, col), null));
-        }
-      }
-      if (state.getPiece(row - 1, col) == null) {
-        if (row == 1) {
-          moves
-              .add(new Move(start, new Position(row - 1, col), PieceKind.QUEEN));
-          moves
-              .add(new Move(start, new Position(row - 1, col), PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row - 1, col),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row - 1, col),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row - 1, col), null));
-        }
+  private Set<Move> toMoveSet(State state, Position start) {
+    MoveList moves = new MoveList();
+    if (start == null) {
+      getPossibleMoves(state, moves);
+    } else {
+      addLegalMoves(state, Bitboards.bit(square(start)), ALL_MOVES, moves);
+    }
+    Set<Move> result = Sets.newHashSetWithExpectedSize(moves.size());
+    for (int i = 0; i < moves.size(); i++) {
+      result.add(PackedMove.toMove(moves.get(i)));
+    }
+    return result;
+  }
 
+  /*
+   * Add the legal moves of the given kinds (see ALL_MOVES) of the side to
+   * move's pieces standing on the squares in from. Checkers and pinned pieces
+   * are found once; a pinned piece may only move along the line through its
+   * king. In check the other pieces may only capture the checker or block its
+   * ray (see getEvasionTargets), and in double check only the king moves.
+   * That makes every generated move legal, except king moves and en passant,
+   * which are tested one by one.
+   */
+  void addLegalMoves(State state, long from, int kinds, MoveList moves) {
+    if (state.getGameResult() != null) {
+      return;
+    }
+    Color color = state.getTurn();
+    long king = state.getBitboard(color, PieceKind.KING);
+    if (king == Bitboards.EMPTY) {
+      return;
+    }
+    int kingSquare = Bitboards.first(king);
+    long checkers = Bitboards.attackersOf(state, kingSquare,
+        color.getOpposite(), state.getOccupied());
+    long pieces = from & state.getBitboard(color);
+    if (Bitboards.count(checkers) > 1) {
+      pieces &= king;
+    }
+    long evasions = getEvasionTargets(kingSquare, checkers);
+    long pinned = getPinnedPieces(state, kingSquare, color);
+    int start = moves.size();
+    while (pieces != Bitboards.EMPTY) {
+      int square = Bitboards.first(pieces);
+      pieces &= pieces - 1;
+      long allowed = square == kingSquare ? Bitboards.ALL : evasions;
+      if ((pinned & Bitboards.bit(square)) != Bitboards.EMPTY) {
+        allowed &= Bitboards.LINE[kingSquare][square];
       }
-      if ((col > 0 && state.getPiece(row - 1, col - 1) != null && state
-          .getPiece(row - 1, col - 1).getColor() == Color.WHITE)
-          || (col > 0 && state.getEnpassantPosition() != null
-              && state.getEnpassantPosition().getRow() == row
-              && state.getEnpassantPosition().getCol() == col - 1 && state
-              .getPiece(state.getEnpassantPosition()).getColor() == Color.WHITE)) {
-        if (row == 1) {
-          moves.add(new Move(start, new Position(row - 1, col - 1),
-              PieceKind.QUEEN));
-          moves.add(new Move(start, new Position(row - 1, col - 1),
-              PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row - 1, col - 1),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row - 1, col - 1),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row - 1, col - 1), null));
-        }
+      addPseudoLegalMoves(state, square, allowed, kinds, moves);
+    }
 
-      }
-      if ((col < 7 && state.getPiece(row - 1, col + 1) != null && state
-          .getPiece(row - 1, col + 1).getColor() == Color.WHITE)
-          || (col < 7 && state.getEnpassantPosition() != null
-              && state.getEnpassantPosition().getRow() == row
-              && state.getEnpassantPosition().getCol() == col + 1 && state
-              .getPiece(state.getEnpassantPosition()).getColor() == Color.WHITE)) {
-        if (row == 1) {
-          moves.add(new Move(start, new Position(row - 1, col + 1),
-              PieceKind.QUEEN));
-          moves.add(new Move(start, new Position(row - 1, col + 1),
-              PieceKind.ROOK));
-          moves.add(new Move(start, new Position(row - 1, col + 1),
-              PieceKind.BISHOP));
-          moves.add(new Move(start, new Position(row - 1, col + 1),
-              PieceKind.KNIGHT));
-        } else {
-          moves.add(new Move(start, new Position(row - 1, col + 1), null));
-        }
+    int kept = start;
+    for (int i = start; i < moves.size(); i++) {
+      int move = moves.get(i);
+      boolean safeByConstruction = PackedMove.from(move) != kingSquare
+          && !PackedMove.isEnpassant(move);
+      if (safeByConstruction || isLegal(state, move)) {
+        moves.set(kept++, move);
       }
     }
-    return moves;
-
+    moves.truncate(kept);
   }
 
-  private Set<Move> getPossibleMovesFromKnightPosition(State state,
-      Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    Piece knight = state.getPiece(start);
-    Color color = knight.getColor();
-    int row = start.getRow();
-    int col = start.getCol();
-    int[] rowDif = new int[] { 2, 2, 1, 1, -1, -1, -2, -2 };
-    int[] colDif = new int[] { 1, -1, 2, -2, 2, -2, 1, -1 };
-    for (int i = 0; i < 8; i++) {
-      int newRow = row + rowDif[i];
-      int newCol = col + colDif[i];
-      if (newRow >= 0 && newRow <= 7 && newCol >= 0 && newCol <= 7) {
-        Position toPos = new Position(newRow, newCol);
-        if (state.getPiece(toPos) == null
-            || state.getPiece(toPos).getColor() != color) {
-          moves.add(new Move(start, toPos, null));
-        }
-      }
+  /*
+   * Returns the squares a piece other than the king may move to: anywhere when
+   * not in check, otherwise the single checker and the squares between it and
+   * the king. En passant ignores this mask and is tested by isLegal, as the
+   * pawn it takes is not on its destination square.
+   */
+  private static long getEvasionTargets(int kingSquare, long checkers) {
+    if (checkers == Bitboards.EMPTY) {
+      return Bitboards.ALL;
     }
-    return moves;
+    return Bitboards.BETWEEN[kingSquare][Bitboards.first(checkers)] | checkers;
   }
 
-  private Set<Move> getPossibleMovesFromRookPosition(State state, Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    Piece rook = state.getPiece(start);
-    Color color = rook.getColor();
-    int row = start.getRow();
-    int col = start.getCol();
-    int[] rowDif = { 0, 0, 1, -1 };
-    int[] colDif = { 1, -1, 0, 0 };
-    for (int i = 0; i < 4; i++) {
-      for (int j = 1; j < 8; j++) {
-        int toRow = row + rowDif[i] * j;
-        int toCol = col + colDif[i] * j;
-        if (toRow > 7 || toRow < 0 || toCol > 7 || toCol < 0) {
-          break;
-        }
-        Position toPos = new Position(toRow, toCol);
-        if (state.getPiece(toPos) == null) {
-          moves.add(new Move(start, toPos, null));
-        } else {
-          if (state.getPiece(toPos).getColor() != color) {
-            moves.add(new Move(start, toPos, null));
-          }
-          break;
-        }
+  /*
+   * Returns the pieces of the given color that stand alone between their king
+   * and an enemy rook, bishop or queen
+   */
+  private long getPinnedPieces(State state, int kingSquare, Color color) {
+    Color enemy = color.getOpposite();
+    long queens = state.getBitboard(enemy, PieceKind.QUEEN);
+    long snipers = (Bitboards.rookAttacks(kingSquare, Bitboards.EMPTY) & (state
+        .getBitboard(enemy, PieceKind.ROOK) | queens))
+        | (Bitboards.bishopAttacks(kingSquare, Bitboards.EMPTY) & (state
+            .getBitboard(enemy, PieceKind.BISHOP) | queens));
+    long occupied = state.getOccupied();
+    long pinned = Bitboards.EMPTY;
+    while (snipers != Bitboards.EMPTY) {
+      int sniper = Bitboards.first(snipers);
+      snipers &= snipers - 1;
+      long blockers = Bitboards.BETWEEN[kingSquare][sniper] & occupied;
+      if (blockers != Bitboards.EMPTY
+          && (blockers & (blockers - 1)) == Bitboards.EMPTY) {
+        pinned |= blockers & state.getBitboard(color);
       }
     }
+    return pinned;
+  }
 
-    return moves;
-
+  private void addPseudoLegalMoves(State state, int square, long allowed,
+      int kinds, MoveList moves) {
+    Piece piece = state.getPiece(Bitboards.row(square), Bitboards.col(square));
+    Color color = piece.getColor();
+    long targets = Bitboards.EMPTY;
+    if ((kinds & CAPTURE_MOVES) != 0) {
+      targets |= state.getBitboard(color.getOpposite());
+    }
+    if ((kinds & QUIET_MOVES) != 0) {
+      targets |= ~state.getOccupied();
+    }
+    targets &= allowed;
+    switch (piece.getKind()) {
+    case PAWN:
+      addPawnMoves(state, square, color, allowed, kinds, moves);
+      break;
+    case KNIGHT:
+      addMoves(state, square, Bitboards.KNIGHT_ATTACKS[square] & targets,
+          moves);
+      break;
+    case ROOK:
+      addMoves(state, square,
+          Bitboards.rookAttacks(square, state.getOccupied()) & targets, moves);
+      break;
+    case BISHOP:
+      addMoves(state, square,
+          Bitboards.bishopAttacks(square, state.getOccupied()) & targets,
+          moves);
+      break;
+    case QUEEN:
+      addMoves(state, square,
+          Bitboards.queenAttacks(square, state.getOccupied()) & targets, moves);
+      break;
+    case KING:
+      addKingMoves(state, square, color, targets, kinds, moves);
+      break;
+    default:
+      break;
+    }
   }
 
-  private Set<Move> getPossibleMovesFromBishopPosition(State state,
-      Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    Piece bishop = state.getPiece(start);
-    Color color = bishop.getColor();
-    int row = start.getRow();
-    int col = start.getCol();
-    int[] rowDif = { 1, 1, -1, -1 };
-    int[] colDif = { 1, -1, 1, -1 };
-    for (int i = 0; i < 4; i++) {
-      for (int j = 1; j < 8; j++) {
-        int toRow = row + rowDif[i] * j;
-        int toCol = col + colDif[i] * j;
-        if (toRow > 7 || toRow < 0 || toCol > 7 || toCol < 0) {
-          break;
-        }
-        Position toPos = new Position(toRow, toCol);
-        if (state.getPiece(toPos) == null) {
-          moves.add(new Move(start, toPos, null));
-        } else {
-          if (state.getPiece(toPos).getColor() != color) {
-            moves.add(new Move(start, toPos, null));
-          }
-          break;
+  private void addPawnMoves(State state, int square, Color color,
+      long allowed, int kinds, MoveList moves) {
+    int row = Bitboards.row(square);
+    int col = Bitboards.col(square);
+    int lastRow = color == Color.WHITE ? 7 : 0;
+    if (row == lastRow) {
+      return;
+    }
+    int forward = color == Color.WHITE ? 1 : -1;
+    int doubleStepRow = color == Color.WHITE ? 1 : 6;
+    boolean promote = row + forward == lastRow;
+    long occupied = state.getOccupied();
+
+    int oneStep = Bitboards.square(row + forward, col);
+    if ((kinds & (promote ? PROMOTION_MOVES : QUIET_MOVES)) != 0
+        && (occupied & Bitboards.bit(oneStep)) == Bitboards.EMPTY) {
+      if ((allowed & Bitboards.bit(oneStep)) != Bitboards.EMPTY) {
+        addPawnMove(square, oneStep, 0, promote, moves);
+      }
+      if (row == doubleStepRow) {
+        int twoSteps = Bitboards.square(row + 2 * forward, col);
+        long twoStepsBit = Bitboards.bit(twoSteps);
+        if ((occupied & twoStepsBit) == Bitboards.EMPTY
+            && (allowed & twoStepsBit) != Bitboards.EMPTY) {
+          moves.add(PackedMove.encode(square, twoSteps, null,
+              PackedMove.DOUBLE_PAWN_PUSH));
         }
-
       }
     }
-    return moves;
+    if ((kinds & CAPTURE_MOVES) == 0) {
+      return;
+    }
+    long captures = Bitboards.PAWN_ATTACKS[color.ordinal()][square]
+        & state.getBitboard(color.getOpposite()) & allowed;
+    while (captures != Bitboards.EMPTY) {
+      int to = Bitboards.first(captures);
+      captures &= captures - 1;
+      addPawnMove(square, to, PackedMove.CAPTURE, promote, moves);
+    }
+    Position enpassantPos = state.getEnpassantPosition();
+    if (enpassantPos != null && enpassantPos.getRow() == row
+        && Math.abs(enpassantPos.getCol() - col) == 1
+        && state.getPiece(enpassantPos) != null
+        && state.getPiece(enpassantPos).getColor() != color
+        && state.getPiece(row + forward, enpassantPos.getCol()) == null) {
+      addPawnMove(square,
+          Bitboards.square(row + forward, enpassantPos.getCol()),
+          PackedMove.CAPTURE | PackedMove.EN_PASSANT, promote, moves);
+    }
   }
 
-  private Set<Move> getPossibleMovesFromQueenPosition(State state,
-      Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    moves.addAll(getPossibleMovesFromRookPosition(state, start));
-    moves.addAll(getPossibleMovesFromBishopPosition(state, start));
-    return moves;
-
+  private void addPawnMove(int from, int to, int flags, boolean promote,
+      MoveList moves) {
+    if (promote) {
+      moves.add(PackedMove.encode(from, to, PieceKind.QUEEN, flags));
+      moves.add(PackedMove.encode(from, to, PieceKind.ROOK, flags));
+      moves.add(PackedMove.encode(from, to, PieceKind.BISHOP, flags));
+      moves.add(PackedMove.encode(from, to, PieceKind.KNIGHT, flags));
+    } else {
+      moves.add(PackedMove.encode(from, to, null, flags));
+    }
   }
 
-  private Set<Move> getPossibleMovesFromKingPosition(State state, Position start) {
-    Set<Move> moves = Sets.newHashSet();
-    Piece king = state.getPiece(start);
-    Color color = king.getColor();
-    int row = start.getRow();
-    int col = start.getCol();
+  private void addKingMoves(State state, int square, Color color,
+      long targets, int kinds, MoveList moves) {
+    int row = Bitboards.row(square);
+    int col = Bitboards.col(square);
+    addMoves(state, square, Bitboards.KING_ATTACKS[square] & targets, moves);
+    if ((kinds & QUIET_MOVES) == 0) {
+      return;
+    }
     if (state.isCanCastleQueenSide(color) && col == 4 && (row == 0 || row == 7)
         && state.getPiece(row, 1) == null && state.getPiece(row, 2) == null
         && state.getPiece(row, 3) == null && state.getPiece(row, 0) != null
         && state.getPiece(row, 0).getKind() == PieceKind.ROOK
-        && !isKingCanBeChecked(state, start)
-        && !isKingCanBeChecked(state, new Position(row, 3))) {
-
-      moves.add(new Move(start, new Position(row, 2), null));
+        && !isKingCanBeChecked(state, square)
+        && !isKingCanBeChecked(state, Bitboards.square(row, 3))) {
+      moves.add(PackedMove.encode(square, Bitboards.square(row, 2), null,
+          PackedMove.CASTLING));
     }
     if (state.isCanCastleKingSide(color) && col == 4 && (row == 0 || row == 7)
         && state.getPiece(row, 5) == null && state.getPiece(row, 6) == null
         && state.getPiece(row, 7) != null
         && state.getPiece(row, 7).getKind() == PieceKind.ROOK
-        && !isKingCanBeChecked(state, start)
-        && !isKingCanBeChecked(state, new Position(row, 5))) {
-      moves.add(new Move(start, new Position(row, 6), null));
-    }
-    int[] rowDif = { 1, 1, 1, 0, 0, -1, -1, -1 };
-    int[] colDif = { -1, 0, 1, -1, 1, -1, 0, 1 };
-    for (int i = 0; i < 8; i++) {
-      int toRow = row + rowDif[i];
-      int toCol = col + colDif[i];
-      if (toRow >= 0 && toRow <= 7 && toCol >= 0 && toCol <= 7) {
-        Position toPos = new Position(toRow, toCol);
-        if (state.getPiece(toPos) == null
-            || state.getPiece(toPos).getColor() != color) {
-          moves.add(new Move(start, toPos, null));
-        }
-      }
+        && !isKingCanBeChecked(state, square)
+        && !isKingCanBeChecked(state, Bitboards.square(row, 5))) {
+      moves.add(PackedMove.encode(square, Bitboards.square(row, 6), null,
+          PackedMove.CASTLING));
+    }
+  }
+
+  /*
+   * Add a move from square to every square in targets, flagging captures
+   */
+  private void addMoves(State state, int square, long targets, MoveList moves) {
+    long occupied = state.getOccupied();
+    while (targets != Bitboards.EMPTY) {
+      int to = Bitboards.first(targets);
+      targets &= targets - 1;
+      moves.add(PackedMove.encode(square, to, null,
+          (occupied & Bitboards.bit(to)) != Bitboards.EMPTY ? PackedMove.CAPTURE
+              : 0));
     }
-    return moves;
+  }
 
+  private static int square(Position position) {
+    return Bitboards.square(position.getRow(), position.getCol());
   }
 
   /*
    * Check whether the move will lead king being checked
    */
   public boolean isIllegalMove(State state, Move move) {
-    Position from = move.getFrom();
-    Position to = move.getTo();
-    Piece movedPiece = state.getPiece(from);
-    Color color = movedPiece.getColor();
-    State tmp = state.copy();
-    // BUG here
-    tmp.setPiece(from, null);
-    if (move.getPromoteToPiece() == null) {
-      tmp.setPiece(to, movedPiece);
-    } else {
-      tmp.setPiece(to, new Piece(color, move.getPromoteToPiece()));
-    }
-    Position enpassantPos = tmp.getEnpassantPosition();
-    if (movedPiece.getKind() == PieceKind.PAWN && enpassantPos != null
-        && tmp.getPiece(enpassantPos) != null
-        && tmp.getPiece(enpassantPos).getColor() != color
-        && enpassantPos.getRow() == move.getFrom().getRow()
-        && enpassantPos.getCol() == move.getTo().getCol()) {
-      tmp.setPiece(enpassantPos, null);
-    }
-    if (movedPiece.getKind() == PieceKind.KING) {
-      int colDiff = Math.abs(from.getCol() - to.getCol());
-      int rowDiff = Math.abs(from.getRow() - to.getRow());
-      if (colDiff == 2 && rowDiff == 0) {
-        if (to.getCol() - from.getCol() > 0) {
-          tmp.setPiece(new Position(from.getRow(), from.getCol() + 1),
-              new Piece(color, PieceKind.ROOK));
-          tmp.setPiece(from.getRow(), 7, null);
-        } else {
-          tmp.setPiece(new Position(from.getRow(), from.getCol() - 1),
-              new Piece(color, PieceKind.ROOK));
-          tmp.setPiece(from.getRow(), 0, null);
-        }
-      }
+    return !isLegal(state, PackedMove.fromMove(state, move));
+  }
+
+  /*
+   * Check whether the mover's king is safe after the move, by looking for
+   * attackers on the board as it would be, without playing the move
+   */
+  private boolean isLegal(State state, int move) {
+    int from = PackedMove.from(move);
+    int to = PackedMove.to(move);
+    Color color = state.getPiece(Bitboards.row(from), Bitboards.col(from))
+        .getColor();
+    long king = state.getBitboard(color, PieceKind.KING);
+    if (king == Bitboards.EMPTY) {
+      return false;
     }
+    int kingSquare = Bitboards.first(king) == from ? to : Bitboards
+        .first(king);
+    long captured = PackedMove.isEnpassant(move) ? Bitboards.bit(
+        Bitboards.row(from), Bitboards.col(to)) : Bitboards.bit(to)
+        & state.getBitboard(color.getOpposite());
+    long occupied = (state.getOccupied() & ~Bitboards.bit(from) & ~captured)
+        | Bitboards.bit(to);
+    return (Bitboards.attackersOf(state, kingSquare, color.getOpposite(),
+        occupied) & ~captured) == Bitboards.EMPTY;
+  }
 
-    Position kingPos = null;
-    for (int r = 0; r < State.ROWS; r++) {
-      for (int c = 0; c < State.COLS; c++) {
-        if (tmp.getPiece(r, c) != null
-            && tmp.getPiece(r, c).getColor() == color
-            && tmp.getPiece(r, c).getKind() == PieceKind.KING) {
-          kingPos = new Position(r, c);
-        }
-      }
+  /*
+   * Check whether the legal move puts the opponent's king in check: directly
+   * from the destination, by uncovering one of the mover's sliders, or with
+   * the rook of a castling move
+   */
+  boolean givesCheck(State state, int move) {
+    int from = PackedMove.from(move);
+    int to = PackedMove.to(move);
+    Piece piece = state.getPiece(Bitboards.row(from), Bitboards.col(from));
+    Color color = piece.getColor();
+    long enemyKing = state.getBitboard(color.getOpposite(), PieceKind.KING);
+    if (enemyKing == Bitboards.EMPTY) {
+      return false;
     }
-    if (kingPos == null) {
-      return true;
+    int kingSquare = Bitboards.first(enemyKing);
+    long moved = Bitboards.bit(from);
+    long occupied = (state.getOccupied() & ~moved) | Bitboards.bit(to);
+    if (PackedMove.isEnpassant(move)) {
+      occupied &= ~Bitboards.bit(Bitboards.row(from), Bitboards.col(to));
     }
-    for (int r = 0; r < State.ROWS; r++) {
-      for (int c = 0; c < State.COLS; c++) {
-        Position tmpPos = new Position(r, c);
-        if (tmp.getPiece(r, c) != null
-            && tmp.getPiece(tmpPos).getColor() != color
-            && isCanCheckMate(tmp, tmpPos, kingPos)) {
-          return true;
-        }
-      }
-
+    PieceKind kind = PackedMove.isPromotion(move) ? PackedMove.promotion(move)
+        : piece.getKind();
+    if ((attacks(kind, color, to, occupied) & enemyKing) != Bitboards.EMPTY) {
+      return true;
     }
-
-    return false;
-  }
-
-  private boolean isKingCanBeChecked(State state, Position kingPos) {
-    for (int r = 0; r < State.ROWS; r++) {
-      for (int c = 0; c < State.COLS; c++) {
-        Position tmpPos = new Position(r, c);
-        if (state.getPiece(tmpPos) != null
-            && state.getPiece(tmpPos).getColor() != state.getTurn()) {
-          if (isCanCheckMate(state, tmpPos, kingPos)) {
-            return true;
-          }
-        }
+    if (PackedMove.isCastling(move)) {
+      int row = Bitboards.row(from);
+      boolean kingSide = Bitboards.col(to) == 6;
+      int rookFrom = Bitboards.square(row, kingSide ? 7 : 0);
+      int rookTo = Bitboards.square(row, kingSide ? 5 : 3);
+      moved |= Bitboards.bit(rookFrom);
+      occupied = (occupied & ~Bitboards.bit(rookFrom)) | Bitboards.bit(rookTo);
+      if ((Bitboards.rookAttacks(rookTo, occupied) & enemyKing)
+          != Bitboards.EMPTY) {
+        return true;
       }
     }
-    return false;
+    long queens = state.getBitboard(color, PieceKind.QUEEN);
+    long rooksQueens = (state.getBitboard(color, PieceKind.ROOK) | queens)
+        & ~moved;
+    long bishopsQueens = (state.getBitboard(color, PieceKind.BISHOP) | queens)
+        & ~moved;
+    return (Bitboards.rookAttacks(kingSquare, occupied) & rooksQueens)
+        != Bitboards.EMPTY
+        || (Bitboards.bishopAttacks(kingSquare, occupied) & bishopsQueens)
+        != Bitboards.EMPTY;
   }
 
-  public boolean isCanCheckMate(State state, Position fromPos, Position kingPos) {
-    if (state == null || fromPos == null || kingPos == null)
-      return false;
-    Piece movedPiece = state.getPiece(fromPos);
-    if (movedPiece == null)
-      return false;
-    PieceKind movedPieceKind = movedPiece.getKind();
-    int fromRow = fromPos.getRow();
-    int fromCol = fromPos.getCol();
-    int toRow = kingPos.getRow();
-    int toCol = kingPos.getCol();
-    int absRowDif = Math.abs(toRow - fromRow);
-    int absColDif = Math.abs(toCol - fromCol);
-    switch (movedPieceKind) {
+  private static long attacks(PieceKind kind, Color color, int square,
+      long occupied) {
+    switch (kind) {
     case PAWN:
-      return isPawnCanCheckMate(state, fromPos, kingPos);
+      return Bitboards.PAWN_ATTACKS[color.ordinal()][square];
     case KNIGHT:
-      return (absRowDif == 2 && absColDif == 1)
-          || (absRowDif == 1 && absColDif == 2);
-    case ROOK:
-      return isRookCanCheckMate(state, fromPos, kingPos);
+      return Bitboards.KNIGHT_ATTACKS[square];
     case BISHOP:
-      return isBishopCanCheckMate(state, fromPos, kingPos);
+      return Bitboards.bishopAttacks(square, occupied);
+    case ROOK:
+      return Bitboards.rookAttacks(square, occupied);
     case QUEEN:
-      return isRookCanCheckMate(state, fromPos, kingPos)
-          || isBishopCanCheckMate(state, fromPos, kingPos);
+      return Bitboards.queenAttacks(square, occupied);
     case KING:
-      return Math.sqrt(absRowDif * absRowDif + absColDif * absColDif) < 2;
+      return Bitboards.KING_ATTACKS[square];
     default:
-      break;
-    }
-
-    return false;
-  }
-
-  private boolean isPawnCanCheckMate(State state, Position fromPos,
-      Position kingPos) {
-    int fromRow = fromPos.getRow();
-    int fromCol = fromPos.getCol();
-    int toRow = kingPos.getRow();
-    int toCol = kingPos.getCol();
-    int rowDif = toRow - fromRow;
-    int absColDif = Math.abs(toCol - fromCol);
-    if (state.getPiece(fromPos).getColor() == Color.BLACK) {
-      return rowDif == -1 && absColDif == 1;
-    } else {
-      return rowDif == 1 && absColDif == 1;
+      return Bitboards.EMPTY;
     }
   }
 
-  private boolean isRookCanCheckMate(State state, Position fromPos,
-      Position kingPos) {
-    int fromRow = fromPos.getRow();
-    int fromCol = fromPos.getCol();
-    int toRow = kingPos.getRow();
-    int toCol = kingPos.getCol();
-    int absRowDif = Math.abs(toRow - fromRow);
-    int absColDif = Math.abs(toCol - fromCol);
-    if (absRowDif == 0) {
-      int dif = absColDif / (toCol - fromCol);
-      if (dif == 1) {
-        for (int i = fromCol + 1; i < toCol; i++) {
-          if (state.getPiece(fromRow, i) != null) {
-            return false;
-          }
-        }
-        return true;
-      } else {
-        for (int i = fromCol - 1; i > toCol; i--) {
-          if (state.getPiece(fromRow, i) != null) {
-            return false;
-          }
-        }
-        return true;
-      }
-    }
-
-    if (absColDif == 0) {
-      int dif = absRowDif / (toRow - fromRow);
-      if (dif == 1) {
-        for (int i = fromRow + 1; i < toRow; i++) {
-          if (state.getPiece(i, fromCol) != null) {
-            return false;
-          }
-        }
-        return true;
-      } else {
-        for (int i = fromRow - 1; i > toRow; i--) {
-          if (state.getPiece(i, fromCol) != null) {
-            return false;
-          }
-        }
-        return true;
-      }
-    }
-    return false;
+  private boolean isKingCanBeChecked(State state, int kingSquare) {
+    return Bitboards.isAttacked(state, kingSquare, state.getTurn()
+        .getOpposite());
   }
 
-  private boolean isBishopCanCheckMate(State state, Position fromPos,
-      Position kingPos) {
-    int fromRow = fromPos.getRow();
-    int fromCol = fromPos.getCol();
-    int toRow = kingPos.getRow();
-    int toCol = kingPos.getCol();
-    int absRowDif = Math.abs(toRow - fromRow);
-    int absColDif = Math.abs(toCol - fromCol);
-
-    if (absRowDif == absColDif) {
-      int rowDiff = (toRow - fromRow) / absRowDif;
-      int colDiff = (toCol - fromCol) / absColDif;
-      int i = fromRow + rowDiff;
-      int j = fromCol + colDiff;
-      while (i != toRow && j != toCol) {
-        if (state.getPiece(i, j) != null) {
-          return false;
-        }
-        i += rowDiff;
-        j += colDiff;
-      }
-      return true;
-    }
-    return false;
+  public boolean isCanCheckMate(State state, Position fromPos, Position kingPos) {
+    if (state == null || fromPos == null || kingPos == null)
+      return false;
+    Piece movedPiece = state.getPiece(fromPos);
+    if (movedPiece == null)
+      return false;
+    return (attacks(movedPiece.getKind(), movedPiece.getColor(),
+        square(fromPos), state.getOccupied())
+        & Bitboards.bit(square(kingPos))) != Bitboards.EMPTY;
   }
 
 }
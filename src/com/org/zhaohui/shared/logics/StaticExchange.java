@@ -0,0 +1,115 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Static exchange evaluation: what a capture wins or loses in material once
+ * both sides have recaptured on its square as long as it pays, each side
+ * always recapturing with its least valuable attacker. See
+ * http://chessprogramming.wikispaces.com/Static+Exchange+Evaluation
+ *
+ * Attackers hidden behind other ones on the same line (x-rays) join in as
+ * the pieces in front of them leave. Pins and checks elsewhere on the board
+ * are ignored, except that a king never recaptures onto a defended square.
+ * Values are PieceKind.getValue() centipawns.
+ *
+ * @author zhaohui
+ *
+ */
+public final class StaticExchange {
+  /** the order recaptures are tried in: least valuable attacker first */
+  private static final PieceKind[] ATTACKER_ORDER = { PieceKind.PAWN,
+      PieceKind.KNIGHT, PieceKind.BISHOP, PieceKind.ROOK, PieceKind.QUEEN,
+      PieceKind.KING };
+  /** more than any exchange can win, so a king is never traded */
+  private static final int KING_VALUE = 10000;
+  /** 32 captures on one square cannot happen */
+  private static final int MAX_EXCHANGES = 32;
+
+  private StaticExchange() {
+  }
+
+  /**
+   * Returns the material the side to move wins (negative if it loses) by
+   * playing move, a legal move of state, and the exchange that follows. A
+   * move capturing nothing scores 0, or what its promotion gains, minus what
+   * the opponent then wins by capturing the piece moved.
+   */
+  public static int evaluate(State state, Move move) {
+    return evaluate(state, PackedMove.fromMove(state, move));
+  }
+
+  /**
+   * Same as evaluate(State, Move) for a PackedMove.
+   */
+  public static int evaluate(State state, int move) {
+    int from = PackedMove.from(move);
+    int to = PackedMove.to(move);
+    Piece mover = state.getPiece(Bitboards.row(from), Bitboards.col(from));
+    Piece victim = state.getPiece(Bitboards.row(to), Bitboards.col(to));
+    int[] gain = new int[MAX_EXCHANGES];
+    long occupied = state.getOccupied() ^ Bitboards.bit(from);
+
+    gain[0] = victim == null ? 0 : value(victim.getKind());
+    if (PackedMove.isEnpassant(move)) {
+      gain[0] = PieceKind.PAWN.getValue();
+      occupied ^= Bitboards.bit(Bitboards.square(Bitboards.row(from),
+          Bitboards.col(to)));
+    }
+    // the piece standing on the square, which the next capture wins
+    int onSquare = value(mover.getKind());
+    if (PackedMove.isPromotion(move)) {
+      onSquare = value(PackedMove.promotion(move));
+      gain[0] += onSquare - PieceKind.PAWN.getValue();
+    }
+
+    Color side = mover.getColor().getOpposite();
+    int depth = 0;
+    while (depth + 1 < MAX_EXCHANGES) {
+      long attackers = (Bitboards.attackersOf(state, to, Color.WHITE, occupied)
+          | Bitboards.attackersOf(state, to, Color.BLACK, occupied))
+          & occupied;
+      long own = attackers & state.getBitboard(side);
+      if (own == Bitboards.EMPTY) {
+        break;
+      }
+      PieceKind kind = null;
+      long attacker = Bitboards.EMPTY;
+      for (PieceKind candidate : ATTACKER_ORDER) {
+        attacker = own & state.getBitboard(side, candidate);
+        if (attacker != Bitboards.EMPTY) {
+          kind = candidate;
+          break;
+        }
+      }
+      long theirs = attackers & state.getBitboard(side.getOpposite());
+      if (kind == PieceKind.KING && theirs != Bitboards.EMPTY) {
+        break;
+      }
+      depth++;
+      // what the side capturing now is up, if the exchange stopped here
+      gain[depth] = onSquare - gain[depth - 1];
+      onSquare = value(kind);
+      if (kind == PieceKind.PAWN && (to < 8 || to >= 56)) {
+        gain[depth] += PieceKind.QUEEN.getValue() - PieceKind.PAWN.getValue();
+        onSquare = PieceKind.QUEEN.getValue();
+      }
+      occupied ^= Bitboards.bit(Bitboards.first(attacker));
+      side = side.getOpposite();
+    }
+    // each side may stop the exchange when going on would lose
+    while (depth > 0) {
+      gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+      depth--;
+    }
+    return gain[0];
+  }
+
+  private static int value(PieceKind kind) {
+    return kind == PieceKind.KING ? KING_VALUE : kind.getValue();
+  }
+}
@@ -0,0 +1,146 @@
+package com.org.zhaohui.shared.logics;
+
+import com.org.zhaohui.shared.basics.GameResult;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.Position;
+
+/**
+ * What StateChanger.unmakeMove needs to take back the moves played with
+ * StateChanger.makeMove(State, int, UndoStack): per ply, the move, the
+ * captured piece, the castling rights, the en passant position, the fifty-move
+ * counter and the game result from before the move. The entries live in
+ * parallel arrays allocated up front, so making and unmaking moves does not
+ * allocate unless a line runs deeper than the initial capacity.
+ * 
+ * An UndoStack belongs to one line of play; use one per thread.
+ * 
+ * @author zhaohui
+ * 
+ */
+public class UndoStack {
+  public static final int DEFAULT_CAPACITY = 128;
+
+  private int size;
+  private int[] moves;
+  private Piece[] capturedPieces;
+  /** castling rights as packed by MoveMaker */
+  private int[] castlingRights;
+  private Position[] enpassantPositions;
+  private int[] numbersOfMovesWithoutCaptureNorPawnMoved;
+  private GameResult[] gameResults;
+
+  public UndoStack() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public UndoStack(int capacity) {
+    moves = new int[capacity];
+    capturedPieces = new Piece[capacity];
+    castlingRights = new int[capacity];
+    enpassantPositions = new Position[capacity];
+    numbersOfMovesWithoutCaptureNorPawnMoved = new int[capacity];
+    gameResults = new GameResult[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      capturedPieces[i] = null;
+      enpassantPositions[i] = null;
+      gameResults[i] = null;
+    }
+    size = 0;
+  }
+
+  /**
+   * Returns the move on top of the stack, i.e. the last move made.
+   */
+  public int peekMove() {
+    if (size == 0) {
+      throw new IllegalStateException("No move to undo");
+    }
+    return moves[size - 1];
+  }
+
+  void push(int move, Piece capturedPiece, int castling,
+      Position enpassantPosition, int numberOfMovesWithoutCaptureNorPawnMoved,
+      GameResult gameResult) {
+    if (size == moves.length) {
+      grow();
+    }
+    moves[size] = move;
+    capturedPieces[size] = capturedPiece;
+    castlingRights[size] = castling;
+    enpassantPositions[size] = enpassantPosition;
+    numbersOfMovesWithoutCaptureNorPawnMoved[size] = numberOfMovesWithoutCaptureNorPawnMoved;
+    gameResults[size] = gameResult;
+    size++;
+  }
+
+  /**
+   * Drops the top entry, releasing the objects it referenced.
+   */
+  void pop() {
+    if (size == 0) {
+      throw new IllegalStateException("No move to undo");
+    }
+    size--;
+    capturedPieces[size] = null;
+    enpassantPositions[size] = null;
+    gameResults[size] = null;
+  }
+
+  int getMove(int index) {
+    return moves[index];
+  }
+
+  Piece getCapturedPiece(int index) {
+    return capturedPieces[index];
+  }
+
+  int getCastlingRights(int index) {
+    return castlingRights[index];
+  }
+
+  Position getEnpassantPosition(int index) {
+    return enpassantPositions[index];
+  }
+
+  int getNumberOfMovesWithoutCaptureNorPawnMoved(int index) {
+    return numbersOfMovesWithoutCaptureNorPawnMoved[index];
+  }
+
+  GameResult getGameResult(int index) {
+    return gameResults[index];
+  }
+
+  private void grow() {
+    int capacity = Math.max(DEFAULT_CAPACITY, moves.length * 2);
+    int[] newMoves = new int[capacity];
+    Piece[] newCapturedPieces = new Piece[capacity];
+    int[] newCastlingRights = new int[capacity];
+    Position[] newEnpassantPositions = new Position[capacity];
+    int[] newCounters = new int[capacity];
+    GameResult[] newGameResults = new GameResult[capacity];
+    System.arraycopy(moves, 0, newMoves, 0, size);
+    System.arraycopy(capturedPieces, 0, newCapturedPieces, 0, size);
+    System.arraycopy(castlingRights, 0, newCastlingRights, 0, size);
+    System.arraycopy(enpassantPositions, 0, newEnpassantPositions, 0, size);
+    System.arraycopy(numbersOfMovesWithoutCaptureNorPawnMoved, 0, newCounters,
+        0, size);
+    System.arraycopy(gameResults, 0, newGameResults, 0, size);
+    moves = newMoves;
+    capturedPieces = newCapturedPieces;
+    castlingRights = newCastlingRights;
+    enpassantPositions = newEnpassantPositions;
+    numbersOfMovesWithoutCaptureNorPawnMoved = newCounters;
+    gameResults = newGameResults;
+  }
+}
@@ -0,0 +1,219 @@
+package com.org.zhaohui.server.bitbase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.org.zhaohui.server.engine.Engine;
+import com.org.zhaohui.server.engine.SearchLimits;
+import com.org.zhaohui.server.engine.SearchResult;
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.MoveList;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+import com.org.zhaohui.shared.logics.UndoStack;
+
+public class BitbasesTest {
+  /** generated once, it takes a few seconds */
+  private static Bitbases bitbases;
+
+  private static synchronized Bitbases bitbases() throws Exception {
+    if (bitbases == null) {
+      File directory = File.createTempFile("bitbases", "");
+      assertTrue(directory.delete() && directory.mkdir());
+      directory.deleteOnExit();
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        BitbaseGenerator generator = new BitbaseGenerator(executor);
+        Bitbases solved = new Bitbases();
+        for (PieceKind kind : Bitbases.KINDS) {
+          long[] bits = generator.generate(kind, solved);
+          File file = new File(directory, Bitbases.getFileName(kind));
+          file.deleteOnExit();
+          BitbaseGenerator.write(bits, file);
+          solved.put(kind, BitbaseGenerator.toBuffer(bits));
+        }
+      } finally {
+        executor.shutdown();
+      }
+      bitbases = Bitbases.open(directory);
+    }
+    return bitbases;
+  }
+
+  private static int probe(String fen) throws Exception {
+    return bitbases().probe(Fen.parse(fen));
+  }
+
+  @Test
+  public void testQueen() throws Exception {
+    assertEquals(Bitbases.WIN, probe("8/8/8/4k3/8/8/8/KQ6 w - - 0 1"));
+    assertEquals(Bitbases.LOSS, probe("8/8/8/4k3/8/8/8/KQ6 b - - 0 1"));
+    // the queen hangs
+    assertEquals(Bitbases.DRAW, probe("8/8/8/8/8/8/1Q6/k3K3 b - - 0 1"));
+    // stalemate
+    assertEquals(Bitbases.DRAW, probe("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"));
+  }
+
+  @Test
+  public void testBlackStrongSide() throws Exception {
+    // checkmated
+    assertEquals(Bitbases.LOSS, probe("8/8/8/8/8/8/1q6/K1k5 w - - 0 1"));
+    assertEquals(Bitbases.WIN, probe("8/8/8/8/4p3/4k3/8/4K3 b - - 0 1"));
+  }
+
+  @Test
+  public void testRook() throws Exception {
+    assertEquals(Bitbases.WIN, probe("8/8/8/8/3k4/8/8/R3K3 w - - 0 1"));
+    assertEquals(Bitbases.LOSS, probe("8/8/8/8/3k4/8/8/R3K3 b - - 0 1"));
+    assertEquals(Bitbases.DRAW, probe("8/8/8/8/8/8/8/Rk2K3 b - - 0 1"));
+  }
+
+  @Test
+  public void testPawn() throws Exception {
+    // the king in front of the pawn on the sixth rank wins whoever moves
+    assertEquals(Bitbases.WIN, probe("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1"));
+    assertEquals(Bitbases.LOSS, probe("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1"));
+    // a rook pawn draws once the defending king holds the corner
+    assertEquals(Bitbases.DRAW, probe("k7/8/8/P7/8/8/8/1K6 w - - 0 1"));
+    // the pawn runs to promotion out of the king's reach
+    assertEquals(Bitbases.WIN, probe("5k2/8/8/8/P7/8/8/7K w - - 0 1"));
+    // unless the king steps into its square first
+    assertEquals(Bitbases.DRAW, probe("5k2/8/8/8/P7/8/8/7K b - - 0 1"));
+  }
+
+  @Test
+  public void testOtherPositionsAreUnknown() throws Exception {
+    assertEquals(Bitbases.UNKNOWN, probe(Fen.INITIAL));
+    assertEquals(Bitbases.UNKNOWN, probe("8/8/8/4k3/8/8/8/KB6 w - - 0 1"));
+    assertEquals(Bitbases.UNKNOWN, probe("8/8/8/4k3/8/8/8/K7 w - - 0 1"));
+    assertFalse(new Bitbases().has(PieceKind.QUEEN));
+    assertEquals(Bitbases.UNKNOWN,
+        new Bitbases().probe(Fen.parse("8/8/8/4k3/8/8/8/KQ6 w - - 0 1")));
+  }
+
+  @Test
+  public void testAgreesWithTheMoves() throws Exception {
+    // each position is won iff a move reaches a lost one, and so on
+    Random random = new Random(25);
+    MoveList moves = new MoveList();
+    UndoStack undo = new UndoStack();
+    PieceKind[] kinds = { PieceKind.QUEEN, PieceKind.ROOK, PieceKind.PAWN };
+    for (int checked = 0; checked < 1000;) {
+      State state = new State(random.nextBoolean() ? Color.WHITE
+          : Color.BLACK, new Piece[State.ROWS][State.COLS], new boolean[2],
+          new boolean[2], null, 0, null);
+      Color strong = random.nextBoolean() ? Color.WHITE : Color.BLACK;
+      int[] squares = { random.nextInt(64), random.nextInt(64),
+          random.nextInt(64) };
+      state.setPiece(squares[0] / 8, squares[0] % 8,
+          Piece.of(strong, PieceKind.KING));
+      state.setPiece(squares[1] / 8, squares[1] % 8,
+          Piece.of(strong.getOpposite(), PieceKind.KING));
+      state.setPiece(squares[2] / 8, squares[2] % 8,
+          Piece.of(strong, kinds[random.nextInt(kinds.length)]));
+      if (!isLegal(state)) {
+        continue;
+      }
+      int count = StateExplorerImpl.getInstance().getPossibleMoves(state,
+          moves);
+      int expected = StateExplorerImpl.getInstance().isInCheck(state)
+          ? Bitbases.LOSS : Bitbases.DRAW;
+      boolean everyMoveLoses = count > 0;
+      for (int i = 0; i < count; i++) {
+        StateChangerImpl.getInstance().makeMove(state, moves.get(i), undo);
+        int result = bitbases().probe(state);
+        StateChangerImpl.getInstance().unmakeMove(state, undo);
+        if (result == Bitbases.LOSS) {
+          expected = Bitbases.WIN;
+        }
+        everyMoveLoses &= result == Bitbases.WIN;
+      }
+      if (count > 0 && expected != Bitbases.WIN) {
+        expected = everyMoveLoses ? Bitbases.LOSS : Bitbases.DRAW;
+      }
+      assertEquals(Fen.toFen(state), expected, bitbases().probe(state));
+      checked++;
+    }
+  }
+
+  private static boolean isLegal(State state) {
+    if (Long.bitCount(state.getOccupied()) != 3) {
+      return false;
+    }
+    long pawns = state.getBitboard(Color.WHITE, PieceKind.PAWN)
+        | state.getBitboard(Color.BLACK, PieceKind.PAWN);
+    if ((pawns & 0xFF000000000000FFL) != 0) {
+      return false;
+    }
+    // the side not to move must not be in check
+    State passed = state.copy();
+    passed.setTurn(state.getTurn().getOpposite());
+    return !StateExplorerImpl.getInstance().isInCheck(passed)
+        && !kingsTouch(state);
+  }
+
+  private static boolean kingsTouch(State state) {
+    int white = Long.numberOfTrailingZeros(state.getBitboard(Color.WHITE,
+        PieceKind.KING));
+    int black = Long.numberOfTrailingZeros(state.getBitboard(Color.BLACK,
+        PieceKind.KING));
+    return Math.abs(white / 8 - black / 8) < 2
+        && Math.abs(white % 8 - black % 8) < 2;
+  }
+
+  @Test
+  public void testGenerationDoesNotDependOnThreads() throws Exception {
+    ExecutorService one = Executors.newSingleThreadExecutor();
+    ExecutorService three = Executors.newFixedThreadPool(3);
+    try {
+      Bitbases solved = new Bitbases();
+      assertArrayEquals(
+          new BitbaseGenerator(one).generate(PieceKind.ROOK, solved),
+          new BitbaseGenerator(three).generate(PieceKind.ROOK, solved));
+    } finally {
+      one.shutdown();
+      three.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPawnNeedsTheOtherBitbases() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      new BitbaseGenerator(executor).generate(PieceKind.PAWN,
+          new Bitbases());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testEngineScoresLeavesFromTheBitbases() throws Exception {
+    Engine engine = new Engine();
+    engine.setBitbases(bitbases());
+    SearchResult won = engine.search(
+        Fen.parse("8/8/4k3/8/8/4K3/4P3/8 w - - 0 1"), SearchLimits.depth(3));
+    assertTrue(won.getScore() >= Engine.KNOWN_WIN);
+    assertFalse(won.isMate());
+    State afterBest = Fen.parse("8/8/4k3/8/8/4K3/4P3/8 w - - 0 1");
+    StateChangerImpl.getInstance().makeMove(afterBest, won.getBestMove());
+    assertEquals(Bitbases.LOSS, bitbases().probe(afterBest));
+
+    SearchResult drawn = engine.search(
+        Fen.parse("k7/8/8/P7/8/8/8/1K6 w - - 0 1"), SearchLimits.depth(3));
+    assertEquals(0, drawn.getScore());
+  }
+}
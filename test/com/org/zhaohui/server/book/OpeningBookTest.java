@@ -0,0 +1,120 @@
+package com.org.zhaohui.server.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+
+public class OpeningBookTest {
+  private static final String[] GAMES = {
+      "e2e4 e7e5 g1f3 b8c6 f1c4 g8f6 e1g1",
+      "e2e4 e7e5 g1f3 b8c6 f1b5",
+      "e2e4 c7c5",
+      "d2d4 d7d5 c2c4" };
+
+  private File file;
+  private OpeningBook book;
+
+  @Before
+  public void setUp() throws Exception {
+    OpeningBookBuilder builder = new OpeningBookBuilder();
+    for (String game : GAMES) {
+      builder.addGame(game, 16);
+    }
+    file = File.createTempFile("book", ".bin");
+    file.deleteOnExit();
+    builder.write(file);
+    book = OpeningBook.open(file);
+  }
+
+  private static State play(String moves) {
+    State state = new State();
+    for (String move : moves.split(" ")) {
+      StateChangerImpl.getInstance().makeMove(state,
+          OpeningBookBuilder.parse(move));
+    }
+    return state;
+  }
+
+  @Test
+  public void testLookup() {
+    assertEquals(12, book.size());
+    assertEquals(12 * 16, file.length());
+    assertEquals(Lists.newArrayList(OpeningBookBuilder.parse("e2e4"),
+        OpeningBookBuilder.parse("d2d4")), book.getMoves(new State()));
+    assertEquals(Lists.newArrayList(OpeningBookBuilder.parse("e7e5"),
+        OpeningBookBuilder.parse("c7c5")), book.getMoves(play("e2e4")));
+    assertEquals(2, book.getMoves(play("e2e4 e7e5 g1f3 b8c6")).size());
+    assertTrue(book.getMoves(play("a2a3")).isEmpty());
+    assertNull(book.pickMove(play("a2a3"), new Random()));
+  }
+
+  @Test
+  public void testCastlingUsesThePolyglotEncoding() {
+    State state = play("e2e4 e7e5 g1f3 b8c6 f1c4 g8f6");
+    Move castle = OpeningBookBuilder.parse("e1g1");
+    // e1h1: from e1 (row 0, col 4) to h1 (row 0, col 7)
+    assertEquals(4 << 6 | 7, OpeningBook.encode(state, castle));
+    assertEquals(castle, OpeningBook.decode(state, 4 << 6 | 7));
+    assertEquals(Lists.newArrayList(castle), book.getMoves(state));
+    State promotion = Fen.parse("8/1P6/8/8/8/8/8/k1K5 w - - 0 1");
+    Move queen = OpeningBookBuilder.parse("b7b8q");
+    assertEquals(queen, OpeningBook.decode(promotion, OpeningBook.encode(
+        promotion, queen)));
+  }
+
+  @Test
+  public void testPickMoveFollowsTheWeights() {
+    Random random = new Random(24);
+    int e4 = 0;
+    for (int i = 0; i < 4000; i++) {
+      if (book.pickMove(new State(), random).equals(
+          OpeningBookBuilder.parse("e2e4"))) {
+        e4++;
+      }
+    }
+    // e2e4 has weight 3, d2d4 weight 1
+    assertEquals(3000, e4, 150);
+  }
+
+  @Test
+  public void testConcurrentProbes() throws Exception {
+    List<Callable<Integer>> tasks = Lists.newArrayList();
+    for (int t = 0; t < 8; t++) {
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          int found = 0;
+          for (int i = 0; i < 2000; i++) {
+            found += book.getMoves(play("e2e4 e7e5 g1f3")).size();
+          }
+          return found;
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (Future<Integer> found : executor.invokeAll(tasks)) {
+        assertEquals(2000, found.get().intValue());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
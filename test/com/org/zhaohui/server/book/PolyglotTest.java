@@ -0,0 +1,64 @@
+package com.org.zhaohui.server.book;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+public class PolyglotTest {
+  private static long key(String moves) {
+    State state = new State();
+    if (!moves.isEmpty()) {
+      for (String move : moves.split(" ")) {
+        StateChangerImpl.getInstance().makeMove(state,
+            OpeningBookBuilder.parse(move));
+      }
+    }
+    return Polyglot.polyglotKey(state);
+  }
+
+  @Test
+  public void testReferenceKeys() {
+    // the keys listed in the Polyglot book format description
+    assertEquals(781, Polyglot.RANDOM64.length);
+    assertEquals(0x463b96181691fc9cL, key(""));
+    assertEquals(0x823c9b50fd114196L, key("e2e4"));
+    assertEquals(0x0756b94461c50fb0L, key("e2e4 d7d5"));
+    assertEquals(0x662fafb965db29d4L, key("e2e4 d7d5 e4e5"));
+    assertEquals(0x22a48b5a8e47ff78L, key("e2e4 d7d5 e4e5 f7f5"));
+    assertEquals(0x652a607ca3f242c1L, key("e2e4 d7d5 e4e5 f7f5 e1e2"));
+    assertEquals(0x00fdd303c946bdd9L, key("e2e4 d7d5 e4e5 f7f5 e1e2 e8f7"));
+    assertEquals(0x3c8123ea7b067637L, key("a2a4 b7b5 h2h4 b5b4 c2c4"));
+    assertEquals(0x5c3f9b829b279560L,
+        key("a2a4 b7b5 h2h4 b5b4 c2c4 b4c3 a1a3"));
+  }
+
+  @Test
+  public void testEnpassantFileNeedsACapturer() {
+    // after e2e4 no black pawn stands beside e4, so e3 does not count
+    assertEquals(key("e2e4"), Polyglot.polyglotKey(Fen.parse(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1")));
+  }
+
+  @Test
+  public void testReadsPolyglotEntries() {
+    // one entry as another Polyglot tool would write it: e2e4 from the
+    // initial position, weight 7
+    ByteBuffer entries = ByteBuffer.allocate(OpeningBook.ENTRY_BYTES);
+    entries.putLong(0x463b96181691fc9cL);
+    entries.putShort((short) (4 | 3 << 3 | 4 << 6 | 1 << 9));
+    entries.putShort((short) 7);
+    entries.putInt(0);
+    OpeningBook book = new OpeningBook(entries,
+        StateExplorerImpl.getInstance());
+    assertEquals(Lists.newArrayList(OpeningBookBuilder.parse("e2e4")),
+        book.getMoves(new State()));
+  }
+}
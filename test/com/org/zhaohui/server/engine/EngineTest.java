@@ -0,0 +1,281 @@
+package com.org.zhaohui.server.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.PackedMove;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+public class EngineTest {
+  private final Engine engine = new Engine();
+
+  private static String coordinates(SearchResult result) {
+    return PackedMove.toCoordinateNotation(result.getBestPackedMove());
+  }
+
+  @Test
+  public void testFindsMateInOne() {
+    SearchResult result = engine.search(
+        Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), SearchLimits.depth(4));
+    assertEquals("a1a8", coordinates(result));
+    assertTrue(result.isMate());
+    assertEquals(1, result.getMateIn());
+    assertEquals(Engine.MATE - 1, result.getScore());
+  }
+
+  @Test
+  public void testFindsMateInTwo() {
+    // 1. Rd1 Kf8 2. Rd8#
+    SearchResult result = engine.search(
+        Fen.parse("4k3/8/5K2/8/8/8/8/R7 w - - 0 1"), SearchLimits.depth(6));
+    assertEquals("a1d1", coordinates(result));
+    assertTrue(result.isMate());
+    assertEquals(2, result.getMateIn());
+    // the quiescence search finds Rd8 has no evasion one ply early
+    assertEquals(3, result.getDepth());
+  }
+
+  @Test
+  public void testSeesBeingMated() {
+    // Kb8 is forced, then Rh8 mates
+    SearchResult mated = engine.search(
+        Fen.parse("k7/8/1K6/8/8/8/8/7R b - - 0 1"), SearchLimits.depth(5));
+    assertTrue(mated.isMate());
+    assertEquals(-1, mated.getMateIn());
+  }
+
+  @Test
+  public void testWinsHangingQueen() {
+    SearchResult result = engine.search(
+        Fen.parse("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1"), SearchLimits.depth(3));
+    assertEquals("d2d5", coordinates(result));
+    assertTrue(result.getScore() >= 400);
+  }
+
+  @Test
+  public void testQuiescenceSeesTheRecapture() {
+    // at depth 1, Qxd6 wins a pawn until cxd6 is seen
+    SearchResult result = engine.search(
+        Fen.parse("4k3/2p5/3p4/8/8/8/8/3QK3 w - - 0 1"), SearchLimits.depth(1));
+    assertFalse("d1d6".equals(coordinates(result)));
+    assertTrue(result.getScore() < 800);
+  }
+
+  @Test
+  public void testNoMoveWhenTheGameIsOver() {
+    SearchResult mated = engine.search(
+        Fen.parse("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1"), SearchLimits.depth(3));
+    assertNull(mated.getBestMove());
+    assertEquals(-Engine.MATE, mated.getScore());
+    SearchResult stalemated = engine.search(
+        Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"), SearchLimits.depth(3));
+    assertNull(stalemated.getBestMove());
+    assertEquals(0, stalemated.getScore());
+  }
+
+  @Test
+  public void testPrincipalVariationIsLegal() throws Exception {
+    State state = Fen.parse(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    final List<Integer> depths = Lists.newArrayList();
+    SearchResult result = engine.search(state, SearchLimits.depth(3),
+        new SearchListener() {
+          @Override
+          public void iterationDone(SearchResult result) {
+            depths.add(result.getDepth());
+          }
+        });
+    assertEquals(Lists.newArrayList(1, 2, 3), depths);
+    assertEquals(3, result.getDepth());
+    assertTrue(result.getNodes() > 0);
+    assertTrue(result.getNodesPerSecond() > 0);
+    List<Move> pv = result.getPrincipalVariation();
+    assertFalse(pv.isEmpty());
+    assertEquals(result.getBestMove(), pv.get(0));
+    State copy = state.copy();
+    for (Move move : pv) {
+      assertTrue(StateExplorerImpl.getInstance().getPossibleMoves(copy)
+          .contains(move));
+      StateChangerImpl.getInstance().makeMove(copy, move);
+    }
+    // the caller's state is left alone
+    assertEquals(Fen.parse(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"),
+        state);
+  }
+
+  @Test
+  public void testTranspositionTableIsUsed() {
+    State state = Fen.parse(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    Engine engine = new Engine();
+    SearchResult cold = engine.search(state, SearchLimits.depth(4));
+    TranspositionTable table = engine.getTranspositionTable();
+    assertTrue(table.getStoreCount() > 0);
+    assertTrue(table.getHitCount() > 0);
+    SearchResult warm = engine.search(state, SearchLimits.depth(4));
+    assertTrue(warm.getNodes() < cold.getNodes());
+    assertEquals(cold.getScore(), warm.getScore());
+  }
+
+  @Test
+  public void testLazySmpFindsTheSameMates() throws Exception {
+    Engine engine = new Engine();
+    engine.setThreads(4);
+    SearchResult result = engine.search(
+        Fen.parse("4k3/8/5K2/8/8/8/8/R7 w - - 0 1"), SearchLimits.depth(6));
+    assertEquals("a1d1", coordinates(result));
+    assertEquals(2, result.getMateIn());
+
+    State state = Fen.parse(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    result = engine.search(state, SearchLimits.depth(4));
+    assertEquals(4, result.getDepth());
+    State copy = state.copy();
+    for (Move move : result.getPrincipalVariation()) {
+      StateChangerImpl.getInstance().makeMove(copy, move);
+    }
+    result = engine.search(state, SearchLimits.moveTime(200));
+    assertTrue(result.getBestMove() != null);
+    engine.shutdown();
+  }
+
+  private static Set<Thread> helperThreads() {
+    Set<Thread> helpers = Sets.newHashSet();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("engine-helper-")) {
+        helpers.add(thread);
+      }
+    }
+    return helpers;
+  }
+
+  @Test
+  public void testHelperThreadsAreKeptBetweenSearches() {
+    Set<Thread> before = helperThreads();
+    Engine engine = new Engine();
+    engine.setThreads(3);
+    for (int i = 0; i < 3; i++) {
+      engine.search(Fen.parse(Fen.INITIAL), SearchLimits.depth(3));
+    }
+    assertEquals(2, Sets.difference(helperThreads(), before).size());
+    engine.shutdown();
+    // a search after shutdown starts helpers again
+    engine.search(Fen.parse(Fen.INITIAL), SearchLimits.depth(2));
+    engine.shutdown();
+  }
+
+  @Test
+  public void testSearchesCanRunAtOnce() throws Exception {
+    final Engine shared = new Engine();
+    shared.setThreads(3);
+    final List<SearchResult> results = Collections
+        .synchronizedList(Lists.<SearchResult> newArrayList());
+    List<Thread> callers = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      callers.add(new Thread() {
+        @Override
+        public void run() {
+          results.add(shared.search(Fen.parse(Fen.INITIAL),
+              SearchLimits.moveTime(300)));
+        }
+      });
+    }
+    for (Thread caller : callers) {
+      caller.start();
+    }
+    // the running searches keep their helpers
+    shared.shutdown();
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    assertEquals(2, results.size());
+    for (SearchResult result : results) {
+      assertTrue(result.getBestMove() != null);
+    }
+  }
+
+  @Test
+  public void testSearchKeepsTheInterrupt() {
+    Engine threaded = new Engine();
+    threaded.setThreads(2);
+    Thread.currentThread().interrupt();
+    SearchResult result = threaded.search(Fen.parse(Fen.INITIAL),
+        SearchLimits.depth(3));
+    // the interrupt is kept for the caller
+    assertTrue(Thread.interrupted());
+    assertTrue(result.getBestMove() != null);
+    threaded.shutdown();
+  }
+
+  @Test
+  public void testDeadlineIsRespected() {
+    long start = System.currentTimeMillis();
+    SearchResult result = engine.search(Fen.parse(Fen.INITIAL),
+        SearchLimits.deadline(start + 200));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertTrue(result.getBestMove() != null);
+  }
+
+  @Test
+  public void testNodeLimitIsRespected() {
+    SearchResult result = engine.search(Fen.parse(Fen.INITIAL),
+        SearchLimits.nodes(20000));
+    assertTrue(result.getNodes() <= 20000);
+    assertTrue(result.getDepth() >= 1);
+    assertTrue(result.getBestMove() != null);
+  }
+
+  @Test
+  public void testStopFlag() throws Exception {
+    final AtomicBoolean stop = new AtomicBoolean();
+    Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          return;
+        }
+        stop.set(true);
+      }
+    };
+    long start = System.currentTimeMillis();
+    stopper.start();
+    SearchResult result = engine.search(Fen.parse(Fen.INITIAL),
+        new SearchLimits(0, 0).withStopFlag(stop));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertTrue(result.getBestMove() != null);
+    stopper.join();
+
+    // depth 1 completes even when stopped from the start
+    result = engine.search(Fen.parse(Fen.INITIAL), SearchLimits.depth(5)
+        .withStopFlag(stop));
+    assertEquals(1, result.getDepth());
+  }
+
+  @Test
+  public void testMoveTimeIsRespected() {
+    long start = System.currentTimeMillis();
+    SearchResult result = engine.search(Fen.parse(Fen.INITIAL),
+        SearchLimits.moveTime(200));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertTrue(result.getDepth() >= 1);
+    assertTrue(result.getBestMove() != null);
+  }
+}
@@ -0,0 +1,85 @@
+package com.org.zhaohui.server.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+import com.org.zhaohui.shared.logics.Bitboards;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+public class PawnTableTest {
+  @Test
+  public void testStructureTerms() {
+    // white: doubled isolated c-pawns, a passed e-pawn on the 6th rank;
+    // black: a passed, isolated a-pawn on its 7th rank
+    PawnTable.Entry entry = new PawnTable(16).probe(
+        Fen.parse("4k3/p7/4P3/8/8/2P5/2P5/4K3 w - - 0 1"));
+    assertEquals(Bitboards.bit(5, 4) | Bitboards.bit(2, 2),
+        entry.getPassedPawns(Color.WHITE));
+    assertEquals(Bitboards.bit(6, 0), entry.getPassedPawns(Color.BLACK));
+    assertEquals(Bitboards.bit(6, 3) | Bitboards.bit(6, 5)
+        | Bitboards.bit(3, 1) | Bitboards.bit(3, 3) | Bitboards.bit(2, 1)
+        | Bitboards.bit(2, 3), entry.getAttacks(Color.WHITE));
+    assertEquals(Bitboards.bit(5, 1), entry.getAttacks(Color.BLACK));
+    // doubled -10, three isolated -30, passed on the 6th 40 and the 3rd
+    // 10, against isolated -10 and passed on the 2nd 5
+    assertEquals(-10 - 30 + 40 + 10 - (-10 + 5), entry.getMiddlegameScore());
+    assertEquals(-20 - 45 + 100 + 20 - (-15 + 10), entry.getEndgameScore());
+  }
+
+  @Test
+  public void testProbeHitsOnTheSamePawns() {
+    PawnTable table = new PawnTable(1000);
+    assertEquals(512, table.getSize());
+    State state = Fen.parse(Fen.INITIAL);
+    PawnTable.Entry entry = table.probe(state);
+    State knightMoved = Fen.parse(
+        "rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1");
+    assertSame(entry, table.probe(knightMoved));
+    assertSame(entry, table.get(knightMoved));
+    table.clear();
+    assertNull(table.get(state));
+    assertTrue(entry != table.probe(state));
+  }
+
+  @Test
+  public void testThreadEvaluatorsCountUntilFlushed() {
+    PawnTable table = new PawnTable(512);
+    PieceSquareEvaluator shared = new PieceSquareEvaluator(table);
+    Evaluator evaluator = shared.forThread();
+    State state = Fen.parse(Fen.INITIAL);
+    shared.evaluate(state);
+    evaluator.evaluate(state);
+    evaluator.evaluate(state);
+    // nothing is counted by the shared instance, nor shared before a flush
+    assertEquals(0, table.getProbeCount());
+    evaluator.flushStatistics();
+    assertEquals(2, table.getProbeCount());
+    assertEquals(2, table.getHitCount());
+    evaluator.flushStatistics();
+    assertEquals(2, table.getProbeCount());
+    table.clear();
+    evaluator.evaluate(state);
+    evaluator.flushStatistics();
+    assertEquals(2.0 / 3, table.getHitRate(), 1e-9);
+  }
+
+  @Test
+  public void testSearchHitRate() {
+    PieceSquareEvaluator evaluator = new PieceSquareEvaluator();
+    Engine engine = new Engine(StateExplorerImpl.getInstance(),
+        StateChangerImpl.getInstance(), evaluator, new TranspositionTable(1));
+    engine.search(Fen.parse(
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"),
+        SearchLimits.depth(4));
+    // still mostly cold after so short a search; whole games reach 95%
+    assertTrue(evaluator.getPawnTable().getHitRate() > 0.9);
+  }
+}
@@ -0,0 +1,36 @@
+package com.org.zhaohui.server.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Fen;
+
+public class PieceSquareEvaluatorTest {
+  private final PieceSquareEvaluator evaluator = new PieceSquareEvaluator();
+
+  @Test
+  public void testMirroredPositionsScoreTheSame() {
+    assertEquals(0, evaluator.evaluate(Fen.parse(Fen.INITIAL)));
+    assertEquals(
+        evaluator.evaluate(Fen.parse(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1")),
+        evaluator.evaluate(Fen.parse(
+            "r3k2r/pppbbppp/2n2q1P/1P2p3/3pn3/BN2PNP1/P1PPQPB1/R3K2R b - - 0 1")));
+  }
+
+  @Test
+  public void testTapering() {
+    assertEquals(24, PieceSquareEvaluator.getPhase(Fen.parse(Fen.INITIAL)));
+    assertEquals(0, PieceSquareEvaluator.getPhase(
+        Fen.parse("4k3/pppp4/8/8/8/8/4PPPP/4K3 w - - 0 1")));
+    // a centralized king is good in the endgame, bad with all pieces around
+    assertTrue(evaluator.evaluate(Fen.parse("8/8/8/4k3/8/8/8/4K3 b - - 0 1"))
+        > evaluator.evaluate(Fen.parse("4k3/8/8/8/8/8/8/4K3 b - - 0 1")));
+    assertTrue(evaluator.evaluate(Fen.parse(
+        "rnbq1bnr/pppppppp/8/4k3/8/8/PPPPPPPP/RNBQKBNR b - - 0 1"))
+        < evaluator.evaluate(Fen.parse(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b - - 0 1")));
+  }
+}
@@ -0,0 +1,44 @@
+package com.org.zhaohui.server.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class SearchLimitsTest {
+  @Test
+  public void testWithersChangeOneLimit() {
+    AtomicBoolean stop = new AtomicBoolean();
+    SearchLimits limits = SearchLimits.depth(7).withMoveTime(100)
+        .withDeadline(12345).withNodes(1000).withStopFlag(stop);
+    assertEquals(7, limits.getDepth());
+    assertEquals(100, limits.getMoveTimeMillis());
+    assertEquals(12345, limits.getDeadlineMillis());
+    assertEquals(1000, limits.getNodes());
+    assertSame(stop, limits.getStopFlag());
+    assertEquals(3, limits.withDepth(3).getDepth());
+    assertEquals(1000, limits.withDepth(3).getNodes());
+    assertNull(SearchLimits.nodes(5).getStopFlag());
+    assertEquals(0, SearchLimits.nodes(5).getDepth());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeLimits() {
+    SearchLimits.depth(1).withNodes(-1);
+  }
+
+  @Test
+  public void testForClock() {
+    // a 30th of the time plus three quarters of the increment
+    assertEquals(2000 + 750,
+        SearchLimits.forClock(60000, 1000, 0).getMoveTimeMillis());
+    assertEquals(6000, SearchLimits.forClock(60000, 0, 10)
+        .getMoveTimeMillis());
+    // the last move before the time control never uses the whole clock
+    assertEquals(950, SearchLimits.forClock(1000, 0, 1).getMoveTimeMillis());
+    assertEquals(1, SearchLimits.forClock(0, 0, 0).getMoveTimeMillis());
+  }
+}
@@ -0,0 +1,170 @@
+package com.org.zhaohui.server.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.logics.Bitboards;
+import com.org.zhaohui.shared.logics.PackedMove;
+
+public class TranspositionTableTest {
+  private static final int MOVE = PackedMove.encode(Bitboards.square(1, 4),
+      Bitboards.square(3, 4), null, PackedMove.DOUBLE_PAWN_PUSH);
+
+  @Test
+  public void testStoreAndProbe() {
+    TranspositionTable table = new TranspositionTable(1);
+    long key = 0x123456789ABCDEFL;
+    assertEquals(TranspositionTable.MISS, table.probe(key));
+    table.store(key, MOVE, -250, 7, TranspositionTable.LOWER_BOUND);
+    long entry = table.probe(key);
+    assertEquals(MOVE, TranspositionTable.getMove(entry));
+    assertEquals(-250, TranspositionTable.getScore(entry));
+    assertEquals(7, TranspositionTable.getDepth(entry));
+    assertEquals(TranspositionTable.LOWER_BOUND,
+        TranspositionTable.getBound(entry));
+    // same bucket, other key
+    long other = key ^ (1L << 60);
+    assertEquals(TranspositionTable.MISS, table.probe(other));
+  }
+
+  @Test
+  public void testStoreKeepsTheMoveWhenGivenNone() {
+    TranspositionTable table = new TranspositionTable(1);
+    table.store(42, MOVE, 10, 3, TranspositionTable.EXACT);
+    table.store(42, PackedMove.NONE, -5, 4, TranspositionTable.UPPER_BOUND);
+    long entry = table.probe(42);
+    assertEquals(MOVE, TranspositionTable.getMove(entry));
+    assertEquals(-5, TranspositionTable.getScore(entry));
+    assertEquals(4, TranspositionTable.getDepth(entry));
+  }
+
+  @Test
+  public void testReplacement() {
+    TranspositionTable table = new TranspositionTable(1);
+    long bucketStride = table.getEntryCount() / 2;
+    long deep = 5;
+    long shallow = deep + bucketStride;
+    long newer = deep + 2 * bucketStride;
+    table.store(deep, MOVE, 1, 10, TranspositionTable.EXACT);
+    table.store(shallow, MOVE, 2, 2, TranspositionTable.EXACT);
+    table.store(newer, MOVE, 3, 1, TranspositionTable.EXACT);
+    // the deep entry survives, the always-replace slot went to the newest
+    assertEquals(10, TranspositionTable.getDepth(table.probe(deep)));
+    assertEquals(TranspositionTable.MISS, table.probe(shallow));
+    assertEquals(3, TranspositionTable.getScore(table.probe(newer)));
+
+    // entries of an earlier search give way even to shallower ones
+    table.newSearch();
+    table.store(shallow, MOVE, 2, 2, TranspositionTable.EXACT);
+    assertEquals(TranspositionTable.MISS, table.probe(deep));
+    assertEquals(2, TranspositionTable.getScore(table.probe(shallow)));
+  }
+
+  @Test
+  public void testClearAndResize() {
+    TranspositionTable table = new TranspositionTable(1);
+    assertEquals(1 << 20, table.getSizeInBytes());
+    assertEquals((1 << 20) / 16, table.getEntryCount());
+    table.store(42, MOVE, 10, 3, TranspositionTable.EXACT);
+    table.clear();
+    assertEquals(TranspositionTable.MISS, table.probe(42));
+    table.store(42, MOVE, 10, 3, TranspositionTable.EXACT);
+    table.resize(3);
+    assertEquals(2 << 20, table.getSizeInBytes());
+    assertEquals(TranspositionTable.MISS, table.probe(42));
+  }
+
+  @Test
+  public void testMateScoresAreStoredFromThePosition() {
+    int mateIn3FromRoot = Engine.MATE - 5;
+    int stored = TranspositionTable.toTableScore(mateIn3FromRoot, 2);
+    assertEquals(Engine.MATE - 3, stored);
+    assertEquals(Engine.MATE - 7, TranspositionTable.fromTableScore(stored, 4));
+    assertEquals(-Engine.MATE + 5, TranspositionTable.fromTableScore(
+        TranspositionTable.toTableScore(-Engine.MATE + 5, 2), 2));
+    assertEquals(123, TranspositionTable.toTableScore(123, 9));
+  }
+
+  @Test
+  public void testStatisticsAndFill() {
+    TranspositionTable table = new TranspositionTable(1);
+    assertEquals(0, table.getFillPermill());
+    for (long key = 0; key < table.getEntryCount(); key++) {
+      table.store(key, MOVE, 0, 1, TranspositionTable.EXACT);
+    }
+    assertEquals(500, table.getFillPermill());
+    table.addStatistics(10, 4, 3);
+    assertEquals(10, table.getProbeCount());
+    assertEquals(4, table.getHitCount());
+    assertEquals(3, table.getStoreCount());
+    assertEquals(0.4, table.getHitRate(), 1e-9);
+  }
+
+  /*
+   * Writers store entries whose data is a function of the key while readers
+   * probe: every entry read back must be one that was written for its key.
+   */
+  @Test
+  public void testConcurrentAccessNeverReturnsAnotherKeysEntry()
+      throws Exception {
+    final TranspositionTable table = new TranspositionTable(1);
+    final long keys = table.getEntryCount() * 4;
+    List<Callable<Integer>> tasks = Lists.newArrayList();
+    for (int t = 0; t < 8; t++) {
+      final int seed = t;
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          Random random = new Random(seed);
+          int found = 0;
+          for (int i = 0; i < 200000; i++) {
+            long key = mix(random.nextInt((int) keys));
+            if (random.nextBoolean()) {
+              table.store(key, (int) (key & 0xFFF) + 1,
+                  (short) (key >>> 20), (int) (key >>> 40) & 0xFF,
+                  TranspositionTable.EXACT);
+            } else {
+              long entry = table.probe(key);
+              if (entry != TranspositionTable.MISS) {
+                found++;
+                assertEquals((int) (key & 0xFFF) + 1,
+                    TranspositionTable.getMove(entry));
+                assertEquals((short) (key >>> 20),
+                    TranspositionTable.getScore(entry));
+                assertEquals((int) (key >>> 40) & 0xFF,
+                    TranspositionTable.getDepth(entry));
+              }
+            }
+          }
+          return found;
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      int found = 0;
+      for (Future<Integer> result : executor.invokeAll(tasks)) {
+        found += result.get();
+      }
+      assertTrue(found > 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static long mix(long x) {
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+}
@@ -0,0 +1,65 @@
+package com.org.zhaohui.server.perft;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+
+public class PerftTest {
+  /** keeps the suite fast; run Perft -suite for the deep counts */
+  private static final long MAX_NODES = 100000L;
+
+  private final Perft perft = new Perft();
+
+  @Test
+  public void testStandardSuite() {
+    for (PerftPosition position : PerftPosition.standardSuite()) {
+      State state = Fen.parse(position.getFen());
+      for (int depth = 1; depth <= position.getMaxDepth()
+          && position.getExpected(depth) <= MAX_NODES; depth++) {
+        assertEquals(position + " depth " + depth,
+            position.getExpected(depth), perft.perft(state, depth));
+      }
+    }
+  }
+
+  @Test
+  public void testPerftLeavesStateUntouched() {
+    State state = Fen.parse(PerftPosition.standardSuite().get(1).getFen());
+    State copy = state.copy();
+    perft.perft(state, 2);
+    assertEquals(copy, state);
+  }
+
+  @Test
+  public void testDivideAddsUp() {
+    Map<String, Long> divide = perft.divide(new State(), 3);
+    assertEquals(20, divide.size());
+    assertEquals(Long.valueOf(600), divide.get("e2e4"));
+    assertEquals(Long.valueOf(440), divide.get("g1f3"));
+    long nodes = 0;
+    for (long count : divide.values()) {
+      nodes += count;
+    }
+    assertEquals(8902, nodes);
+  }
+
+  @Test
+  public void testForkJoinMatchesSerial() {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for (PerftPosition position : PerftPosition.standardSuite()) {
+        State state = Fen.parse(position.getFen());
+        assertEquals(position.toString(), position.getExpected(3),
+            perft.perft(state, 3, pool));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
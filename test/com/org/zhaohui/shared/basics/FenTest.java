@@ -0,0 +1,49 @@
+package com.org.zhaohui.shared.basics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FenTest {
+
+	@Test
+	public void testInitialState() {
+		assertEquals(new State(), Fen.parse(Fen.INITIAL));
+		assertEquals(Fen.INITIAL, Fen.toFen(new State()));
+	}
+
+	@Test
+	public void testEnpassantTargetIsTranslated() {
+		State state = Fen.parse("rnbqkbnr/pppp1ppp/8/8/4pP2/8/PPPPP1PP/RNBQKBNR b KQkq f3 0 3");
+		assertEquals(Color.BLACK, state.getTurn());
+		// FEN names the skipped square f3, State the pawn on f4
+		assertEquals(new Position(3, 5), state.getEnpassantPosition());
+		assertEquals("rnbqkbnr/pppp1ppp/8/8/4pP2/8/PPPPP1PP/RNBQKBNR b KQkq f3 0 1",
+				Fen.toFen(state));
+	}
+
+	@Test
+	public void testCastlingAndClock() {
+		State state = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 12 40");
+		assertEquals(true, state.isCanCastleKingSide(Color.WHITE));
+		assertFalse(state.isCanCastleQueenSide(Color.WHITE));
+		assertFalse(state.isCanCastleKingSide(Color.BLACK));
+		assertEquals(true, state.isCanCastleQueenSide(Color.BLACK));
+		assertEquals(12, state.getNumberOfMovesWithoutCaptureNorPawnMoved());
+		assertNull(state.getEnpassantPosition());
+		assertEquals(new Piece(Color.BLACK, PieceKind.ROOK), state.getPiece(7, 0));
+		assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 12 1", Fen.toFen(state));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingRank() {
+		Fen.parse("rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEnpassantWithoutPawn() {
+		Fen.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq e3 0 1");
+	}
+}
@@ -0,0 +1,95 @@
+package com.org.zhaohui.shared.basics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.logics.StateChanger;
+import com.org.zhaohui.shared.logics.StateChangerImpl;
+import com.org.zhaohui.shared.logics.StateExplorer;
+import com.org.zhaohui.shared.logics.StateExplorerImpl;
+
+public class ImmutableStateTest {
+	private final StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+	private final StateChanger stateChanger = StateChangerImpl.getInstance();
+
+	private static Move move(int fromRow, int fromCol, int toRow, int toCol) {
+		return new Move(new Position(fromRow, fromCol), new Position(toRow,
+				toCol), null);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		State state = Fen.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w Kq - 3 1");
+		ImmutableState immutable = ImmutableState.of(state);
+		assertEquals(state, immutable.toState());
+		assertEquals(state.getZobristKey(), immutable.getZobristKey());
+		assertTrue(immutable.isCanCastleKingSide(Color.WHITE));
+		assertFalse(immutable.isCanCastleKingSide(Color.BLACK));
+		assertEquals(3, immutable.getNumberOfMovesWithoutCaptureNorPawnMoved());
+		assertEquals(new Piece(Color.BLACK, PieceKind.QUEEN),
+				immutable.getPiece(6, 4));
+	}
+
+	@Test
+	public void testSnapshotIsNotAffectedByTheState() {
+		State state = new State();
+		ImmutableState immutable = ImmutableState.of(state);
+		state.setPiece(1, 4, null);
+		state.setTurn(Color.BLACK);
+		assertEquals(new Piece(Color.WHITE, PieceKind.PAWN),
+				immutable.getPiece(1, 4));
+		assertEquals(Color.WHITE, immutable.getTurn());
+		assertEquals(new State(), immutable.toState());
+	}
+
+	@Test
+	public void testPlaySharesUntouchedRows() {
+		ImmutableState start = ImmutableState.of(new State());
+		ImmutableState next = start.play(move(1, 4, 3, 4));
+		for (int r = 0; r < State.ROWS; r++) {
+			assertEquals(r != 1 && r != 3, next.sharesRow(start, r));
+		}
+		assertEquals(new Position(3, 4), next.getEnpassantPosition());
+		assertEquals(Color.BLACK, next.getTurn());
+		// the parent is unchanged
+		assertEquals(ImmutableState.of(new State()), start);
+		assertEquals(new Piece(Color.WHITE, PieceKind.PAWN), start.getPiece(1, 4));
+
+		ImmutableState castled = ImmutableState.of(
+				Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1")).play(
+				move(0, 4, 0, 2));
+		assertEquals(new Piece(Color.WHITE, PieceKind.ROOK), castled.getPiece(0, 3));
+		assertNull(castled.getPiece(0, 0));
+		assertFalse(castled.isCanCastleQueenSide(Color.WHITE));
+		assertFalse(castled.isCanCastleKingSide(Color.WHITE));
+		assertTrue(castled.isCanCastleKingSide(Color.BLACK));
+	}
+
+	@Test
+	public void testPlayMatchesStateChanger() throws IllegalMove {
+		Random random = new Random(14);
+		for (int game = 0; game < 50; game++) {
+			State state = new State();
+			ImmutableState immutable = ImmutableState.of(state);
+			while (state.getGameResult() == null) {
+				List<Move> moves = Lists.newArrayList(stateExplorer
+						.getPossibleMoves(state));
+				Move move = moves.get(random.nextInt(moves.size()));
+				stateChanger.makeMove(state, move);
+				immutable = immutable.play(move).withGameResult(
+						state.getGameResult());
+				assertEquals(state.getZobristKey(), immutable.getZobristKey());
+				assertEquals(state, immutable.toState());
+				assertEquals(ImmutableState.of(state), immutable);
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.org.zhaohui.shared.basics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -48,4 +49,17 @@ public class MoveTest {
 				move2Promote.toString());
 	}
 
+	@Test
+	public void testOfReturnsSharedInstance() {
+		assertEquals(move1, Move.of(move1.getFrom(), move1.getTo(), null));
+		assertSame(Move.of(new Position(1, 1), new Position(2, 2), null),
+				Move.of(new Position(1, 1), new Position(2, 2), null));
+		assertSame(Position.of(6, 0), Move.of(new Position(6, 0),
+				new Position(7, 0), PieceKind.KNIGHT).getFrom());
+		assertEquals(move2Promote,
+				Move.of(new Position(1, 1), new Position(2, 2), PieceKind.BISHOP));
+		assertEquals(new Move(new Position(0, 0), new Position(8, 0), null),
+				Move.of(new Position(0, 0), new Position(8, 0), null));
+	}
+
 }
@@ -2,6 +2,7 @@ package com.org.zhaohui.shared.basics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -32,4 +33,11 @@ public class PieceTest {
 		assertEquals("(W BISHOP)", piece1.toString());
 	}
 
+	@Test
+	public void testOfReturnsSharedInstance() {
+		assertEquals(piece1, Piece.of(Color.WHITE, PieceKind.BISHOP));
+		assertSame(Piece.of(Color.BLACK, PieceKind.BISHOP),
+				Piece.of(Color.BLACK, PieceKind.BISHOP));
+	}
+
 }
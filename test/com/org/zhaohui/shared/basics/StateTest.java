@@ -67,6 +67,105 @@ public class StateTest {
 		assertFalse(start.equals(startCopy));
 	}
 
+	@Test
+	public void testBitboardsFollowSetPiece() {
+		assertEquals(0xFFFFL, start.getBitboard(Color.WHITE));
+		assertEquals(0xFFFF000000000000L, start.getBitboard(Color.BLACK));
+		assertEquals(1L << 4, start.getBitboard(Color.WHITE, PieceKind.KING));
+		assertEquals(8, start.getPieceCount(Color.BLACK, PieceKind.PAWN));
+		start.setPiece(1, 4, null);
+		start.setPiece(3, 4, new Piece(Color.WHITE, PieceKind.PAWN));
+		start.setPiece(7, 3, new Piece(Color.WHITE, PieceKind.ROOK));
+		assertEquals(0xEF00L | (1L << 28),
+				start.getBitboard(Color.WHITE, PieceKind.PAWN));
+		assertEquals(0x81L | (1L << 59),
+				start.getBitboard(Color.WHITE, PieceKind.ROOK));
+		assertEquals(0L, start.getBitboard(Color.BLACK, PieceKind.QUEEN));
+		assertEquals(start.getBitboard(Color.WHITE)
+				| start.getBitboard(Color.BLACK), start.getOccupied());
+		assertEquals(start, start.copy());
+	}
+
+	@Test
+	public void testZobristKeyIsIncremental() {
+		long initialKey = start.getZobristKey();
+		Piece[][] board = new Piece[State.ROWS][State.COLS];
+		for (int r = 0; r < State.ROWS; r++) {
+			for (int c = 0; c < State.COLS; c++) {
+				board[r][c] = start.getPiece(r, c);
+			}
+		}
+		assertEquals(initialKey, new State(Color.WHITE, board, new boolean[] {
+				true, true }, new boolean[] { true, true }, null, 0, null)
+				.getZobristKey());
+		start.setPiece(0, 6, null);
+		start.setPiece(2, 5, new Piece(Color.WHITE, PieceKind.KNIGHT));
+		start.setTurn(Color.BLACK);
+		start.setEnpassantPosition(new Position(3, 4));
+		assertTrue(start.getZobristKey() != initialKey);
+		start.setEnpassantPosition(null);
+		start.setTurn(Color.WHITE);
+		start.setPiece(2, 5, null);
+		start.setPiece(0, 6, new Piece(Color.WHITE, PieceKind.KNIGHT));
+		assertEquals(initialKey, start.getZobristKey());
+		start.setCanCastleKingSide(Color.BLACK, false);
+		assertTrue(start.getZobristKey() != initialKey);
+		start.setCanCastleKingSide(Color.BLACK, true);
+		assertEquals(initialKey, start.getZobristKey());
+		assertEquals(startEq.hashCode(), start.hashCode());
+		assertEquals(initialKey, start.copy().getZobristKey());
+	}
+
+	@Test
+	public void testPawnZobristKeyOnlyFollowsPawns() {
+		long initialKey = start.getPawnZobristKey();
+		start.setPiece(0, 6, null);
+		start.setPiece(2, 5, new Piece(Color.WHITE, PieceKind.KNIGHT));
+		start.setTurn(Color.BLACK);
+		assertEquals(initialKey, start.getPawnZobristKey());
+		start.setPiece(6, 4, null);
+		start.setPiece(4, 4, new Piece(Color.BLACK, PieceKind.PAWN));
+		assertTrue(start.getPawnZobristKey() != initialKey);
+		assertEquals(start.getPawnZobristKey(), start.copy()
+				.getPawnZobristKey());
+		start.setPiece(4, 4, null);
+		start.setPiece(6, 4, new Piece(Color.BLACK, PieceKind.PAWN));
+		assertEquals(initialKey, start.getPawnZobristKey());
+		// a capture of a pawn changes it too
+		start.setPiece(1, 3, new Piece(Color.BLACK, PieceKind.QUEEN));
+		assertTrue(start.getPawnZobristKey() != initialKey);
+	}
+
+	@Test
+	public void testScoresFollowSetPiece() {
+		assertEquals(4000, start.getMaterial(Color.WHITE));
+		assertEquals(4000, start.getMaterial(Color.BLACK));
+		assertEquals(0, start.getMiddlegameScore());
+		assertEquals(0, start.getEndgameScore());
+		// 1. Nf3 d5, then white's knight takes the pawn
+		start.setPiece(0, 6, null);
+		start.setPiece(2, 5, new Piece(Color.WHITE, PieceKind.KNIGHT));
+		start.setPiece(6, 3, null);
+		start.setPiece(4, 3, new Piece(Color.BLACK, PieceKind.PAWN));
+		start.setPiece(2, 5, null);
+		start.setPiece(4, 3, new Piece(Color.WHITE, PieceKind.KNIGHT));
+		assertEquals(4000, start.getMaterial(Color.WHITE));
+		assertEquals(3900, start.getMaterial(Color.BLACK));
+		// the knight left -40 for +20, black lost a pawn worth -20 on d7
+		assertEquals(40, start.getMiddlegameScore());
+		Piece[][] board = new Piece[State.ROWS][State.COLS];
+		for (int r = 0; r < State.ROWS; r++) {
+			for (int c = 0; c < State.COLS; c++) {
+				board[r][c] = start.getPiece(r, c);
+			}
+		}
+		State rebuilt = new State(Color.WHITE, board, new boolean[] { true,
+				true }, new boolean[] { true, true }, null, 0, null);
+		assertEquals(rebuilt.getMiddlegameScore(), start.getMiddlegameScore());
+		assertEquals(rebuilt.getEndgameScore(), start.getEndgameScore());
+		assertEquals(start.getEndgameScore(), start.copy().getEndgameScore());
+	}
+
 	@Test
 	public void testToString() {
 		assertEquals(
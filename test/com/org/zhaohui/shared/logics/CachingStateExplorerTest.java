@@ -0,0 +1,102 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.GameResult;
+import com.org.zhaohui.shared.basics.GameResultReason;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Runs every StateExplorerTest through a small cache, plus the cache's own
+ * bookkeeping.
+ */
+public class CachingStateExplorerTest extends StateExplorerTest {
+
+  @Override
+  public StateExplorer getStateExplorer() {
+    return new CachingStateExplorer(StateExplorerImpl.getInstance(), 4);
+  }
+
+  @Test
+  public void testRepeatedLookupsHitTheCache() {
+    CachingStateExplorer cache = new CachingStateExplorer(
+        StateExplorerImpl.getInstance(), 4);
+    State state = new State();
+    assertEquals(StateExplorerImpl.getInstance().getPossibleMoves(state),
+        cache.getPossibleMoves(state));
+    assertSame(cache.getPossibleMoves(state), cache.getPossibleMoves(state
+        .copy()));
+    assertEquals(2, cache.getPossibleMovesFromPosition(state,
+        new Position(1, 0)).size());
+    assertEquals(10, cache.getPossibleStartPositions(state).size());
+    assertTrue(cache.hasAnyLegalMove(state));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(5, cache.getHitCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    CachingStateExplorer cache = new CachingStateExplorer(
+        StateExplorerImpl.getInstance(), 2);
+    State first = new State();
+    State second = first.copy();
+    StateChangerImpl.getInstance().makeMove(second,
+        new Move(new Position(1, 4), new Position(3, 4), null));
+    State third = first.copy();
+    StateChangerImpl.getInstance().makeMove(third,
+        new Move(new Position(1, 3), new Position(3, 3), null));
+
+    cache.getPossibleMoves(first);
+    cache.getPossibleMoves(second);
+    cache.getPossibleMoves(first);
+    // second is now the least recently used
+    cache.getPossibleMoves(third);
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+    cache.getPossibleMoves(first);
+    assertEquals(3, cache.getMissCount());
+    cache.getPossibleMoves(second);
+    assertEquals(4, cache.getMissCount());
+    assertEquals(2, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testGameOverBypassesCache() {
+    CachingStateExplorer cache = new CachingStateExplorer(
+        StateExplorerImpl.getInstance(), 2);
+    State state = new State();
+    cache.getPossibleMoves(state);
+    state.setGameResult(new GameResult(Color.WHITE,
+        GameResultReason.CHECKMATE));
+    assertTrue(cache.getPossibleMoves(state).isEmpty());
+    assertEquals(false, cache.hasAnyLegalMove(state));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSetsAreUnmodifiable() {
+    new CachingStateExplorer(StateExplorerImpl.getInstance(), 2)
+        .getPossibleMoves(new State()).clear();
+  }
+
+  @Test
+  public void testValidatesMovesThroughTheCache() {
+    CachingStateExplorer cache = new CachingStateExplorer(
+        StateExplorerImpl.getInstance(), 16);
+    StateChanger stateChanger = new StateChangerImpl(cache);
+    State state = new State();
+    cache.getPossibleMoves(state);
+    stateChanger.makeMove(state, new Move(new Position(1, 4), new Position(3,
+        4), null));
+    assertEquals(1, cache.getHitCount());
+  }
+}
@@ -0,0 +1,119 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.org.zhaohui.shared.basics.IllegalMove;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.State;
+
+/**
+ * Stress test for the concurrency contract of the shared engines: threads
+ * playing their own games through the same StateChangerImpl and
+ * StateExplorerImpl must get exactly what a single thread gets.
+ */
+public class ConcurrentUseTest {
+  private static final int THREADS = 8;
+  private static final int GAMES_PER_THREAD = 10;
+
+  @Test
+  public void testGetInstanceIsTheSameInEveryThread() throws Exception {
+    List<Callable<Object[]>> tasks = Lists.newArrayList();
+    for (int i = 0; i < THREADS; i++) {
+      tasks.add(new Callable<Object[]>() {
+        @Override
+        public Object[] call() {
+          return new Object[] { StateExplorerImpl.getInstance(),
+              StateChangerImpl.getInstance() };
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (Future<Object[]> result : executor.invokeAll(tasks)) {
+        assertSame(StateExplorerImpl.getInstance(), result.get()[0]);
+        assertSame(StateChangerImpl.getInstance(), result.get()[1]);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testParallelGamesMatchSequentialGames() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<long[]>> results = Lists.newArrayList();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        final int seed = i;
+        results.add(executor.submit(new Callable<long[]>() {
+          @Override
+          public long[] call() throws Exception {
+            start.await();
+            return playGames(seed);
+          }
+        }));
+      }
+      start.countDown();
+      for (int i = 0; i < THREADS; i++) {
+        long[] expected = playGames(i);
+        long[] actual = results.get(i).get();
+        assertEquals(expected.length, actual.length);
+        for (int j = 0; j < expected.length; j++) {
+          assertEquals(expected[j], actual[j]);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /*
+   * Plays random games with both makeMove flavours, returning a fingerprint
+   * of every position reached and of the perft counts along the way
+   */
+  private static long[] playGames(int seed) throws IllegalMove {
+    StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+    StateChanger stateChanger = StateChangerImpl.getInstance();
+    Random random = new Random(seed);
+    UndoStack undo = new UndoStack();
+    MoveList moves = new MoveList();
+    List<Long> fingerprint = Lists.newArrayList();
+    for (int game = 0; game < GAMES_PER_THREAD; game++) {
+      State state = new State();
+      while (state.getGameResult() == null) {
+        int replies = 0;
+        int size = stateExplorer.getPossibleMoves(state, moves);
+        int[] packed = new int[size];
+        System.arraycopy(moves.buffer(), 0, packed, 0, size);
+        for (int move : packed) {
+          stateChanger.makeMove(state, move, undo);
+          replies += stateExplorer.getPossibleMoves(state, moves);
+          stateChanger.unmakeMove(state, undo);
+        }
+        List<Move> legalMoves = Lists.newArrayList(stateExplorer
+            .getPossibleMoves(state));
+        stateChanger.makeMove(state,
+            legalMoves.get(random.nextInt(legalMoves.size())));
+        fingerprint.add(state.getZobristKey() ^ replies);
+      }
+    }
+    long[] result = new long[fingerprint.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = fingerprint.get(i);
+    }
+    return result;
+  }
+}
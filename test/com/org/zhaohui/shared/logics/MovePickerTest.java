@@ -0,0 +1,181 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.State;
+
+public class MovePickerTest {
+  private static final String[] FENS = {
+      Fen.INITIAL,
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+      "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+      "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+      "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+      "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+      "4k3/8/8/8/8/8/3PPN2/3QK2r w - - 0 1" };
+
+  private final StateExplorerImpl stateExplorer = StateExplorerImpl
+      .getInstance();
+  private final StateChangerImpl stateChanger = StateChangerImpl.getInstance();
+
+  @Test
+  public void testFiltersPartitionTheLegalMoves() {
+    for (String fen : FENS) {
+      State state = Fen.parse(fen);
+      MoveList all = new MoveList();
+      stateExplorer.getPossibleMoves(state, all);
+      Set<Integer> legal = Sets.newHashSet();
+      Set<Integer> captures = Sets.newHashSet();
+      Set<Integer> quiets = Sets.newHashSet();
+      Set<Integer> checks = Sets.newHashSet();
+      Set<Integer> tactical = Sets.newHashSet();
+      UndoStack undo = new UndoStack();
+      for (int i = 0; i < all.size(); i++) {
+        int move = all.get(i);
+        legal.add(move);
+        (PackedMove.isCapture(move) ? captures : quiets).add(move);
+        if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+          tactical.add(move);
+        }
+        stateChanger.makeMove(state, move, undo);
+        if (stateExplorer.isInCheck(state)) {
+          checks.add(move);
+        }
+        stateChanger.unmakeMove(state, undo);
+      }
+      assertEquals(fen, legal, pick(state, PackedMove.NONE, MoveFilter.ALL));
+      assertEquals(fen, captures,
+          pick(state, PackedMove.NONE, MoveFilter.CAPTURES));
+      assertEquals(fen, quiets, pick(state, PackedMove.NONE, MoveFilter.QUIETS));
+      assertEquals(fen, checks, pick(state, PackedMove.NONE, MoveFilter.CHECKS));
+      assertEquals(fen, tactical,
+          pick(state, PackedMove.NONE, MoveFilter.TACTICAL));
+    }
+  }
+
+  @Test
+  public void testStageOrder() {
+    State state = Fen.parse(FENS[1]);
+    MoveList all = new MoveList();
+    stateExplorer.getPossibleMoves(state, all);
+    int hashMove = all.get(all.size() - 1);
+    List<Integer> picked = Lists.newArrayList(pick(state, hashMove,
+        MoveFilter.ALL));
+    assertEquals(Integer.valueOf(hashMove), picked.get(0));
+    assertEquals(all.size(), picked.size());
+
+    // captures come first, the most valuable victim first
+    int firstQuiet = 1;
+    int lastVictim = Integer.MAX_VALUE;
+    while (PackedMove.isCapture(picked.get(firstQuiet))) {
+      int victim = victimValue(state, picked.get(firstQuiet));
+      assertTrue(victim <= lastVictim);
+      lastVictim = victim;
+      firstQuiet++;
+    }
+    for (int i = firstQuiet; i < picked.size(); i++) {
+      assertFalse(PackedMove.isCapture(picked.get(i)));
+    }
+    // the bishop on a6 is the most valuable piece white can take
+    assertEquals("e2a6", PackedMove.toCoordinateNotation(picked.get(1)));
+  }
+
+  private static int victimValue(State state, int move) {
+    int to = PackedMove.to(move);
+    Piece victim = state.getPiece(Bitboards.row(to), Bitboards.col(to));
+    if (victim == null) {
+      return 1;
+    }
+    switch (victim.getKind()) {
+    case QUEEN:
+      return 9;
+    case ROOK:
+      return 5;
+    case BISHOP:
+    case KNIGHT:
+      return 3;
+    default:
+      return 1;
+    }
+  }
+
+  @Test
+  public void testKillersThenQuietsByHistory() {
+    State state = new State();
+    MoveHistory history = new MoveHistory(8);
+    int knight = move(0, 6, 2, 5);
+    int pawn = move(1, 4, 3, 4);
+    int rook = move(0, 7, 4, 7);
+    int favourite = move(1, 0, 2, 0);
+    history.addCutoff(Color.WHITE, knight, 3, 1);
+    history.addCutoff(Color.WHITE, pawn, 3, 1);
+    // an illegal killer, e.g. from a sibling position, is skipped
+    history.addCutoff(Color.WHITE, rook, 3, 1);
+    history.addCutoff(Color.WHITE, favourite, 2, 10);
+    assertEquals(rook, history.getKiller(3, 0));
+    assertEquals(pawn, history.getKiller(3, 1));
+
+    MovePicker picker = stateExplorer.getMovePicker(state, PackedMove.NONE,
+        MoveFilter.ALL);
+    picker.reset(state, knight, MoveFilter.ALL, history, 3);
+    List<Integer> picked = Lists.newArrayList();
+    for (int move = picker.next(); move != PackedMove.NONE; move = picker
+        .next()) {
+      picked.add(move);
+    }
+    assertEquals(20, picked.size());
+    assertEquals(20, Sets.newHashSet(picked).size());
+    // hash move, killer, then the highest history scores
+    assertEquals(Integer.valueOf(knight), picked.get(0));
+    assertEquals(Integer.valueOf(pawn), picked.get(1));
+    assertEquals(Integer.valueOf(favourite), picked.get(2));
+  }
+
+  private static int move(int fromRow, int fromCol, int toRow, int toCol) {
+    int from = Bitboards.square(fromRow, fromCol);
+    int to = Bitboards.square(toRow, toCol);
+    return PackedMove.encode(from, to, null,
+        Math.abs(toRow - fromRow) == 2 && fromCol == toCol && fromRow == 1
+            ? PackedMove.DOUBLE_PAWN_PUSH : 0);
+  }
+
+  @Test
+  public void testIllegalHashMoveIsSkipped() {
+    State state = new State();
+    int bogus = PackedMove.encode(Bitboards.square(0, 3),
+        Bitboards.square(4, 7), null, 0);
+    Set<Integer> picked = pick(state, bogus, MoveFilter.ALL);
+    assertEquals(20, picked.size());
+    assertFalse(picked.contains(bogus));
+  }
+
+  @Test
+  public void testCapturesStopEarly() {
+    MovePicker picker = stateExplorer.getMovePicker(new State(),
+        PackedMove.NONE, MoveFilter.CAPTURES);
+    assertEquals(PackedMove.NONE, picker.next());
+    assertEquals(PackedMove.NONE, picker.next());
+  }
+
+  private Set<Integer> pick(State state, int hashMove, MoveFilter filter) {
+    Set<Integer> moves = Sets.newLinkedHashSet();
+    MovePicker picker = stateExplorer.getMovePicker(state, hashMove, filter);
+    for (int move = picker.next(); move != PackedMove.NONE; move = picker
+        .next()) {
+      assertTrue("duplicate " + PackedMove.toString(move), moves.add(move));
+    }
+    return moves;
+  }
+}
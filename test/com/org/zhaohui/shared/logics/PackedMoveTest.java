@@ -0,0 +1,78 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Move;
+import com.org.zhaohui.shared.basics.Piece;
+import com.org.zhaohui.shared.basics.PieceKind;
+import com.org.zhaohui.shared.basics.Position;
+import com.org.zhaohui.shared.basics.State;
+
+public class PackedMoveTest {
+
+  @Test
+  public void testEncodeDecode() {
+    int move = PackedMove.encode(Bitboards.square(6, 2),
+        Bitboards.square(7, 3), PieceKind.KNIGHT, PackedMove.CAPTURE);
+    assertEquals(Bitboards.square(6, 2), PackedMove.from(move));
+    assertEquals(Bitboards.square(7, 3), PackedMove.to(move));
+    assertEquals(PieceKind.KNIGHT, PackedMove.promotion(move));
+    assertTrue(PackedMove.isCapture(move));
+    assertFalse(PackedMove.isEnpassant(move));
+    assertEquals(new Move(new Position(6, 2), new Position(7, 3),
+        PieceKind.KNIGHT), PackedMove.toMove(move));
+  }
+
+  @Test
+  public void testToCoordinateNotation() {
+    assertEquals("e2e4", PackedMove.toCoordinateNotation(PackedMove.encode(
+        Bitboards.square(1, 4), Bitboards.square(3, 4), null,
+        PackedMove.DOUBLE_PAWN_PUSH)));
+    assertEquals("b7a8n", PackedMove.toCoordinateNotation(PackedMove.encode(
+        Bitboards.square(6, 1), Bitboards.square(7, 0), PieceKind.KNIGHT,
+        PackedMove.CAPTURE)));
+  }
+
+  @Test
+  public void testFromMoveReadsFlagsOffTheState() {
+    State state = new State();
+    Move doublePush = new Move(new Position(1, 4), new Position(3, 4), null);
+    int packed = PackedMove.fromMove(state, doublePush);
+    assertTrue(PackedMove.isDoublePawnPush(packed));
+    assertFalse(PackedMove.isCapture(packed));
+    assertEquals(doublePush, PackedMove.toMove(packed));
+
+    state.setPiece(4, 4, new Piece(Color.WHITE, PieceKind.PAWN));
+    state.setPiece(4, 5, new Piece(Color.BLACK, PieceKind.PAWN));
+    int enpassant = PackedMove.fromMove(state, new Move(new Position(4, 4),
+        new Position(5, 5), null));
+    assertTrue(PackedMove.isEnpassant(enpassant));
+    assertTrue(PackedMove.isCapture(enpassant));
+
+    state.setPiece(0, 5, null);
+    state.setPiece(0, 6, null);
+    assertTrue(PackedMove.isCastling(PackedMove.fromMove(state, new Move(
+        new Position(0, 4), new Position(0, 6), null))));
+  }
+
+  @Test
+  public void testMoveListGrows() {
+    MoveList moves = new MoveList(new int[1]);
+    for (int i = 1; i <= 300; i++) {
+      moves.add(i);
+    }
+    assertEquals(300, moves.size());
+    assertEquals(300, moves.get(299));
+    assertTrue(moves.contains(150));
+    moves.truncate(10);
+    assertEquals(10, moves.size());
+    assertFalse(moves.contains(150));
+    moves.clear();
+    assertTrue(moves.isEmpty());
+  }
+}
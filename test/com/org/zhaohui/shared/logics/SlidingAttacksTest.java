@@ -0,0 +1,37 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SlidingAttacksTest {
+
+  @Test
+  public void testLookupsMatchRayWalk() {
+    Random random = new Random(7);
+    for (int i = 0; i < 2000; i++) {
+      // sparse and dense occupancies
+      long occupied = i % 2 == 0 ? random.nextLong() & random.nextLong()
+          : random.nextLong() | random.nextLong();
+      for (int sq = 0; sq < 64; sq++) {
+        assertEquals(SlidingAttacks.slowRookAttacks(sq, occupied),
+            SlidingAttacks.rookAttacks(sq, occupied));
+        assertEquals(SlidingAttacks.slowBishopAttacks(sq, occupied),
+            SlidingAttacks.bishopAttacks(sq, occupied));
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyAndCornerBoards() {
+    int a1 = Bitboards.square(0, 0);
+    int d4 = Bitboards.square(3, 3);
+    assertEquals(14, Bitboards.count(SlidingAttacks.rookAttacks(a1, 0L)));
+    assertEquals(7, Bitboards.count(SlidingAttacks.bishopAttacks(a1, 0L)));
+    assertEquals(27, Bitboards.count(SlidingAttacks.queenAttacks(d4, 0L)));
+    long blockers = Bitboards.bit(0, 1) | Bitboards.bit(1, 0);
+    assertEquals(blockers, SlidingAttacks.rookAttacks(a1, blockers));
+  }
+}
@@ -41,6 +41,18 @@ public class StateChangerTest {
 				assertStatePossible(state);
 				impl.makeMove(state, move);
 			}
+
+			@Override
+			public void makeMove(State state, int move, UndoStack undo) {
+				assertStatePossible(state);
+				impl.makeMove(state, move, undo);
+			}
+
+			@Override
+			public void unmakeMove(State state, UndoStack undo) {
+				impl.unmakeMove(state, undo);
+				assertStatePossible(state);
+			}
 		};
 	}
 
@@ -447,6 +459,43 @@ public class StateChangerTest {
     	assertEquals(expected, former);
     }
 
+    @Test
+    public void testUnmakeMoveRestoresEveryState() {
+    	Piece[][] board = new Piece[8][8];
+    	board[0][4] = new Piece(WHITE, KING);
+    	board[0][0] = new Piece(WHITE, ROOK);
+    	board[0][7] = new Piece(WHITE, ROOK);
+    	board[4][4] = new Piece(WHITE, PAWN);
+    	board[6][1] = new Piece(WHITE, PAWN);
+    	board[7][4] = new Piece(BLACK, KING);
+    	board[7][0] = new Piece(BLACK, ROOK);
+    	board[7][2] = new Piece(BLACK, QUEEN);
+    	board[4][3] = new Piece(BLACK, PAWN);
+    	State former = new State(WHITE, board, new boolean[] { true, false },
+    			new boolean[] { true, true }, new Position(4, 3), 7, null);
+    	StateExplorer stateExplorer = StateExplorerImpl.getInstance();
+    	UndoStack undo = new UndoStack(1);
+    	MoveList moves = new MoveList();
+    	MoveList replies = new MoveList();
+    	stateExplorer.getPossibleMoves(former, moves);
+    	assertTrue(moves.size() > 20);
+    	for (int i = 0; i < moves.size(); i++) {
+    		State expected = former.copy();
+    		stateChanger.makeMove(former, moves.get(i), undo);
+    		assertEquals(BLACK, former.getTurn());
+    		stateExplorer.getPossibleMoves(former, replies);
+    		for (int j = 0; j < replies.size(); j++) {
+    			State afterMove = former.copy();
+    			stateChanger.makeMove(former, replies.get(j), undo);
+    			stateChanger.unmakeMove(former, undo);
+    			assertEquals(afterMove, former);
+    		}
+    		stateChanger.unmakeMove(former, undo);
+    		assertEquals(expected, former);
+    		assertTrue(undo.isEmpty());
+    	}
+    }
+
     /*
      * End Tests by Zhaohui Zhang <bravezhaohui@gmail.com>
      */
@@ -1,6 +1,8 @@
 package com.org.zhaohui.shared.logics;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Set;
 
@@ -9,6 +11,7 @@ import org.junit.Test;
 
 import com.google.common.collect.Sets;
 import com.org.zhaohui.shared.basics.Color;
+import com.org.zhaohui.shared.basics.Fen;
 import com.org.zhaohui.shared.basics.GameResult;
 import com.org.zhaohui.shared.basics.GameResultReason;
 import com.org.zhaohui.shared.basics.Move;
@@ -49,6 +52,31 @@ public class StateExplorerTest {
 				StateChangerTest.assertStatePossible(state);
 				return impl.getPossibleStartPositions(state);
 			}
+
+			@Override
+			public int getPossibleMoves(State state, MoveList moves) {
+				StateChangerTest.assertStatePossible(state);
+				return impl.getPossibleMoves(state, moves);
+			}
+
+			@Override
+			public MovePicker getMovePicker(State state, int hashMove,
+					MoveFilter filter) {
+				StateChangerTest.assertStatePossible(state);
+				return impl.getMovePicker(state, hashMove, filter);
+			}
+
+			@Override
+			public boolean hasAnyLegalMove(State state) {
+				StateChangerTest.assertStatePossible(state);
+				return impl.hasAnyLegalMove(state);
+			}
+
+			@Override
+			public boolean isInCheck(State state) {
+				StateChangerTest.assertStatePossible(state);
+				return impl.isInCheck(state);
+			}
 		};
 	}
 
@@ -322,6 +350,71 @@ public class StateExplorerTest {
 		assertEquals(expectedMoves, stateExplorer.getPossibleMoves(former));
 	}
 
+	@Test
+	public void testGetPossibleMovesIntoMoveList() {
+		start.setPiece(new Position(6, 3), null);
+		start.setPiece(new Position(2, 4), new Piece(Color.BLACK,
+				PieceKind.KNIGHT));
+		MoveList moves = new MoveList(new int[4]);
+		int count = stateExplorer.getPossibleMoves(start, moves);
+		Set<Move> packedMoves = Sets.newHashSet();
+		for (int i = 0; i < count; i++) {
+			packedMoves.add(PackedMove.toMove(moves.get(i)));
+		}
+		assertEquals(stateExplorer.getPossibleMoves(start), packedMoves);
+		assertEquals(count, packedMoves.size());
+
+		MoveList again = new MoveList();
+		stateExplorer.getPossibleMoves(start, again);
+		assertEquals(moves.toString(), again.toString());
+	}
+
+	@Test
+	public void testHasAnyLegalMoveAndIsInCheck() {
+		assertTrue(stateExplorer.hasAnyLegalMove(start));
+		assertFalse(stateExplorer.isInCheck(start));
+
+		// fool's mate
+		State mate = Fen
+				.parse("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+		assertFalse(stateExplorer.hasAnyLegalMove(mate));
+		assertTrue(stateExplorer.isInCheck(mate));
+
+		State stalemate = Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+		assertFalse(stateExplorer.hasAnyLegalMove(stalemate));
+		assertFalse(stateExplorer.isInCheck(stalemate));
+
+		// the knight could take the checking rook, but the bishop pins it
+		State pinned = Fen.parse("4k3/8/8/8/7b/8/3PPN2/3QK2r w - - 0 1");
+		assertTrue(stateExplorer.isInCheck(pinned));
+		assertFalse(stateExplorer.hasAnyLegalMove(pinned));
+		State free = Fen.parse("4k3/8/8/8/8/8/3PPN2/3QK2r w - - 0 1");
+		assertTrue(stateExplorer.isInCheck(free));
+		assertTrue(stateExplorer.hasAnyLegalMove(free));
+	}
+
+	@Test
+	public void testCheckEvasions() {
+		// double check by the rook and the knight: only the king may move,
+		// and not to f2 which the knight covers
+		State doubleCheck = Fen.parse("4r1k1/8/8/8/8/3n4/3Q4/4K3 w - - 0 1");
+		Set<Move> expected = Sets.newHashSet(
+				new Move(new Position(0, 4), new Position(0, 3), null),
+				new Move(new Position(0, 4), new Position(0, 5), null));
+		assertEquals(expected, stateExplorer.getPossibleMoves(doubleCheck));
+
+		// single check by the rook: the queen blocks on e2 or e3, the knight
+		// cannot help, the king steps aside
+		State singleCheck = Fen.parse("4r1k1/8/8/8/8/8/3Q4/4K2N w - - 0 1");
+		expected = Sets.newHashSet(
+				new Move(new Position(0, 4), new Position(0, 3), null),
+				new Move(new Position(0, 4), new Position(0, 5), null),
+				new Move(new Position(0, 4), new Position(1, 5), null),
+				new Move(new Position(1, 3), new Position(1, 4), null),
+				new Move(new Position(1, 3), new Position(2, 4), null));
+		assertEquals(expected, stateExplorer.getPossibleMoves(singleCheck));
+	}
+
 	/*
 	 * End Tests by Zhaohui Zhang <bravezhaohui@gmail.com>
 	 */
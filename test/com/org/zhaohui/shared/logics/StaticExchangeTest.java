@@ -0,0 +1,67 @@
+package com.org.zhaohui.shared.logics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.org.zhaohui.shared.basics.Fen;
+import com.org.zhaohui.shared.basics.State;
+
+public class StaticExchangeTest {
+  private final StateExplorerImpl stateExplorer = StateExplorerImpl
+      .getInstance();
+
+  private int see(String fen, String move) {
+    State state = Fen.parse(fen);
+    MoveList moves = new MoveList();
+    stateExplorer.getPossibleMoves(state, moves);
+    for (int i = 0; i < moves.size(); i++) {
+      if (PackedMove.toCoordinateNotation(moves.get(i)).equals(move)) {
+        int packed = StaticExchange.evaluate(state, moves.get(i));
+        assertEquals(packed, StaticExchange.evaluate(state,
+            PackedMove.toMove(moves.get(i))));
+        return packed;
+      }
+    }
+    throw new AssertionError(move + " is not legal in " + fen);
+  }
+
+  @Test
+  public void testUndefendedVictim() {
+    assertEquals(500, see("4k3/8/8/3r4/8/8/8/3RK3 w - - 0 1", "d1d5"));
+  }
+
+  @Test
+  public void testDefendedVictim() {
+    // pawn takes knight, pawn takes back
+    assertEquals(220, see("4k3/8/2p5/3n4/4P3/8/8/4K3 w - - 0 1", "e4d5"));
+    // the bishop cannot take back, the pawn on c4 would win it
+    assertEquals(320, see("4k3/8/4b3/3n4/2P1P3/8/8/4K3 w - - 0 1", "e4d5"));
+    // queen takes pawn, pawn takes queen
+    assertEquals(-800, see("4k3/2p5/3p4/8/8/8/8/3QK3 w - - 0 1", "d1d6"));
+  }
+
+  @Test
+  public void testXrayAttackersJoinIn() {
+    assertEquals(-400, see("3rk3/8/8/3p4/8/8/3R4/4K3 w - - 0 1", "d2d5"));
+    // the rook behind takes back the rook that took back
+    assertEquals(100, see("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1", "d2d5"));
+  }
+
+  @Test
+  public void testKingOnlyRecapturesUndefendedPieces() {
+    assertEquals(-400, see("8/8/8/3pk3/8/8/3R4/4K3 w - - 0 1", "d2d5"));
+    assertEquals(100, see("8/8/8/3pk3/8/8/3R4/3RK3 w - - 0 1", "d2d5"));
+  }
+
+  @Test
+  public void testSpecialMoves() {
+    assertEquals(100, see("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6"));
+    assertEquals(800, see("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7b8q"));
+    // the new queen is taken
+    assertEquals(-100, see("r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7b8q"));
+    // a quiet move onto an attacked square
+    assertEquals(-900, see("4k3/8/8/8/2p5/8/8/3QK3 w - - 0 1", "d1d3"));
+    assertEquals(0, see("4k3/8/8/8/8/8/8/3QK3 w - - 0 1", "d1d3"));
+  }
+}